@@ -0,0 +1,65 @@
+-- =============================================
+-- Phân vùng Audit_Logs theo tháng (UTC) trên created_at
+-- =============================================
+-- Sau khi chạy script này:
+--   * truy vấn theo khoảng created_at (getAuditLogs, cursor, retention) chỉ quét các partition liên quan;
+--   * AuditLogRetentionService tự phát hiện PF_Audit_Logs_Monthly và dùng
+--     TRUNCATE TABLE ... WITH (PARTITIONS (n)) thay cho DELETE theo lô.
+-- Yêu cầu SQL Server 2016+. Chạy ngoài giờ cao điểm (rebuild toàn bộ bảng).
+
+-- 1. Chuẩn hóa cột created_at
+UPDATE [Audit_Logs] SET created_at = SYSDATETIMEOFFSET() WHERE created_at IS NULL;
+ALTER TABLE [Audit_Logs] ALTER COLUMN created_at DATETIMEOFFSET(6) NOT NULL;
+GO
+
+-- 2. Partition function/scheme: một biên cho mỗi tháng, từ tháng của bản ghi cũ nhất tới 3 tháng sau
+DECLARE @from DATE = DATEFROMPARTS(YEAR(ISNULL((SELECT MIN(created_at) FROM [Audit_Logs]), SYSDATETIMEOFFSET())),
+                                   MONTH(ISNULL((SELECT MIN(created_at) FROM [Audit_Logs]), SYSDATETIMEOFFSET())), 1);
+DECLARE @to DATE = DATEADD(MONTH, 3, DATEFROMPARTS(YEAR(GETUTCDATE()), MONTH(GETUTCDATE()), 1));
+DECLARE @boundaries NVARCHAR(MAX) = N'';
+WHILE @from <= @to
+BEGIN
+    SET @boundaries += CASE WHEN @boundaries = N'' THEN N'' ELSE N', ' END
+        + N'''' + CONVERT(NVARCHAR(10), @from, 23) + N'T00:00:00+00:00''';
+    SET @from = DATEADD(MONTH, 1, @from);
+END
+EXEC (N'CREATE PARTITION FUNCTION PF_Audit_Logs_Monthly (DATETIMEOFFSET(6)) AS RANGE RIGHT FOR VALUES (' + @boundaries + N')');
+GO
+CREATE PARTITION SCHEME PS_Audit_Logs_Monthly AS PARTITION PF_Audit_Logs_Monthly ALL TO ([PRIMARY]);
+GO
+
+-- 3. Clustered index theo (created_at, log_id) trên partition scheme.
+--    Mọi index phải "aligned" (chứa created_at, nằm trên scheme) để TRUNCATE ... WITH (PARTITIONS) hoạt động,
+--    nên khóa chính đổi thành NONCLUSTERED (log_id, created_at).
+DECLARE @pk SYSNAME = (SELECT name FROM sys.key_constraints
+                       WHERE parent_object_id = OBJECT_ID('Audit_Logs') AND type = 'PK');
+EXEC (N'ALTER TABLE [Audit_Logs] DROP CONSTRAINT ' + @pk);
+GO
+DROP INDEX IF EXISTS IX_Audit_Logs_created ON [Audit_Logs];
+DROP INDEX IF EXISTS IX_Audit_Logs_action_created ON [Audit_Logs];
+CREATE CLUSTERED INDEX CX_Audit_Logs_created ON [Audit_Logs] (created_at, log_id)
+    ON PS_Audit_Logs_Monthly (created_at);
+ALTER TABLE [Audit_Logs] ADD CONSTRAINT PK_Audit_Logs PRIMARY KEY NONCLUSTERED (log_id, created_at)
+    ON PS_Audit_Logs_Monthly (created_at);
+CREATE INDEX IX_Audit_Logs_created ON [Audit_Logs] (created_at, log_id)
+    ON PS_Audit_Logs_Monthly (created_at);
+CREATE INDEX IX_Audit_Logs_action_created ON [Audit_Logs] (action, created_at, log_id)
+    ON PS_Audit_Logs_Monthly (created_at);
+GO
+
+-- 4. Cửa sổ trượt hằng tháng (SQL Agent job, sau khi retention job đã TRUNCATE tháng cũ):
+--    thêm biên cho tháng mới ở đầu phải và gộp biên rỗng ở đầu trái.
+-- DECLARE @next DATETIMEOFFSET(6) = DATEADD(MONTH, 4, DATEFROMPARTS(YEAR(GETUTCDATE()), MONTH(GETUTCDATE()), 1));
+-- ALTER PARTITION SCHEME PS_Audit_Logs_Monthly NEXT USED [PRIMARY];
+-- ALTER PARTITION FUNCTION PF_Audit_Logs_Monthly() SPLIT RANGE (@next);
+-- DECLARE @oldest DATETIMEOFFSET(6) = (SELECT TOP 1 CAST(value AS DATETIMEOFFSET(6)) FROM sys.partition_range_values rv
+--     JOIN sys.partition_functions pf ON pf.function_id = rv.function_id
+--     WHERE pf.name = 'PF_Audit_Logs_Monthly' ORDER BY rv.boundary_id);
+-- ALTER PARTITION FUNCTION PF_Audit_Logs_Monthly() MERGE RANGE (@oldest);
+
+-- Kiểm tra phân bố dữ liệu theo partition
+SELECT $PARTITION.PF_Audit_Logs_Monthly(created_at) AS partition_no,
+       MIN(created_at) AS first_row, MAX(created_at) AS last_row, COUNT_BIG(*) AS row_count
+FROM [Audit_Logs]
+GROUP BY $PARTITION.PF_Audit_Logs_Monthly(created_at)
+ORDER BY partition_no;
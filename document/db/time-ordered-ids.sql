@@ -0,0 +1,36 @@
+-- =============================================
+-- Chuyển sang khóa chính UUID theo thời gian (@TimeOrderedId)
+-- Áp dụng cho: Orders, Order_Items, Order_Status_Logs, Payments, Audit_Logs, Stock_Movements
+-- =============================================
+-- Không cần đổi kiểu cột: id mới vẫn là uniqueidentifier. Các dòng cũ giữ nguyên id
+-- (không đổi khóa vì có khóa ngoại tham chiếu).
+--
+-- Lưu ý thứ tự: id mới chỉ tăng dần so với các id khác do @TimeOrderedId sinh ra (cùng đồng hồ,
+-- lệch giờ giữa các node có thể đảo thứ tự vài id). Id cũ từ NEWID() là ngẫu nhiên, rải khắp
+-- dải giá trị theo thứ tự sắp xếp của SQL Server, nên id mới xen giữa các dòng cũ chứ KHÔNG
+-- luôn lớn hơn chúng. Insert mới dồn về một điểm tăng dần trong index thay vì rơi ngẫu nhiên,
+-- nên page split giảm mạnh nhưng vẫn có thể xảy ra ở trang chứa dòng cũ ngay sau điểm đó,
+-- cho đến khi dòng cũ được lưu trữ/xóa hết.
+--
+-- Thứ tự hiển thị không còn dựa vào id: các repository sắp theo (created_at, id).
+--
+-- Bước 1 (tùy chọn, chạy ngoài giờ cao điểm): rebuild clustered index để dọn phân mảnh
+-- do id ngẫu nhiên trước đây gây ra.
+
+SELECT OBJECT_NAME(ips.object_id) AS table_name, i.name AS index_name,
+       ips.avg_fragmentation_in_percent, ips.page_count
+FROM sys.dm_db_index_physical_stats(DB_ID(), NULL, NULL, NULL, 'LIMITED') ips
+JOIN sys.indexes i ON i.object_id = ips.object_id AND i.index_id = ips.index_id
+WHERE OBJECT_NAME(ips.object_id) IN
+      ('Orders', 'Order_Items', 'Order_Status_Logs', 'Payments', 'Audit_Logs', 'Stock_Movements')
+ORDER BY ips.avg_fragmentation_in_percent DESC;
+
+ALTER INDEX ALL ON [Orders] REBUILD WITH (FILLFACTOR = 100);
+ALTER INDEX ALL ON [Order_Items] REBUILD WITH (FILLFACTOR = 100);
+ALTER INDEX ALL ON [Order_Status_Logs] REBUILD WITH (FILLFACTOR = 100);
+ALTER INDEX ALL ON [Payments] REBUILD WITH (FILLFACTOR = 100);
+ALTER INDEX ALL ON [Audit_Logs] REBUILD WITH (FILLFACTOR = 100);
+ALTER INDEX ALL ON [Stock_Movements] REBUILD WITH (FILLFACTOR = 100);
+
+-- Không cấp lại id cho dòng cũ: NEWSEQUENTIALID() dựa trên địa chỉ MAC nên không so sánh được
+-- với id do ứng dụng sinh, và Orders/Order_Items/Payments đều có khóa ngoại tham chiếu.
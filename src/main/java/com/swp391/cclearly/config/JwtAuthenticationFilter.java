@@ -1,20 +1,20 @@
 package com.swp391.cclearly.config;
 
-import com.swp391.cclearly.repository.SystemConfigRepository;
-import com.swp391.cclearly.repository.UserRepository;
+import com.swp391.cclearly.service.PrincipalCacheService;
+import com.swp391.cclearly.service.SystemConfigService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.Collections;
+import java.util.List;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -25,8 +25,15 @@ import org.springframework.web.filter.OncePerRequestFilter;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
   private final JwtService jwtService;
-  private final UserRepository userRepository;
-  private final SystemConfigRepository systemConfigRepository;
+  private final PrincipalCacheService principalCacheService;
+  private final SystemConfigService systemConfigService;
+
+  private static final List<String> MAINTENANCE_EXEMPT_PREFIXES = List.of(
+      "/api/auth/",
+      "/api/public/",
+      "/swagger-ui",
+      "/v3/api-docs",
+      "/actuator/");
 
   @Override
   protected void doFilterInternal(
@@ -36,64 +43,74 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
       throws ServletException, IOException {
 
     final String authHeader = request.getHeader("Authorization");
+    final boolean hasBearer = authHeader != null && authHeader.startsWith("Bearer ");
+
+    JwtClaims claims = null;
+    if (hasBearer) {
+      try {
+        // Single signature verification per request (cached until the token expires)
+        claims = jwtService.verifyAndExtract(authHeader.substring(7));
+      } catch (Exception e) {
+        log.error("Cannot set user authentication: {}", e.getMessage());
+      }
+    }
 
-    // Skip if no Authorization header or not Bearer token
-    if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-      filterChain.doFilter(request, response);
+    // During maintenance, reject all non-ADMIN requests (anonymous included) - in-memory flag
+    if (systemConfigService.isMaintenanceMode()
+        && (claims == null || !"ADMIN".equals(claims.role()))
+        && !isMaintenanceExempt(request)) {
+      response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      response.setContentType("application/json;charset=UTF-8");
+      response.getWriter().write(
+          "{\"success\":false,\"message\":\"Hệ thống đang bảo trì\"}");
       return;
     }
 
-    try {
-      final String token = authHeader.substring(7);
-      final String email = jwtService.extractEmail(token);
-
-      // If email extracted and no authentication in context
-      if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-        // Find user by email
-        var userOptional = userRepository.findByEmail(email);
+    // If email extracted and no authentication in context
+    if (claims != null && claims.email() != null && !claims.isExpired()
+        && SecurityContextHolder.getContext().getAuthentication() == null) {
+      try {
+        // Find user by email (served from the principal cache)
+        var userOptional = principalCacheService.findByEmail(claims.email());
 
         if (userOptional.isPresent()) {
           var user = userOptional.get();
+          String role = claims.role();
+
+          // Create authentication with role
+          var authorities =
+              Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + role));
 
-          // Validate token
-          if (jwtService.isTokenValid(token, email)) {
-            // Extract role from token
-            String role = jwtService.extractRole(token);
-
-            // During maintenance, reject all non-ADMIN requests
-            if (!"ADMIN".equals(role) && isMaintenanceMode()) {
-              response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
-              response.setContentType("application/json;charset=UTF-8");
-              response.getWriter().write(
-                  "{\"success\":false,\"message\":\"Hệ thống đang bảo trì\"}");
-              return;
-            }
-
-            // Create authentication with role
-            var authorities =
-                Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + role));
-
-            UsernamePasswordAuthenticationToken authentication =
-                new UsernamePasswordAuthenticationToken(user, null, authorities);
-
-            authentication.setDetails(
-                new WebAuthenticationDetailsSource().buildDetails(request));
-
-            SecurityContextHolder.getContext().setAuthentication(authentication);
-            log.debug("Authenticated user: {} with role: {}", email, role);
-          }
+          UsernamePasswordAuthenticationToken authentication =
+              new UsernamePasswordAuthenticationToken(user, null, authorities);
+
+          authentication.setDetails(
+              new WebAuthenticationDetailsSource().buildDetails(request));
+
+          SecurityContextHolder.getContext().setAuthentication(authentication);
+          log.debug("Authenticated user: {} with role: {}", claims.email(), role);
         }
+      } catch (Exception e) {
+        log.error("Cannot set user authentication: {}", e.getMessage());
       }
-    } catch (Exception e) {
-      log.error("Cannot set user authentication: {}", e.getMessage());
     }
 
     filterChain.doFilter(request, response);
   }
 
-  private boolean isMaintenanceMode() {
-    return systemConfigRepository.findByConfigKey("maintenance_mode")
-        .map(c -> "true".equalsIgnoreCase(c.getConfigValue()))
-        .orElse(false);
+  /**
+   * Endpoints that must stay reachable during maintenance (login, maintenance status, docs).
+   */
+  private boolean isMaintenanceExempt(HttpServletRequest request) {
+    if ("OPTIONS".equalsIgnoreCase(request.getMethod())) {
+      return true;
+    }
+    String path = request.getRequestURI().substring(request.getContextPath().length());
+    for (String prefix : MAINTENANCE_EXEMPT_PREFIXES) {
+      if (path.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
   }
 }
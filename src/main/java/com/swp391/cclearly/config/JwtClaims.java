@@ -0,0 +1,24 @@
+package com.swp391.cclearly.config;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Claims đã được xác minh chữ ký của một JWT (bất biến, an toàn để cache).
+ */
+public record JwtClaims(
+    String email,
+    UUID userId,
+    String role,
+    String fullName,
+    String type,
+    Instant expiresAt) {
+
+  public boolean isExpired() {
+    return expiresAt != null && !expiresAt.isAfter(Instant.now());
+  }
+
+  public boolean isRefreshToken() {
+    return "refresh".equals(type);
+  }
+}
@@ -1,28 +1,43 @@
 package com.swp391.cclearly.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.UnsupportedJwtException;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import jakarta.annotation.PostConstruct;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.function.Function;
 import javax.crypto.SecretKey;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class JwtService {
 
+  private final MeterRegistry meterRegistry;
+
   @Value("${jwt.secret-key}")
   private String secretKey;
 
@@ -32,12 +47,33 @@ public class JwtService {
   @Value("${jwt.refresh-expiration:604800000}")
   private long refreshTokenExpiration; // Default 7 days
 
+  @Value("${jwt.verified-cache.enabled:true}")
+  private boolean verifiedCacheEnabled;
+
+  @Value("${jwt.verified-cache.max-size:50000}")
+  private long verifiedCacheMaxSize;
+
   private SecretKey key;
 
+  private JwtParser parser;
+
+  // Token đã xác minh, key = SHA-256 của token, tự hết hạn đúng lúc token hết hạn
+  private Cache<String, JwtClaims> verifiedTokens;
+
   @PostConstruct
   public void init() {
     log.info("JWT Service initialized");
     this.key = Keys.hmacShaKeyFor(secretKey.getBytes(StandardCharsets.UTF_8));
+    this.parser = Jwts.parser().verifyWith(key).build();
+    if (verifiedCacheEnabled) {
+      this.verifiedTokens = Caffeine.newBuilder()
+          .maximumSize(verifiedCacheMaxSize)
+          .expireAfter(Expiry.<String, JwtClaims>creating((hash, claims) ->
+              Duration.between(Instant.now(), claims.expiresAt())))
+          .recordStats()
+          .build();
+      CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwtVerifiedTokens");
+    }
   }
 
   /**
@@ -75,26 +111,47 @@ public class JwtService {
         .compact();
   }
 
+  /**
+   * Verify signature and expiration once and return all claims as an immutable object.
+   * Verified tokens are cached (keyed by token hash) until they expire.
+   *
+   * @throws io.jsonwebtoken.JwtException if the token is invalid or expired
+   */
+  public JwtClaims verifyAndExtract(String token) {
+    if (verifiedTokens == null) {
+      return toJwtClaims(extractAllClaims(token));
+    }
+    String hash = hash(token);
+    JwtClaims cached = verifiedTokens.getIfPresent(hash);
+    if (cached != null && !cached.isExpired()) {
+      return cached;
+    }
+    JwtClaims claims = toJwtClaims(extractAllClaims(token));
+    if (claims.expiresAt() != null) {
+      verifiedTokens.put(hash, claims);
+    }
+    return claims;
+  }
+
   /**
    * Extract email (subject) from token
    */
   public String extractEmail(String token) {
-    return extractClaim(token, Claims::getSubject);
+    return extractClaim(token, JwtClaims::email);
   }
 
   /**
    * Extract user ID from token
    */
   public UUID extractUserId(String token) {
-    String userId = extractClaim(token, claims -> claims.get("userId", String.class));
-    return userId != null ? UUID.fromString(userId) : null;
+    return extractClaim(token, JwtClaims::userId);
   }
 
   /**
    * Extract role from token
    */
   public String extractRole(String token) {
-    return extractClaim(token, claims -> claims.get("role", String.class));
+    return extractClaim(token, JwtClaims::role);
   }
 
   /**
@@ -102,10 +159,7 @@ public class JwtService {
    */
   public boolean validateToken(String token) {
     try {
-      Jwts.parser()
-          .verifyWith(key)
-          .build()
-          .parseSignedClaims(token);
+      verifyAndExtract(token);
       return true;
     } catch (ExpiredJwtException e) {
       log.warn("JWT token expired");
@@ -126,32 +180,40 @@ public class JwtService {
    */
   public boolean isTokenValid(String token, String email) {
     try {
-      final String tokenEmail = extractEmail(token);
-      return tokenEmail.equals(email) && !isTokenExpired(token);
+      final JwtClaims claims = verifyAndExtract(token);
+      return email.equals(claims.email()) && !claims.isExpired();
     } catch (Exception e) {
       return false;
     }
   }
 
-  private boolean isTokenExpired(String token) {
-    return extractExpiration(token).before(new Date());
+  private <T> T extractClaim(String token, Function<JwtClaims, T> claimsResolver) {
+    return claimsResolver.apply(verifyAndExtract(token));
   }
 
-  private Date extractExpiration(String token) {
-    return extractClaim(token, Claims::getExpiration);
+  private Claims extractAllClaims(String token) {
+    return parser.parseSignedClaims(token).getPayload();
   }
 
-  private <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-    final Claims claims = extractAllClaims(token);
-    return claimsResolver.apply(claims);
+  private JwtClaims toJwtClaims(Claims claims) {
+    String userId = claims.get("userId", String.class);
+    return new JwtClaims(
+        claims.getSubject(),
+        userId != null ? UUID.fromString(userId) : null,
+        claims.get("role", String.class),
+        claims.get("fullName", String.class),
+        claims.get("type", String.class),
+        claims.getExpiration() != null ? claims.getExpiration().toInstant() : null);
   }
 
-  private Claims extractAllClaims(String token) {
-    return Jwts.parser()
-        .verifyWith(key)
-        .build()
-        .parseSignedClaims(token)
-        .getPayload();
+  private static String hash(String token) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256")
+          .digest(token.getBytes(StandardCharsets.UTF_8));
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
   }
 
   public long getTokenExpiration() {
@@ -54,9 +54,12 @@ public class SecurityConfig {
                 "/v3/api-docs/**",
                 "/v3/api-docs",
                 "/webjars/**",
-                "/actuator/**"
+                "/actuator/health"
             ).permitAll()
 
+            // 🔒 Actuator metrics (cache hit/miss, ...) - Admin only
+            .requestMatchers("/actuator/**").hasRole("ADMIN")
+
             // ✅ Public GET endpoints - Products
             .requestMatchers(HttpMethod.GET,
                 "/api/products/**",
@@ -68,6 +71,8 @@ public class SecurityConfig {
 
             // 🔒 Admin endpoints shared with Manager (dashboard, revenue, users)
             .requestMatchers("/api/admin/dashboard/**").hasAnyRole("ADMIN", "MANAGER")
+            // Backfill rollup chạy nặng trên toàn bộ đơn hàng - chỉ Admin (phải đứng trước revenue/**)
+            .requestMatchers("/api/admin/revenue/rollups/**").hasRole("ADMIN")
             .requestMatchers("/api/admin/revenue/**").hasAnyRole("ADMIN", "MANAGER")
             .requestMatchers("/api/admin/users/**").hasAnyRole("ADMIN", "MANAGER")
 
@@ -2,6 +2,7 @@ package com.swp391.cclearly.controller;
 
 import com.swp391.cclearly.dto.admin.AdminUserResponse;
 import com.swp391.cclearly.dto.admin.AuditLogPageResponse;
+import com.swp391.cclearly.dto.admin.AuditLogResponse;
 import com.swp391.cclearly.dto.admin.CreateUserRequest;
 import com.swp391.cclearly.dto.admin.DashboardStatsResponse;
 import com.swp391.cclearly.dto.admin.RevenueResponse;
@@ -9,6 +10,7 @@ import com.swp391.cclearly.dto.admin.SystemSettingResponse;
 import com.swp391.cclearly.dto.admin.UpdateSettingsRequest;
 import com.swp391.cclearly.dto.admin.UpdateUserRequest;
 import com.swp391.cclearly.dto.base.ApiResponse;
+import com.swp391.cclearly.dto.base.CursorPageResponse;
 import com.swp391.cclearly.service.AdminService;
 import jakarta.validation.Valid;
 import io.swagger.v3.oas.annotations.Operation;
@@ -74,6 +76,12 @@ public class AdminController {
     return ResponseEntity.ok(adminService.getRevenue(days));
   }
 
+  @Operation(summary = "Xây lại dữ liệu tổng hợp doanh thu (backfill)")
+  @PostMapping("/revenue/rollups/rebuild")
+  public ResponseEntity<ApiResponse<Void>> rebuildRevenueRollups() {
+    return ResponseEntity.ok(adminService.rebuildRevenueRollups());
+  }
+
   @Operation(summary = "Lấy cấu hình hệ thống")
   @GetMapping("/settings")
   public ResponseEntity<ApiResponse<List<SystemSettingResponse>>> getSettings() {
@@ -97,4 +105,23 @@ public class AdminController {
       @RequestParam(defaultValue = "20") int size) {
     return ResponseEntity.ok(adminService.getAuditLogs(action, fromDate, toDate, page, size));
   }
+
+  @Operation(summary = "Lấy nhật ký hệ thống theo cursor")
+  @GetMapping("/logs/cursor")
+  public ResponseEntity<ApiResponse<CursorPageResponse<AuditLogResponse>>> getAuditLogsByCursor(
+      @RequestParam(required = false) String action,
+      @RequestParam(required = false) LocalDate fromDate,
+      @RequestParam(required = false) LocalDate toDate,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "20") int size,
+      @RequestParam(defaultValue = "false") boolean withTotal) {
+    return ResponseEntity.ok(
+        adminService.getAuditLogsByCursor(action, fromDate, toDate, cursor, size, withTotal));
+  }
+
+  @Operation(summary = "Lưu trữ và xóa nhật ký hệ thống quá hạn")
+  @PostMapping("/logs/archive")
+  public ResponseEntity<ApiResponse<List<String>>> archiveAuditLogs() {
+    return ResponseEntity.ok(adminService.archiveAuditLogs());
+  }
 }
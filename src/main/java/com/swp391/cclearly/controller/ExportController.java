@@ -0,0 +1,79 @@
+package com.swp391.cclearly.controller;
+
+import com.swp391.cclearly.service.ExportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+@SecurityRequirement(name = "bearerAuth")
+@Tag(name = "Export", description = "APIs xuất dữ liệu (CSV/NDJSON, tùy chọn gzip)")
+public class ExportController {
+
+  private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+  private final ExportService exportService;
+
+  @Operation(summary = "Xuất nhật ký hệ thống")
+  @GetMapping("/exports/audit-logs")
+  public ResponseEntity<StreamingResponseBody> exportAuditLogs(
+      @RequestParam(required = false) String action,
+      @RequestParam(required = false) LocalDate fromDate,
+      @RequestParam(required = false) LocalDate toDate,
+      @RequestParam(defaultValue = "csv") String format,
+      @RequestParam(defaultValue = "false") boolean gzip) {
+    ExportService.Format f = ExportService.Format.parse(format);
+    return download("audit-logs", f, gzip,
+        out -> exportService.exportAuditLogs(out, f, gzip, action, fromDate, toDate));
+  }
+
+  @Operation(summary = "Xuất danh sách đơn hàng")
+  @GetMapping("/exports/orders")
+  public ResponseEntity<StreamingResponseBody> exportOrders(
+      @RequestParam(required = false) String status,
+      @RequestParam(defaultValue = "csv") String format,
+      @RequestParam(defaultValue = "false") boolean gzip) {
+    ExportService.Format f = ExportService.Format.parse(format);
+    return download("orders", f, gzip, out -> exportService.exportOrders(out, f, gzip, status));
+  }
+
+  @Operation(summary = "Xuất doanh thu theo ngày")
+  @GetMapping("/revenue/export")
+  public ResponseEntity<StreamingResponseBody> exportRevenue(
+      @RequestParam(required = false) LocalDate fromDate,
+      @RequestParam(required = false) LocalDate toDate,
+      @RequestParam(defaultValue = "csv") String format,
+      @RequestParam(defaultValue = "false") boolean gzip) {
+    ExportService.Format f = ExportService.Format.parse(format);
+    return download("revenue", f, gzip,
+        out -> exportService.exportDailyRevenue(out, f, gzip, fromDate, toDate));
+  }
+
+  private static ResponseEntity<StreamingResponseBody> download(
+      String name, ExportService.Format format, boolean gzip, StreamingResponseBody body) {
+    String filename = name + "-" + LocalDateTime.now().format(FILE_TIMESTAMP) + "."
+        + format.extension + (gzip ? ".gz" : "");
+    return ResponseEntity.ok()
+        .header(HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.attachment().filename(filename).build().toString())
+        .contentType(gzip
+            ? MediaType.parseMediaType("application/gzip")
+            : MediaType.parseMediaType(format.contentType + ";charset=UTF-8"))
+        .body(body);
+  }
+}
@@ -1,18 +1,30 @@
 package com.swp391.cclearly.controller;
 
 import com.swp391.cclearly.dto.base.ApiResponse;
+import com.swp391.cclearly.dto.inventory.BulkImportResponse;
 import com.swp391.cclearly.dto.inventory.ImportStockRequest;
+import com.swp391.cclearly.dto.inventory.InventoryPageResponse;
 import com.swp391.cclearly.dto.inventory.InventoryResponse;
+import com.swp391.cclearly.dto.inventory.LowStockFeedResponse;
+import com.swp391.cclearly.dto.inventory.LowStockPageResponse;
+import com.swp391.cclearly.dto.inventory.ReorderThresholdRequest;
+import com.swp391.cclearly.dto.inventory.StockBalanceResponse;
+import com.swp391.cclearly.dto.inventory.StockMovementPageResponse;
 import com.swp391.cclearly.service.InventoryService;
+import com.swp391.cclearly.service.LowStockService;
+import com.swp391.cclearly.service.StockImportService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
 @RestController
 @RequestMapping("/api/inventory")
@@ -22,6 +34,8 @@ import org.springframework.web.bind.annotation.*;
 public class InventoryController {
 
   private final InventoryService inventoryService;
+  private final StockImportService stockImportService;
+  private final LowStockService lowStockService;
 
   @Operation(summary = "Lấy danh sách tồn kho")
   @GetMapping
@@ -31,10 +45,96 @@ public class InventoryController {
     return ResponseEntity.ok(inventoryService.getInventory(search, warehouseId));
   }
 
+  @Operation(summary = "Lấy danh sách tồn kho phân trang")
+  @GetMapping("/page")
+  public ResponseEntity<ApiResponse<InventoryPageResponse>> getInventoryPage(
+      @RequestParam(required = false) String search,
+      @RequestParam(required = false) UUID warehouseId,
+      @RequestParam(defaultValue = "1") int page,
+      @RequestParam(defaultValue = "20") int size) {
+    return ResponseEntity.ok(inventoryService.getInventoryPage(search, warehouseId, page, size));
+  }
+
   @Operation(summary = "Nhập kho")
   @PostMapping("/import")
   public ResponseEntity<ApiResponse<InventoryResponse>> importStock(
       @Valid @RequestBody ImportStockRequest request) {
     return ResponseEntity.ok(inventoryService.importStock(request));
   }
+
+  @Operation(summary = "Nhập kho hàng loạt từ file CSV/JSON (sku, warehouse, quantity, reason)")
+  @PostMapping(value = "/import/bulk", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+  public ResponseEntity<ApiResponse<BulkImportResponse>> importStockBulk(
+      @RequestParam("file") MultipartFile file) {
+    return ResponseEntity.ok(stockImportService.importFile(file));
+  }
+
+  @Operation(summary = "Lịch sử xuất nhập kho (sổ cái)")
+  @GetMapping("/movements")
+  public ResponseEntity<ApiResponse<StockMovementPageResponse>> getMovements(
+      @RequestParam(required = false) UUID warehouseId,
+      @RequestParam(required = false) UUID variantId,
+      @RequestParam(required = false) Instant from,
+      @RequestParam(required = false) Instant to,
+      @RequestParam(defaultValue = "1") int page,
+      @RequestParam(defaultValue = "20") int size) {
+    return ResponseEntity.ok(inventoryService.getMovements(warehouseId, variantId, from, to, page, size));
+  }
+
+  @Operation(summary = "Tồn kho tại một thời điểm")
+  @GetMapping("/stock-at")
+  public ResponseEntity<ApiResponse<List<StockBalanceResponse>>> getStockAt(
+      @RequestParam Instant at,
+      @RequestParam(required = false) UUID warehouseId,
+      @RequestParam(required = false) UUID variantId) {
+    return ResponseEntity.ok(inventoryService.getStockAt(at, warehouseId, variantId));
+  }
+
+  @Operation(summary = "Tồn đầu kỳ, cuối kỳ và biến động trong khoảng thời gian")
+  @GetMapping("/stock-period")
+  public ResponseEntity<ApiResponse<List<StockBalanceResponse>>> getStockPeriod(
+      @RequestParam Instant from,
+      @RequestParam Instant to,
+      @RequestParam(required = false) UUID warehouseId,
+      @RequestParam(required = false) UUID variantId) {
+    return ResponseEntity.ok(inventoryService.getStockPeriod(from, to, warehouseId, variantId));
+  }
+
+  @Operation(summary = "Chụp số dư tồn kho ngay")
+  @PostMapping("/snapshots")
+  public ResponseEntity<ApiResponse<Integer>> takeSnapshot() {
+    return ResponseEntity.ok(inventoryService.takeSnapshot());
+  }
+
+  @Operation(summary = "Danh sách tồn kho dưới ngưỡng đặt hàng lại")
+  @GetMapping("/low-stock")
+  public ResponseEntity<ApiResponse<LowStockPageResponse>> getLowStock(
+      @RequestParam(required = false) UUID warehouseId,
+      @RequestParam(defaultValue = "1") int page,
+      @RequestParam(defaultValue = "20") int size) {
+    return ResponseEntity.ok(lowStockService.getLowStock(warehouseId, page, size));
+  }
+
+  @Operation(summary = "Thay đổi của danh sách tồn kho thấp kể từ seq")
+  @GetMapping("/low-stock/changes")
+  public ResponseEntity<ApiResponse<LowStockFeedResponse>> getLowStockChanges(
+      @RequestParam(defaultValue = "0") long since,
+      @RequestParam(required = false) String epoch,
+      @RequestParam(defaultValue = "500") int limit) {
+    return ResponseEntity.ok(lowStockService.getChanges(since, epoch, limit));
+  }
+
+  @Operation(summary = "Tính lại danh sách tồn kho thấp (sau khi đổi ngưỡng mặc định)")
+  @PostMapping("/low-stock/rebuild")
+  public ResponseEntity<ApiResponse<Void>> rebuildLowStock() {
+    lowStockService.rebuild();
+    return ResponseEntity.ok(ApiResponse.success("Tính lại danh sách tồn kho thấp thành công", null));
+  }
+
+  @Operation(summary = "Đặt ngưỡng đặt hàng lại cho biến thể tại kho")
+  @PutMapping("/thresholds")
+  public ResponseEntity<ApiResponse<Void>> setThreshold(
+      @Valid @RequestBody ReorderThresholdRequest request) {
+    return ResponseEntity.ok(lowStockService.setThreshold(request));
+  }
 }
@@ -1,11 +1,13 @@
 package com.swp391.cclearly.controller;
 
 import com.swp391.cclearly.dto.base.ApiResponse;
+import com.swp391.cclearly.dto.base.CursorPageResponse;
 import com.swp391.cclearly.dto.order.CreateOrderRequest;
 import com.swp391.cclearly.dto.order.OrderPageResponse;
 import com.swp391.cclearly.dto.order.OrderResponse;
 import com.swp391.cclearly.dto.prescription.SavePrescriptionRequest;
 import com.swp391.cclearly.entity.User;
+import com.swp391.cclearly.service.IdempotencyService;
 import com.swp391.cclearly.service.OrderService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -27,6 +29,7 @@ import org.springframework.web.bind.annotation.*;
 public class OrderController {
 
   private final OrderService orderService;
+  private final IdempotencyService idempotencyService;
 
   @Operation(summary = "Lấy danh sách đơn hàng của người dùng")
   @GetMapping
@@ -43,40 +46,57 @@ public class OrderController {
     return ResponseEntity.ok(orderService.getOrderById(user, orderId));
   }
 
+  @Operation(summary = "Tra cứu đơn hàng theo mã đơn")
+  @GetMapping("/code/{code}")
+  public ResponseEntity<ApiResponse<OrderResponse>> getOrderByCode(
+      @AuthenticationPrincipal User user,
+      @PathVariable String code) {
+    return ResponseEntity.ok(orderService.getOrderByCode(user, code));
+  }
+
   @Operation(summary = "Tạo đơn hàng mới từ giỏ hàng")
   @PostMapping
   public ResponseEntity<ApiResponse<OrderResponse>> createOrder(
       @AuthenticationPrincipal User user,
-      @Valid @RequestBody CreateOrderRequest request) {
-    return ResponseEntity.ok(orderService.createOrder(user, request));
+      @Valid @RequestBody CreateOrderRequest request,
+      @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+    return ResponseEntity.ok(idempotencyService.execute(user, "create-order", idempotencyKey, request,
+        OrderResponse.class, () -> orderService.createOrder(user, request)));
   }
 
   @Operation(summary = "Hủy đơn hàng")
   @PostMapping("/{orderId}/cancel")
   public ResponseEntity<ApiResponse<Void>> cancelOrder(
       @AuthenticationPrincipal User user,
-      @PathVariable UUID orderId) {
-    return ResponseEntity.ok(orderService.cancelOrder(user, orderId));
+      @PathVariable UUID orderId,
+      @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+    return ResponseEntity.ok(idempotencyService.execute(user, "cancel:" + orderId, idempotencyKey, null,
+        Void.class, () -> orderService.cancelOrder(user, orderId)));
   }
 
   @Operation(summary = "Cập nhật trạng thái đơn hàng (Staff only)")
   @PatchMapping("/{orderId}/status")
   public ResponseEntity<ApiResponse<Void>> updateOrderStatus(
+      @AuthenticationPrincipal User user,
       @PathVariable UUID orderId,
-      @RequestBody Map<String, String> body) {
+      @RequestBody Map<String, String> body,
+      @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
     String note = body.get("note");
-    if (note != null) {
-      return ResponseEntity.ok(orderService.updateOrderStatusWithNote(orderId, body.get("status"), note));
-    }
-    return ResponseEntity.ok(orderService.updateOrderStatus(orderId, body.get("status")));
+    return ResponseEntity.ok(idempotencyService.execute(user, "status:" + orderId, idempotencyKey, body,
+        Void.class, () -> note != null
+            ? orderService.updateOrderStatusWithNote(orderId, body.get("status"), note)
+            : orderService.updateOrderStatus(orderId, body.get("status"))));
   }
 
   @Operation(summary = "Lưu thông tin đơn kính (prescription) cho đơn hàng")
   @PutMapping("/{orderId}/prescription")
   public ResponseEntity<ApiResponse<Void>> savePrescription(
+      @AuthenticationPrincipal User user,
       @PathVariable UUID orderId,
-      @RequestBody SavePrescriptionRequest request) {
-    return ResponseEntity.ok(orderService.savePrescription(orderId, request));
+      @RequestBody SavePrescriptionRequest request,
+      @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+    return ResponseEntity.ok(idempotencyService.execute(user, "prescription:" + orderId, idempotencyKey,
+        request, Void.class, () -> orderService.savePrescription(orderId, request)));
   }
 
   @Operation(summary = "Lấy tất cả đơn hàng (Admin/Staff)")
@@ -87,4 +107,14 @@ public class OrderController {
       @RequestParam(defaultValue = "20") int size) {
     return ResponseEntity.ok(orderService.getAllOrders(status, page, size));
   }
+
+  @Operation(summary = "Lấy tất cả đơn hàng theo cursor (Admin/Staff)")
+  @GetMapping("/admin/all/cursor")
+  public ResponseEntity<ApiResponse<CursorPageResponse<OrderResponse>>> getAllOrdersByCursor(
+      @RequestParam(required = false) String status,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "20") int size,
+      @RequestParam(defaultValue = "false") boolean withTotal) {
+    return ResponseEntity.ok(orderService.getAllOrdersByCursor(status, cursor, size, withTotal));
+  }
 }
@@ -1,7 +1,10 @@
 package com.swp391.cclearly.controller;
 
 import com.swp391.cclearly.dto.base.ApiResponse;
+import com.swp391.cclearly.dto.base.CursorPageResponse;
 import com.swp391.cclearly.dto.product.CreateProductRequest;
+import com.swp391.cclearly.dto.product.ProductFacetFilter;
+import com.swp391.cclearly.dto.product.ProductFacetResponse;
 import com.swp391.cclearly.dto.product.ProductPageResponse;
 import com.swp391.cclearly.dto.product.ProductResponse;
 import com.swp391.cclearly.dto.product.UpdateProductRequest;
@@ -25,14 +28,16 @@ public class ProductController {
 
   private final ProductService productService;
 
-  @Operation(summary = "Lấy danh sách sản phẩm", description = "Hỗ trợ lọc theo type, tìm kiếm, và phân trang")
+  @Operation(summary = "Lấy danh sách sản phẩm",
+      description = "Hỗ trợ lọc theo type, tìm kiếm, và phân trang. view=card (mặc định) hoặc full")
   @GetMapping
   public ResponseEntity<ApiResponse<ProductPageResponse>> getProducts(
       @RequestParam(required = false) String type,
       @RequestParam(required = false) String search,
       @RequestParam(defaultValue = "1") int page,
-      @RequestParam(defaultValue = "12") int size) {
-    return ResponseEntity.ok(productService.getProducts(type, search, page, size));
+      @RequestParam(defaultValue = "12") int size,
+      @RequestParam(defaultValue = "card") String view) {
+    return ResponseEntity.ok(productService.getProducts(type, search, page, size, view));
   }
 
   @Operation(summary = "Lấy danh sách gọng kính")
@@ -40,8 +45,9 @@ public class ProductController {
   public ResponseEntity<ApiResponse<ProductPageResponse>> getFrames(
       @RequestParam(required = false) String search,
       @RequestParam(defaultValue = "1") int page,
-      @RequestParam(defaultValue = "12") int size) {
-    return ResponseEntity.ok(productService.getProducts("frame", search, page, size));
+      @RequestParam(defaultValue = "12") int size,
+      @RequestParam(defaultValue = "card") String view) {
+    return ResponseEntity.ok(productService.getProducts("frame", search, page, size, view));
   }
 
   @Operation(summary = "Lấy danh sách tròng kính")
@@ -49,8 +55,50 @@ public class ProductController {
   public ResponseEntity<ApiResponse<ProductPageResponse>> getLenses(
       @RequestParam(required = false) String search,
       @RequestParam(defaultValue = "1") int page,
+      @RequestParam(defaultValue = "12") int size,
+      @RequestParam(defaultValue = "card") String view) {
+    return ResponseEntity.ok(productService.getProducts("lens", search, page, size, view));
+  }
+
+  @Operation(summary = "Lấy danh sách sản phẩm theo cursor",
+      description = "Phân trang keyset, mới nhất trước. Gửi nextCursor của trang trước để lấy trang tiếp")
+  @GetMapping("/cursor")
+  public ResponseEntity<ApiResponse<CursorPageResponse<ProductResponse>>> getProductsByCursor(
+      @RequestParam(required = false) String type,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "12") int size,
+      @RequestParam(defaultValue = "false") boolean withTotal) {
+    return ResponseEntity.ok(productService.getProductsByCursor(type, cursor, size, withTotal));
+  }
+
+  @Operation(summary = "Lọc sản phẩm theo facet",
+      description = "Lọc theo kiểu gọng, chất liệu, độ rộng tròng, chiết suất, màu, khoảng giá, công nghệ; "
+          + "trả kèm số lượng theo từng giá trị facet")
+  @GetMapping("/facets")
+  public ResponseEntity<ApiResponse<ProductFacetResponse>> getFacetedProducts(
+      @RequestParam(required = false) String type,
+      @RequestParam(required = false) List<String> shape,
+      @RequestParam(required = false) List<String> material,
+      @RequestParam(required = false) List<String> color,
+      @RequestParam(required = false) List<String> refractiveIndex,
+      @RequestParam(required = false) List<String> technology,
+      @RequestParam(required = false) List<String> priceBand,
+      @RequestParam(required = false) Integer lensWidthMin,
+      @RequestParam(required = false) Integer lensWidthMax,
+      @RequestParam(defaultValue = "1") int page,
       @RequestParam(defaultValue = "12") int size) {
-    return ResponseEntity.ok(productService.getProducts("lens", search, page, size));
+    ProductFacetFilter filter = ProductFacetFilter.builder()
+        .type(type)
+        .shapes(shape)
+        .materials(material)
+        .colors(color)
+        .refractiveIndexes(refractiveIndex)
+        .technologies(technology)
+        .priceBands(priceBand)
+        .lensWidthMin(lensWidthMin)
+        .lensWidthMax(lensWidthMax)
+        .build();
+    return ResponseEntity.ok(productService.getFacetedProducts(filter, page, size));
   }
 
   @Operation(summary = "Lấy chi tiết sản phẩm")
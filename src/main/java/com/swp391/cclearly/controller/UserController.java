@@ -4,21 +4,30 @@ import com.swp391.cclearly.dto.address.AddressRequest;
 import com.swp391.cclearly.dto.address.AddressResponse;
 import com.swp391.cclearly.dto.admin.AdminUserResponse;
 import com.swp391.cclearly.dto.base.ApiResponse;
+import com.swp391.cclearly.dto.base.CursorPageResponse;
 import com.swp391.cclearly.dto.order.OrderResponse;
 import com.swp391.cclearly.dto.order.ReturnRequest;
 import com.swp391.cclearly.dto.user.UpdateProfileRequest;
 import com.swp391.cclearly.dto.user.UserProfileResponse;
 import com.swp391.cclearly.entity.User;
 import com.swp391.cclearly.service.AddressService;
+import com.swp391.cclearly.service.IdempotencyService;
 import com.swp391.cclearly.service.OrderService;
 import com.swp391.cclearly.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
@@ -32,6 +41,7 @@ public class UserController {
 
   private final UserService userService;
   private final OrderService orderService;
+  private final IdempotencyService idempotencyService;
   private final AddressService addressService;
 
   @Operation(summary = "Lấy danh sách khách hàng")
@@ -62,13 +72,47 @@ public class UserController {
     return ResponseEntity.ok(orderService.getUserOrders(user));
   }
 
+  @Operation(summary = "Lấy đơn hàng của người dùng theo cursor (mới nhất trước)")
+  @GetMapping("/orders/page")
+  public ResponseEntity<ApiResponse<CursorPageResponse<OrderResponse>>> getUserOrdersByCursor(
+      @AuthenticationPrincipal User user,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "20") int size) {
+    return ResponseEntity.ok(orderService.getUserOrdersByCursor(user, cursor, size));
+  }
+
+  @Operation(summary = "Đồng bộ đơn hàng tạo mới/thay đổi kể từ since-token hoặc If-Modified-Since")
+  @GetMapping("/orders/changes")
+  public ResponseEntity<ApiResponse<CursorPageResponse<OrderResponse>>> getUserOrderChanges(
+      @AuthenticationPrincipal User user,
+      @RequestParam(required = false) String since,
+      @RequestParam(defaultValue = "50") int size,
+      @RequestHeader(value = HttpHeaders.IF_MODIFIED_SINCE, required = false) String ifModifiedSince) {
+    Instant modifiedSince = parseHttpDate(ifModifiedSince);
+    ApiResponse<CursorPageResponse<OrderResponse>> response =
+        orderService.getUserOrderChanges(user, since, modifiedSince, size);
+    List<OrderResponse> items = response.getData().getItems();
+    if (items.isEmpty() && (since == null || since.isBlank()) && modifiedSince != null) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+    }
+    ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+    // Last-Modified (tới giây) chỉ an toàn khi trang đã chứa mọi thay đổi trong giây đó; còn trang sau thì dùng nextCursor
+    if (!response.getData().isHasMore()) {
+      items.stream().map(OrderResponse::getUpdatedAt).filter(Objects::nonNull).max(Instant::compareTo)
+          .ifPresent(at -> builder.lastModified(at));
+    }
+    return builder.body(response);
+  }
+
   @Operation(summary = "Yêu cầu trả hàng/hoàn tiền")
   @PostMapping("/orders/{orderId}/return")
   public ResponseEntity<ApiResponse<Void>> requestReturn(
       @AuthenticationPrincipal User user,
       @PathVariable UUID orderId,
-      @Valid @RequestBody ReturnRequest request) {
-    return ResponseEntity.ok(orderService.requestReturn(user, orderId, request));
+      @Valid @RequestBody ReturnRequest request,
+      @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+    return ResponseEntity.ok(idempotencyService.execute(user, "return:" + orderId, idempotencyKey, request,
+        Void.class, () -> orderService.requestReturn(user, orderId, request)));
   }
 
   // ── Address endpoints ──
@@ -112,4 +156,14 @@ public class UserController {
       @PathVariable UUID addressId) {
     return ResponseEntity.ok(addressService.setDefault(user, addressId));
   }
+
+  /** Header ngày không hợp lệ thì bỏ qua như đặc tả HTTP. */
+  private static Instant parseHttpDate(String value) {
+    if (value == null || value.isBlank()) return null;
+    try {
+      return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+    } catch (DateTimeParseException e) {
+      return null;
+    }
+  }
 }
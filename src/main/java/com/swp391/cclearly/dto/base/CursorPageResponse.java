@@ -0,0 +1,18 @@
+package com.swp391.cclearly.dto.base;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Trang kết quả phân trang theo cursor (keyset). Gửi lại nextCursor để lấy trang tiếp theo.
+ */
+@Data
+@Builder
+public class CursorPageResponse<T> {
+  private List<T> items;
+  private int size;
+  private String nextCursor; // null nếu đã hết dữ liệu
+  private boolean hasMore;
+  private Long totalElements; // chỉ có khi withTotal=true, là số ước lượng được cache ngắn hạn
+}
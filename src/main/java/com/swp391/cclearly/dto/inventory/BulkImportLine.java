@@ -0,0 +1,18 @@
+package com.swp391.cclearly.dto.inventory;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Một dòng trong file nhập kho hàng loạt. warehouse là tên kho hoặc ID kho.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkImportLine {
+  private String sku;
+  private String warehouse;
+  private Integer quantity;
+  private String reason;
+}
@@ -0,0 +1,28 @@
+package com.swp391.cclearly.dto.inventory;
+
+import java.util.List;
+import java.util.UUID;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class BulkImportResponse {
+  private UUID batchId; // reference_id của các movement trong lần nhập này
+  private int totalLines;
+  private int imported;
+  private int failed;
+  private long totalQuantity;
+  private List<LineResult> results;
+
+  @Data
+  @Builder
+  public static class LineResult {
+    private int line;
+    private String sku;
+    private String warehouse;
+    private Integer quantity;
+    private String status; // IMPORTED hoặc ERROR
+    private String message;
+  }
+}
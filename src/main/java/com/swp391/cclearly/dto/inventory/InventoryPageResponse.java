@@ -0,0 +1,21 @@
+package com.swp391.cclearly.dto.inventory;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class InventoryPageResponse {
+  private List<InventoryResponse> items;
+  private Meta meta;
+
+  @Data
+  @Builder
+  public static class Meta {
+    private int page;
+    private int size;
+    private long totalElements;
+    private int totalPages;
+  }
+}
@@ -0,0 +1,28 @@
+package com.swp391.cclearly.dto.inventory;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class LowStockFeedResponse {
+  private List<Event> events;
+  private String epoch; // đổi mỗi lần instance khởi động; gửi lại cùng since
+  private long latestSeq;
+  private boolean reset; // true: since đã quá cũ hoặc thuộc epoch khác, cần tải lại toàn bộ danh sách /low-stock
+
+  @Data
+  @Builder
+  public static class Event {
+    private long seq;
+    private String type; // ENTERED, UPDATED, CLEARED
+    private UUID warehouseId;
+    private UUID variantId;
+    private int quantity;
+    private int threshold;
+    private Instant at;
+  }
+}
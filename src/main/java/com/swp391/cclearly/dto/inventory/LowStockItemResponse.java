@@ -0,0 +1,18 @@
+package com.swp391.cclearly.dto.inventory;
+
+import java.time.Instant;
+import java.util.UUID;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class LowStockItemResponse {
+  private UUID warehouseId;
+  private UUID variantId;
+  private String variantSku;
+  private String productName;
+  private int quantity;
+  private int threshold;
+  private Instant since; // thời điểm bắt đầu dưới ngưỡng
+}
@@ -0,0 +1,23 @@
+package com.swp391.cclearly.dto.inventory;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class LowStockPageResponse {
+  private List<LowStockItemResponse> items;
+  private String epoch; // gửi kèm since cho /low-stock/changes
+  private long latestSeq; // dùng làm since cho /low-stock/changes
+  private Meta meta;
+
+  @Data
+  @Builder
+  public static class Meta {
+    private int page;
+    private int size;
+    private long totalElements;
+    private int totalPages;
+  }
+}
@@ -0,0 +1,20 @@
+package com.swp391.cclearly.dto.inventory;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import java.util.UUID;
+import lombok.Data;
+
+@Data
+public class ReorderThresholdRequest {
+
+  @NotNull(message = "ID kho không được để trống")
+  private UUID warehouseId;
+
+  @NotNull(message = "ID biến thể không được để trống")
+  private UUID variantId;
+
+  // null: bỏ ngưỡng riêng, quay về cấu hình low_stock_threshold
+  @Min(value = 0, message = "Ngưỡng phải >= 0")
+  private Integer threshold;
+}
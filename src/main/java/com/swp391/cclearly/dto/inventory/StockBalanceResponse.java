@@ -0,0 +1,19 @@
+package com.swp391.cclearly.dto.inventory;
+
+import java.util.UUID;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Tồn kho của một (kho, biến thể) tại một thời điểm hoặc trong một khoảng thời gian.
+ * Với truy vấn theo khoảng: opening là tồn đầu kỳ, quantity là tồn cuối kỳ, delta = quantity - opening.
+ */
+@Data
+@Builder
+public class StockBalanceResponse {
+  private UUID warehouseId;
+  private UUID variantId;
+  private Integer opening;
+  private int quantity;
+  private Integer delta;
+}
@@ -0,0 +1,21 @@
+package com.swp391.cclearly.dto.inventory;
+
+import java.time.Instant;
+import java.util.UUID;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class StockMovementResponse {
+  private UUID movementId;
+  private Instant createdAt;
+  private UUID warehouseId;
+  private UUID variantId;
+  private String variantSku;
+  private int quantity; // dương: nhập, âm: xuất
+  private Integer balanceAfter;
+  private String reason;
+  private String referenceType;
+  private UUID referenceId;
+}
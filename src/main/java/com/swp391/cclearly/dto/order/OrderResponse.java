@@ -5,11 +5,15 @@ import java.time.Instant;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 public class OrderResponse {
   private UUID orderId;
   private UUID userId;
@@ -32,10 +36,13 @@ public class OrderResponse {
   private LocalDate preorderDeadline;
   private String paymentType; // DEPOSIT or FULL
   private Instant createdAt;
+  private Instant updatedAt;
   private List<OrderItemResponse> items;
 
   @Data
   @Builder
+  @NoArgsConstructor
+  @AllArgsConstructor
   public static class OrderItemResponse {
     private UUID orderItemId;
     private String productName;
@@ -0,0 +1,28 @@
+package com.swp391.cclearly.dto.product;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Projection phẳng cho thẻ sản phẩm ở trang danh sách; giá sale nhỏ nhất và cờ sale được tính trong SQL.
+ */
+public interface ProductCardView {
+  UUID getProductId();
+
+  String getName();
+
+  String getCategoryType();
+
+  String getSubCategory();
+
+  BigDecimal getBasePrice();
+
+  Boolean getIsActive();
+
+  Instant getCreatedAt();
+
+  BigDecimal getMinSalePrice();
+
+  Boolean getIsSale();
+}
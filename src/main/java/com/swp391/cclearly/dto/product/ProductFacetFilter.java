@@ -0,0 +1,22 @@
+package com.swp391.cclearly.dto.product;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Bộ lọc catalog theo facet. Trong cùng một facet các giá trị là OR, giữa các facet là AND.
+ */
+@Data
+@Builder
+public class ProductFacetFilter {
+  private String type;
+  private List<String> shapes;
+  private List<String> materials;
+  private List<String> colors;
+  private List<String> refractiveIndexes;
+  private List<String> technologies;
+  private List<String> priceBands; // under-500k, 500k-1m, 1m-2m, 2m-up
+  private Integer lensWidthMin;
+  private Integer lensWidthMax;
+}
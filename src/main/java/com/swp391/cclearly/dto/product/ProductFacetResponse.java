@@ -0,0 +1,13 @@
+package com.swp391.cclearly.dto.product;
+
+import java.util.Map;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ProductFacetResponse {
+  private ProductPageResponse products;
+  // facet -> (giá trị -> số sản phẩm), đếm theo các bộ lọc của những facet còn lại
+  private Map<String, Map<String, Integer>> facets;
+}
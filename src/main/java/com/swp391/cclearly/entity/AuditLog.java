@@ -6,7 +6,10 @@ import java.util.UUID;
 import lombok.*;
 
 @Entity
-@Table(name = "Audit_Logs")
+@Table(name = "Audit_Logs", indexes = {
+    @Index(name = "IX_Audit_Logs_created", columnList = "created_at, log_id"),
+    @Index(name = "IX_Audit_Logs_action_created", columnList = "action, created_at, log_id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -15,7 +18,7 @@ import lombok.*;
 public class AuditLog {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedId
     @Column(name = "log_id")
     private UUID logId;
 
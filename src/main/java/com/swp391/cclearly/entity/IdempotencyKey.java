@@ -0,0 +1,43 @@
+package com.swp391.cclearly.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import lombok.*;
+
+/**
+ * Idempotency-Key đã dùng cho một yêu cầu thay đổi đơn hàng. Khóa lưu dạng băm (người dùng + thao tác + key),
+ * kèm băm nội dung yêu cầu và response đã trả để phát lại. Hết hạn theo expires_at.
+ */
+@Entity
+@Table(name = "Idempotency_Keys", indexes = {
+    @Index(name = "IX_Idempotency_Keys_expires", columnList = "expires_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyKey {
+
+  public static final String IN_PROGRESS = "IN_PROGRESS";
+  public static final String COMPLETED = "COMPLETED";
+
+  @Id
+  @Column(name = "key_hash", length = 64)
+  private String keyHash;
+
+  @Column(name = "request_hash", length = 64, nullable = false)
+  private String requestHash;
+
+  @Column(name = "status", length = 20, nullable = false)
+  private String status;
+
+  @Column(name = "response_body", columnDefinition = "NVARCHAR(MAX)")
+  private String responseBody;
+
+  @Column(name = "created_at", nullable = false)
+  private Instant createdAt;
+
+  @Column(name = "expires_at", nullable = false)
+  private Instant expiresAt;
+}
@@ -0,0 +1,60 @@
+package com.swp391.cclearly.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.util.UUID;
+import lombok.*;
+
+/**
+ * Lượng hàng đã trừ khỏi Inventory_Stock cho một dòng đơn hàng.
+ * COMMITTED: đang giữ cho đơn; RELEASED: đã trả lại kho (đơn bị hủy hoặc khách trả hàng).
+ */
+@Entity
+@Table(name = "Inventory_Reservations", indexes = {
+    @Index(name = "IX_Inventory_Reservations_order", columnList = "order_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InventoryReservation {
+
+  public static final String COMMITTED = "COMMITTED";
+  public static final String RELEASED = "RELEASED";
+
+  @Id
+  @TimeOrderedId
+  @Column(name = "reservation_id")
+  private UUID reservationId;
+
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "order_id")
+  private Order order;
+
+  @Column(name = "warehouse_id", nullable = false)
+  private UUID warehouseId;
+
+  @Column(name = "variant_id", nullable = false)
+  private UUID variantId;
+
+  @Column(name = "quantity", nullable = false)
+  private Integer quantity;
+
+  @Column(name = "status", length = 20, nullable = false)
+  private String status;
+
+  @Column(name = "created_at", nullable = false, updatable = false)
+  private Instant createdAt;
+
+  /**
+   * true khi hàng được trừ trong bộ nhớ (hot SKU) và chưa được ghi xuống Inventory_Stock.
+   */
+  @Column(name = "pending_flush")
+  private Boolean pendingFlush;
+
+  @PrePersist
+  protected void onCreate() {
+    if (createdAt == null) createdAt = Instant.now();
+  }
+}
@@ -4,7 +4,10 @@ import jakarta.persistence.*;
 import lombok.*;
 
 @Entity
-@Table(name = "Inventory_Stock")
+@Table(name = "Inventory_Stock", indexes = {
+    @Index(name = "IX_Inventory_Stock_variant", columnList = "variant_id, warehouse_id"),
+    @Index(name = "IX_Inventory_Stock_quantity", columnList = "quantity_on_hand")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -10,7 +10,12 @@ import java.util.UUID;
 import lombok.*;
 
 @Entity
-@Table(name = "Orders")
+@Table(name = "Orders", indexes = {
+    @Index(name = "IX_Orders_created", columnList = "created_at, order_id"),
+    @Index(name = "IX_Orders_status_created", columnList = "status, created_at, order_id"),
+    @Index(name = "IX_Orders_user_created", columnList = "user_id, created_at, order_id"),
+    @Index(name = "IX_Orders_user_updated", columnList = "user_id, updated_at, order_id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -19,7 +24,7 @@ import lombok.*;
 public class Order {
 
   @Id
-  @GeneratedValue(strategy = GenerationType.UUID)
+  @TimeOrderedId
   @Column(name = "order_id")
   private UUID orderId;
 
@@ -27,6 +32,7 @@ public class Order {
   @JoinColumn(name = "user_id")
   private User user;
 
+  // Unique (filtered, NOT NULL) index UX_Orders_code được tạo trong data.sql; mã cấp bởi OrderCodeService
   @Column(name = "code", length = 20)
   private String code;
 
@@ -46,6 +52,9 @@ public class Order {
   @Column(name = "created_at")
   private Instant createdAt;
 
+  @Column(name = "updated_at")
+  private Instant updatedAt;
+
   @Column(name = "is_preorder")
   private Boolean isPreorder;
 
@@ -63,14 +72,29 @@ public class Order {
   private Address address;
 
   @OneToMany(mappedBy = "order", cascade = CascadeType.ALL)
+  @Builder.Default
   private Set<OrderItem> orderItems = new HashSet<>();
 
   @OneToMany(mappedBy = "order", cascade = CascadeType.ALL)
+  @Builder.Default
   private Set<Payment> payments = new HashSet<>();
 
   @OneToMany(mappedBy = "order", cascade = CascadeType.ALL)
+  @Builder.Default
   private Set<Refund> refunds = new HashSet<>();
 
   @OneToMany(mappedBy = "order", cascade = CascadeType.ALL)
+  @Builder.Default
   private Set<OrderStatusLog> statusLogs = new HashSet<>();
+
+  @PrePersist
+  protected void onCreate() {
+    if (createdAt == null) createdAt = Instant.now();
+    updatedAt = createdAt;
+  }
+
+  @PreUpdate
+  protected void onUpdate() {
+    updatedAt = Instant.now();
+  }
 }
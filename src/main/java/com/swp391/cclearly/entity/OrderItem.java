@@ -15,7 +15,7 @@ import lombok.*;
 public class OrderItem {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedId
     @Column(name = "order_item_id")
     private UUID orderItemId;
 
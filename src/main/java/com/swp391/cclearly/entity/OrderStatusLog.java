@@ -14,7 +14,7 @@ import lombok.*;
 public class OrderStatusLog {
 
   @Id
-  @GeneratedValue(strategy = GenerationType.UUID)
+  @TimeOrderedId
   @Column(name = "log_id")
   private UUID logId;
 
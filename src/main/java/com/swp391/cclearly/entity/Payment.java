@@ -15,7 +15,7 @@ import lombok.*;
 public class Payment {
 
   @Id
-  @GeneratedValue(strategy = GenerationType.UUID)
+  @TimeOrderedId
   @Column(name = "payment_id")
   private UUID paymentId;
 
@@ -2,13 +2,16 @@ package com.swp391.cclearly.entity;
 
 import jakarta.persistence.*;
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
 import lombok.*;
 
 @Entity
-@Table(name = "Products")
+@Table(name = "Products", indexes = {
+    @Index(name = "IX_Products_active_created", columnList = "is_active, created_at, product_id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -39,6 +42,9 @@ public class Product {
   @Column(name = "is_active")
   private Boolean isActive;
 
+  @Column(name = "created_at")
+  private Instant createdAt;
+
   @OneToOne(mappedBy = "product", cascade = CascadeType.ALL)
   private ProductFrame productFrame;
 
@@ -50,4 +56,9 @@ public class Product {
 
   @OneToMany(mappedBy = "product", cascade = CascadeType.ALL)
   private Set<ProductImage> images = new HashSet<>();
+
+  @PrePersist
+  protected void onCreate() {
+    if (createdAt == null) createdAt = Instant.now();
+  }
 }
@@ -0,0 +1,26 @@
+package com.swp391.cclearly.entity;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import lombok.*;
+
+/**
+ * Số lượng bán và doanh thu theo sản phẩm trong từng tháng (chỉ tính đơn DELIVERED).
+ */
+@Entity
+@Table(name = "Product_Sales_Rollups")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductSalesRollup {
+
+  @EmbeddedId private ProductSalesRollupId id;
+
+  @Column(name = "units_sold")
+  private Long unitsSold;
+
+  @Column(name = "revenue", precision = 19, scale = 2)
+  private BigDecimal revenue;
+}
@@ -0,0 +1,22 @@
+package com.swp391.cclearly.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import java.io.Serializable;
+import java.util.UUID;
+import lombok.*;
+
+@Embeddable
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+public class ProductSalesRollupId implements Serializable {
+
+  @Column(name = "sales_month", length = 7)
+  private String salesMonth;
+
+  @Column(name = "product_id")
+  private UUID productId;
+}
@@ -9,7 +9,9 @@ import java.util.UUID;
 import lombok.*;
 
 @Entity
-@Table(name = "Product_Variants")
+@Table(name = "Product_Variants", indexes = {
+    @Index(name = "IX_Product_Variants_sku", columnList = "sku")
+})
 @Getter
 @Setter
 @NoArgsConstructor
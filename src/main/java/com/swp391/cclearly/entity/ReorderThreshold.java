@@ -0,0 +1,26 @@
+package com.swp391.cclearly.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import lombok.*;
+
+/**
+ * Ngưỡng đặt hàng lại của một (kho, biến thể). Không có dòng thì dùng cấu hình low_stock_threshold.
+ */
+@Entity
+@Table(name = "Reorder_Thresholds")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReorderThreshold {
+
+  @EmbeddedId private InventoryStockId id;
+
+  @Column(name = "threshold", nullable = false)
+  private Integer threshold;
+
+  @Column(name = "updated_at")
+  private Instant updatedAt;
+}
@@ -0,0 +1,29 @@
+package com.swp391.cclearly.entity;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import lombok.*;
+
+/**
+ * Doanh thu đã tổng hợp theo ngày (giờ Asia/Ho_Chi_Minh) của các đơn DELIVERED.
+ */
+@Entity
+@Table(name = "Sales_Daily_Rollups")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SalesDailyRollup {
+
+  @Id
+  @Column(name = "sales_date")
+  private LocalDate salesDate;
+
+  @Column(name = "revenue", precision = 19, scale = 2)
+  private BigDecimal revenue;
+
+  @Column(name = "order_count")
+  private Long orderCount;
+}
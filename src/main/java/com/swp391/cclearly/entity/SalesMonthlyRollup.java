@@ -0,0 +1,28 @@
+package com.swp391.cclearly.entity;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import lombok.*;
+
+/**
+ * Doanh thu đã tổng hợp theo tháng (yyyy-MM, giờ Asia/Ho_Chi_Minh) của các đơn DELIVERED.
+ */
+@Entity
+@Table(name = "Sales_Monthly_Rollups")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SalesMonthlyRollup {
+
+  @Id
+  @Column(name = "sales_month", length = 7)
+  private String salesMonth;
+
+  @Column(name = "revenue", precision = 19, scale = 2)
+  private BigDecimal revenue;
+
+  @Column(name = "order_count")
+  private Long orderCount;
+}
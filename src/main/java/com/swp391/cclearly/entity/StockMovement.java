@@ -1,11 +1,20 @@
 package com.swp391.cclearly.entity;
 
 import jakarta.persistence.*;
+import java.time.Instant;
 import java.util.UUID;
 import lombok.*;
 
+/**
+ * Sổ cái tồn kho (chỉ ghi thêm): mỗi dòng là một lần cộng/trừ Inventory_Stock của một (kho, biến thể),
+ * kèm số dư sau thay đổi và chứng từ gốc (đơn hàng, phiếu nhập, hoàn tiền...).
+ * Dòng cũ trước khi có sổ cái không có warehouse_id/created_at và bị bỏ qua khi tính tồn theo thời điểm.
+ */
 @Entity
-@Table(name = "Stock_Movements")
+@Table(name = "Stock_Movements", indexes = {
+    @Index(name = "IX_Stock_Movements_stock_created", columnList = "warehouse_id, variant_id, created_at"),
+    @Index(name = "IX_Stock_Movements_created", columnList = "created_at, movement_id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -13,8 +22,13 @@ import lombok.*;
 @Builder
 public class StockMovement {
 
+    public static final String REF_IMPORT = "IMPORT";
+    public static final String REF_ORDER = "ORDER";
+    public static final String REF_REFUND = "REFUND";
+    public static final String REF_HOT_SKU = "HOT_SKU";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedId
     @Column(name = "movement_id")
     private UUID movementId;
 
@@ -22,9 +36,29 @@ public class StockMovement {
     @JoinColumn(name = "variant_id")
     private ProductVariant variant;
 
+    @Column(name = "warehouse_id")
+    private UUID warehouseId;
+
     @Column(name = "reason", length = 50)
     private String reason;
 
     @Column(name = "quantity")
     private Integer quantity;
+
+    @Column(name = "balance_after")
+    private Integer balanceAfter;
+
+    @Column(name = "reference_type", length = 20)
+    private String referenceType;
+
+    @Column(name = "reference_id")
+    private UUID referenceId;
+
+    @Column(name = "created_at", updatable = false)
+    private Instant createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) createdAt = Instant.now();
+    }
 }
@@ -0,0 +1,23 @@
+package com.swp391.cclearly.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Số dư tồn kho của mỗi (kho, biến thể) tại thời điểm chụp. Tồn kho tại thời điểm X
+ * = snapshot gần nhất trước X + tổng Stock_Movements từ lúc chụp đến X.
+ */
+@Entity
+@Table(name = "Stock_Snapshots")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockSnapshot {
+
+  @EmbeddedId private StockSnapshotId id;
+
+  @Column(name = "quantity")
+  private Integer quantity;
+}
@@ -0,0 +1,33 @@
+package com.swp391.cclearly.entity;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import org.hibernate.annotations.IdGeneratorType;
+
+/**
+ * Khóa chính UUID tăng dần theo thời gian, thay cho @GeneratedValue(strategy = UUID) ngẫu nhiên
+ * trên các bảng ghi nhiều: id mới tăng dần so với nhau nên insert dồn về một điểm trong clustered
+ * index thay vì rơi ngẫu nhiên (dòng cũ từ NEWID() vẫn xen giữa, xem document/db/time-ordered-ids.sql).
+ */
+@IdGeneratorType(TimeOrderedIdGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface TimeOrderedId {
+
+  Style style() default Style.SQL_SERVER;
+
+  enum Style {
+    /**
+     * GUID tuần tự kiểu NEWSEQUENTIALID: timestamp nằm ở 6 byte cuối, là nhóm byte
+     * SQL Server so sánh đầu tiên khi sắp xếp uniqueidentifier.
+     */
+    SQL_SERVER,
+    /**
+     * UUIDv7 chuẩn RFC 9562 (timestamp ở 48 bit đầu); tăng dần khi so sánh theo byte/chuỗi,
+     * dùng khi dữ liệu được đọc bởi hệ thống khác ngoài SQL Server.
+     */
+    UUID_V7
+  }
+}
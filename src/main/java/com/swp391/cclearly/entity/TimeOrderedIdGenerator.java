@@ -0,0 +1,77 @@
+package com.swp391.cclearly.entity;
+
+import java.security.SecureRandom;
+import java.util.EnumSet;
+import java.util.UUID;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+/**
+ * Sinh UUID theo thời gian cho {@link TimeOrderedId}. Trong cùng một millisecond, bộ đếm 14 bit
+ * giữ thứ tự tăng dần; tràn bộ đếm thì mượn millisecond kế tiếp.
+ */
+public class TimeOrderedIdGenerator implements BeforeExecutionGenerator {
+
+  private static final SecureRandom RANDOM = new SecureRandom();
+  private static final int COUNTER_BITS = 14;
+  private static final int COUNTER_MASK = (1 << COUNTER_BITS) - 1;
+
+  private static long lastMillis;
+  private static int counter;
+
+  private final TimeOrderedId.Style style;
+
+  public TimeOrderedIdGenerator(TimeOrderedId config) {
+    this.style = config.style();
+  }
+
+  @Override
+  public Object generate(SharedSessionContractImplementor session, Object owner,
+      Object currentValue, EventType eventType) {
+    return generate(style);
+  }
+
+  @Override
+  public EnumSet<EventType> getEventTypes() {
+    return EventTypeSets.INSERT_ONLY;
+  }
+
+  public static UUID generate(TimeOrderedId.Style style) {
+    long millis;
+    int seq;
+    synchronized (TimeOrderedIdGenerator.class) {
+      long now = System.currentTimeMillis();
+      if (now > lastMillis) {
+        lastMillis = now;
+        counter = RANDOM.nextInt(1 << (COUNTER_BITS - 1));
+      } else if (++counter > COUNTER_MASK) {
+        lastMillis++;
+        counter = 0;
+      }
+      millis = lastMillis;
+      seq = counter;
+    }
+    long random = RANDOM.nextLong();
+    return style == TimeOrderedId.Style.UUID_V7 ? v7(millis, seq, random) : sqlServer(millis, seq, random);
+  }
+
+  /**
+   * xxxxxxxx-xxxx-8xxx-[var|seq]-[ms 48 bit]: SQL Server sắp theo 6 byte cuối, rồi tới 2 byte clock-seq.
+   */
+  private static UUID sqlServer(long millis, int seq, long random) {
+    long msb = (random & 0xFFFFFFFFFFFF0FFFL) | 0x8000L; // version 8 (custom)
+    long lsb = (0x8000L | seq) << 48 | (millis & 0xFFFFFFFFFFFFL);
+    return new UUID(msb, lsb);
+  }
+
+  /**
+   * [ms 48 bit]-7[seq cao 12 bit]-[var|seq thấp 2 bit|random]: UUIDv7 với bộ đếm trong rand_a.
+   */
+  private static UUID v7(long millis, int seq, long random) {
+    long msb = (millis & 0xFFFFFFFFFFFFL) << 16 | 0x7000L | ((seq >> 2) & 0x0FFF);
+    long lsb = 0x8000000000000000L | (long) (seq & 0x3) << 60 | (random & 0x0FFFFFFFFFFFFFFFL);
+    return new UUID(msb, lsb);
+  }
+}
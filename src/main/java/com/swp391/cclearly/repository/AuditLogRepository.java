@@ -2,10 +2,13 @@ package com.swp391.cclearly.repository;
 
 import com.swp391.cclearly.entity.AuditLog;
 import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -20,4 +23,20 @@ public interface AuditLogRepository extends JpaRepository<AuditLog, UUID> {
 
   Page<AuditLog> findByActionAndCreatedAtBetweenOrderByCreatedAtDesc(
       String action, Instant from, Instant to, Pageable pageable);
+
+  /**
+   * Phân trang keyset theo (createdAt, logId) giảm dần; các bộ lọc null được bỏ qua.
+   */
+  @Query("SELECT l FROM AuditLog l LEFT JOIN FETCH l.user "
+      + "WHERE (:action IS NULL OR l.action = :action) "
+      + "AND (:from IS NULL OR l.createdAt >= :from) AND (:to IS NULL OR l.createdAt <= :to) "
+      + "AND (:afterCreatedAt IS NULL OR l.createdAt < :afterCreatedAt "
+      + "OR (l.createdAt = :afterCreatedAt AND l.logId < :afterId)) "
+      + "ORDER BY l.createdAt DESC, l.logId DESC")
+  List<AuditLog> findKeysetPage(String action, Instant from, Instant to,
+      Instant afterCreatedAt, UUID afterId, Limit limit);
+
+  @Query("SELECT COUNT(l) FROM AuditLog l WHERE (:action IS NULL OR l.action = :action) "
+      + "AND (:from IS NULL OR l.createdAt >= :from) AND (:to IS NULL OR l.createdAt <= :to)")
+  long countFiltered(String action, Instant from, Instant to);
 }
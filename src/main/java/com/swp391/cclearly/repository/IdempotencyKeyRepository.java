@@ -0,0 +1,17 @@
+package com.swp391.cclearly.repository;
+
+import com.swp391.cclearly.entity.IdempotencyKey;
+import java.time.Instant;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+  @Modifying
+  @Query("UPDATE IdempotencyKey k SET k.status = 'COMPLETED', k.responseBody = :responseBody, "
+      + "k.expiresAt = :expiresAt WHERE k.keyHash = :keyHash")
+  int complete(String keyHash, String responseBody, Instant expiresAt);
+}
@@ -0,0 +1,44 @@
+package com.swp391.cclearly.repository;
+
+import com.swp391.cclearly.entity.InventoryReservation;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface InventoryReservationRepository extends JpaRepository<InventoryReservation, UUID> {
+
+  List<InventoryReservation> findByOrderOrderIdAndStatusIn(UUID orderId, Collection<String> statuses);
+
+  /**
+   * Chuyển trạng thái có điều kiện; trả về 0 nếu reservation đã được xử lý bởi luồng khác.
+   */
+  @Modifying
+  @Query("""
+      UPDATE InventoryReservation r SET r.status = :to
+      WHERE r.reservationId = :reservationId AND r.status = :from
+      """)
+  int transition(UUID reservationId, String from, String to);
+
+  /**
+   * Hàng hot SKU đã bán nhưng chưa ghi xuống Inventory_Stock: [warehouseId, variantId, tổng số lượng].
+   */
+  @Query("""
+      SELECT r.warehouseId, r.variantId, SUM(r.quantity) FROM InventoryReservation r
+      WHERE r.pendingFlush = true
+      GROUP BY r.warehouseId, r.variantId
+      """)
+  List<Object[]> sumPendingFlush();
+
+  @Modifying
+  @Query("UPDATE InventoryReservation r SET r.pendingFlush = false WHERE r.reservationId IN :reservationIds")
+  int markFlushed(Collection<UUID> reservationIds);
+
+  @Modifying
+  @Query("UPDATE InventoryReservation r SET r.pendingFlush = false WHERE r.pendingFlush = true")
+  int markAllFlushed();
+}
@@ -2,9 +2,83 @@ package com.swp391.cclearly.repository;
 
 import com.swp391.cclearly.entity.InventoryStock;
 import com.swp391.cclearly.entity.InventoryStockId;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface InventoryStockRepository extends JpaRepository<InventoryStock, InventoryStockId> {
+
+  /**
+   * Phase 1 của danh sách tồn kho: id các biến thể có tồn kho (tại kho được chọn) khớp tên/SKU.
+   */
+  @Query(value = """
+      SELECT v.variantId FROM ProductVariant v JOIN v.product p
+      WHERE EXISTS (SELECT 1 FROM InventoryStock s WHERE s.id.variantId = v.variantId
+          AND (:warehouseId IS NULL OR s.id.warehouseId = :warehouseId))
+        AND (:search IS NULL OR LOWER(p.name) LIKE :search OR LOWER(v.sku) LIKE :search)
+      ORDER BY p.name, v.sku, v.variantId
+      """,
+      countQuery = """
+      SELECT COUNT(v) FROM ProductVariant v JOIN v.product p
+      WHERE EXISTS (SELECT 1 FROM InventoryStock s WHERE s.id.variantId = v.variantId
+          AND (:warehouseId IS NULL OR s.id.warehouseId = :warehouseId))
+        AND (:search IS NULL OR LOWER(p.name) LIKE :search OR LOWER(v.sku) LIKE :search)
+      """)
+  Page<UUID> findVariantIds(UUID warehouseId, String search, Pageable pageable);
+
+  /**
+   * Phase 2: các dòng tồn kho của những biến thể đã chọn, nạp kèm kho, biến thể và sản phẩm trong một truy vấn.
+   */
+  @Query("""
+      SELECT s FROM InventoryStock s
+      JOIN FETCH s.warehouse
+      JOIN FETCH s.variant v
+      JOIN FETCH v.product
+      WHERE s.id.variantId IN :variantIds
+        AND (:warehouseId IS NULL OR s.id.warehouseId = :warehouseId)
+      """)
+  List<InventoryStock> findWithDetailsByVariantIdIn(Collection<UUID> variantIds, UUID warehouseId);
+
+  /**
+   * Các kho còn hàng của một biến thể, kho nhiều hàng nhất trước. Mỗi phần tử là [warehouseId, quantityOnHand].
+   */
+  @Query("""
+      SELECT s.id.warehouseId, s.quantityOnHand FROM InventoryStock s
+      WHERE s.id.variantId = :variantId AND s.quantityOnHand > 0
+      ORDER BY s.quantityOnHand DESC
+      """)
+  List<Object[]> findAvailableByVariantId(UUID variantId);
+
+  /**
+   * Tồn kho của các biến thể theo SKU, mỗi phần tử là [warehouseId, variantId, quantityOnHand].
+   */
+  @Query("""
+      SELECT s.id.warehouseId, s.id.variantId, s.quantityOnHand FROM InventoryStock s
+      WHERE s.variant.sku IN :skus
+      """)
+  List<Object[]> findStockRowsBySkuIn(Collection<String> skus);
+
+  /**
+   * Các dòng tồn kho không vượt quá mức cho trước: [warehouse_id, variant_id, quantity_on_hand, row_version].
+   */
+  @Query(value = """
+      SELECT warehouse_id, variant_id, quantity_on_hand, CAST(row_version AS BIGINT) FROM Inventory_Stock
+      WHERE quantity_on_hand IS NULL OR quantity_on_hand <= :maxQuantity
+      """, nativeQuery = true)
+  List<Object[]> findRowsAtOrBelow(int maxQuantity);
+
+  /**
+   * [quantity_on_hand, row_version] của một dòng tồn kho, rỗng nếu chưa có dòng.
+   */
+  @Query(value = """
+      SELECT quantity_on_hand, CAST(row_version AS BIGINT) FROM Inventory_Stock
+      WHERE warehouse_id = :warehouseId AND variant_id = :variantId
+      """, nativeQuery = true)
+  List<Object[]> findQuantityAndVersion(UUID warehouseId, UUID variantId);
 }
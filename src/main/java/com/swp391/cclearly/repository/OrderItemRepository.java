@@ -1,10 +1,37 @@
 package com.swp391.cclearly.repository;
 
 import com.swp391.cclearly.entity.OrderItem;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface OrderItemRepository extends JpaRepository<OrderItem, UUID> {
+
+  /**
+   * Trả về [createdAt, productId, unitPrice] của từng order item thuộc đơn có trạng thái chỉ định.
+   */
+  @Query("""
+      SELECT o.createdAt, v.product.productId, oi.unitPrice
+      FROM OrderItem oi JOIN oi.order o JOIN oi.variant v
+      WHERE o.status = :status AND o.createdAt IS NOT NULL
+      """)
+  Stream<Object[]> streamProductSalesRowsByStatus(String status);
+
+  /**
+   * Dòng hàng của nhiều đơn kèm biến thể và sản phẩm:
+   * [orderId, orderItemId, unitPrice, variantId, sku, colorName, productName, categoryType, prescriptionId].
+   */
+  @Query("""
+      SELECT oi.order.orderId, oi.orderItemId, oi.unitPrice, v.variantId, v.sku, v.colorName,
+             p.name, p.categoryType, pr.prescriptionId
+      FROM OrderItem oi JOIN oi.variant v JOIN v.product p LEFT JOIN oi.prescription pr
+      WHERE oi.order.orderId IN :orderIds
+      ORDER BY oi.orderItemId
+      """)
+  List<Object[]> findRowsByOrderIdIn(Collection<UUID> orderIds);
 }
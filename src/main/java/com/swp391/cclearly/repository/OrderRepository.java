@@ -2,8 +2,13 @@ package com.swp391.cclearly.repository;
 
 import com.swp391.cclearly.entity.Order;
 import com.swp391.cclearly.entity.User;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -13,12 +18,68 @@ import org.springframework.stereotype.Repository;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, UUID>, JpaSpecificationExecutor<Order> {
-  List<Order> findByUserOrderByOrderIdDesc(User user);
+  @Query("SELECT o FROM Order o LEFT JOIN FETCH o.address "
+      + "WHERE o.user = :user ORDER BY o.createdAt DESC, o.orderId DESC")
+  List<Order> findByUserOrderByCreatedAtDescOrderIdDesc(User user);
 
-  Page<Order> findAllByOrderByOrderIdDesc(Pageable pageable);
+  @Query(value = "SELECT o FROM Order o LEFT JOIN FETCH o.address "
+      + "ORDER BY o.createdAt DESC, o.orderId DESC",
+      countQuery = "SELECT COUNT(o) FROM Order o")
+  Page<Order> findAllByOrderByCreatedAtDescOrderIdDesc(Pageable pageable);
 
-  Page<Order> findByStatusOrderByOrderIdDesc(String status, Pageable pageable);
+  @Query(value = "SELECT o FROM Order o LEFT JOIN FETCH o.address "
+      + "WHERE o.status = :status ORDER BY o.createdAt DESC, o.orderId DESC",
+      countQuery = "SELECT COUNT(o) FROM Order o WHERE o.status = :status")
+  Page<Order> findByStatusOrderByCreatedAtDescOrderIdDesc(String status, Pageable pageable);
+
+  /**
+   * Phân trang keyset theo (createdAt, orderId) giảm dần. afterCreatedAt/afterId null cho trang đầu.
+   */
+  @Query("SELECT o FROM Order o LEFT JOIN FETCH o.address "
+      + "WHERE (:status IS NULL OR o.status = :status) "
+      + "AND (:afterCreatedAt IS NULL OR o.createdAt < :afterCreatedAt "
+      + "OR (o.createdAt = :afterCreatedAt AND o.orderId < :afterId)) "
+      + "ORDER BY o.createdAt DESC, o.orderId DESC")
+  List<Order> findKeysetPage(String status, Instant afterCreatedAt, UUID afterId, Limit limit);
+
+  /**
+   * Đơn của một khách theo keyset (createdAt, orderId) giảm dần.
+   */
+  @Query("SELECT o FROM Order o LEFT JOIN FETCH o.address WHERE o.user = :user "
+      + "AND (:afterCreatedAt IS NULL OR o.createdAt < :afterCreatedAt "
+      + "OR (o.createdAt = :afterCreatedAt AND o.orderId < :afterId)) "
+      + "ORDER BY o.createdAt DESC, o.orderId DESC")
+  List<Order> findUserKeysetPage(User user, Instant afterCreatedAt, UUID afterId, Limit limit);
+
+  /**
+   * Đơn của một khách được tạo/thay đổi sau vị trí (since, afterId) và không muộn hơn until,
+   * theo (updatedAt, orderId) tăng dần. afterId null nghĩa là chỉ lấy updatedAt > since.
+   */
+  @Query("SELECT o FROM Order o LEFT JOIN FETCH o.address WHERE o.user = :user "
+      + "AND (o.updatedAt > :since OR (o.updatedAt = :since AND o.orderId > :afterId)) "
+      + "AND o.updatedAt <= :until "
+      + "ORDER BY o.updatedAt ASC, o.orderId ASC")
+  List<Order> findUserChangesSince(User user, Instant since, UUID afterId, Instant until, Limit limit);
+
+  /**
+   * Khách của nhiều đơn: [orderId, userId, email, phoneNumber, fullName]. Đọc cột thay vì nạp entity User
+   * vì mỗi User nạp kéo theo các one-to-one ngược (customer, staff profile, cart).
+   */
+  @Query("""
+      SELECT o.orderId, u.userId, u.email, u.phoneNumber, u.fullName
+      FROM Order o JOIN o.user u
+      WHERE o.orderId IN :orderIds
+      """)
+  List<Object[]> findCustomerRowsByOrderIdIn(Collection<UUID> orderIds);
+
+  Optional<Order> findByCode(String code);
 
   @Query("SELECT COUNT(o) FROM Order o WHERE o.status = :status")
   long countByStatus(String status);
+
+  /**
+   * Trả về [createdAt, finalAmount] của các đơn có trạng thái chỉ định, dùng cho rebuild rollup.
+   */
+  @Query("SELECT o.createdAt, o.finalAmount FROM Order o WHERE o.status = :status AND o.createdAt IS NOT NULL")
+  Stream<Object[]> streamRevenueRowsByStatus(String status);
 }
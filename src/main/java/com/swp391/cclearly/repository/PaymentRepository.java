@@ -0,0 +1,23 @@
+package com.swp391.cclearly.repository;
+
+import com.swp391.cclearly.entity.Payment;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PaymentRepository extends JpaRepository<Payment, UUID> {
+
+  /**
+   * Thanh toán của nhiều đơn: [orderId, method, status, amount], cũ nhất trước.
+   */
+  @Query("""
+      SELECT p.order.orderId, p.method, p.status, p.amount FROM Payment p
+      WHERE p.order.orderId IN :orderIds
+      ORDER BY p.paymentId
+      """)
+  List<Object[]> findRowsByOrderIdIn(Collection<UUID> orderIds);
+}
@@ -2,10 +2,23 @@ package com.swp391.cclearly.repository;
 
 import com.swp391.cclearly.entity.ProductImage;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 @Repository
 public interface ProductImageRepository extends JpaRepository<ProductImage, UUID> {
+
+  /**
+   * Ảnh của nhiều biến thể: [variantId, imageUrl], theo displayOrder.
+   */
+  @Query("""
+      SELECT i.variant.variantId, i.imageUrl FROM ProductImage i
+      WHERE i.variant.variantId IN :variantIds
+      ORDER BY i.displayOrder, i.imageId
+      """)
+  List<Object[]> findUrlsByVariantIdIn(Collection<UUID> variantIds);
 }
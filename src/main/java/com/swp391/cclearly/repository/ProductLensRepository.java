@@ -2,10 +2,20 @@ package com.swp391.cclearly.repository;
 
 import com.swp391.cclearly.entity.ProductLens;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 @Repository
 public interface ProductLensRepository extends JpaRepository<ProductLens, UUID> {
+
+    @Query("SELECT DISTINCT l FROM ProductLens l LEFT JOIN FETCH l.technologies "
+        + "WHERE l.productId IN :productIds")
+    List<ProductLens> fetchTechnologiesByProductIdIn(Collection<UUID> productIds);
+
+    @Query("SELECT DISTINCT l FROM ProductLens l LEFT JOIN FETCH l.technologies")
+    List<ProductLens> fetchAllTechnologies();
 }
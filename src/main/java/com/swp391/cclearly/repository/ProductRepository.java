@@ -1,13 +1,133 @@
 package com.swp391.cclearly.repository;
 
+import com.swp391.cclearly.dto.product.ProductCardView;
 import com.swp391.cclearly.entity.Product;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, UUID>, JpaSpecificationExecutor<Product> {
     Optional<Product> findByName(String name);
+
+    /**
+     * Bước 1 của danh sách sản phẩm: chỉ phân trang id.
+     * type phải là chữ thường, search là pattern LIKE chữ thường (vd: %abc%), null để bỏ qua.
+     */
+    @Query(value = "SELECT p.productId FROM Product p WHERE p.isActive = true "
+        + "AND (:type IS NULL OR LOWER(p.categoryType) = :type) "
+        + "AND (:search IS NULL OR LOWER(p.name) LIKE :search) "
+        + "ORDER BY p.productId",
+        countQuery = "SELECT COUNT(p) FROM Product p WHERE p.isActive = true "
+        + "AND (:type IS NULL OR LOWER(p.categoryType) = :type) "
+        + "AND (:search IS NULL OR LOWER(p.name) LIKE :search)")
+    Page<UUID> findActiveIds(String type, String search, Pageable pageable);
+
+    /**
+     * Danh sách dạng thẻ: một truy vấn phẳng, không nạp entity variant/ảnh.
+     * Cùng điều kiện lọc và thứ tự với findActiveIds.
+     */
+    @Query(value = "SELECT p.productId AS productId, p.name AS name, p.categoryType AS categoryType, "
+        + "p.subCategory AS subCategory, p.basePrice AS basePrice, p.isActive AS isActive, "
+        + "p.createdAt AS createdAt, "
+        + "(SELECT MIN(v.salePrice) FROM ProductVariant v WHERE v.product = p) AS minSalePrice, "
+        + "CASE WHEN (SELECT MIN(v2.salePrice) FROM ProductVariant v2 WHERE v2.product = p) < p.basePrice "
+        + "THEN true ELSE false END AS isSale "
+        + "FROM Product p WHERE p.isActive = true "
+        + "AND (:type IS NULL OR LOWER(p.categoryType) = :type) "
+        + "AND (:search IS NULL OR LOWER(p.name) LIKE :search) "
+        + "ORDER BY p.productId",
+        countQuery = "SELECT COUNT(p) FROM Product p WHERE p.isActive = true "
+        + "AND (:type IS NULL OR LOWER(p.categoryType) = :type) "
+        + "AND (:search IS NULL OR LOWER(p.name) LIKE :search)")
+    Page<ProductCardView> findActiveCards(String type, String search, Pageable pageable);
+
+    @Query("SELECT p.productId AS productId, p.name AS name, p.categoryType AS categoryType, "
+        + "p.subCategory AS subCategory, p.basePrice AS basePrice, p.isActive AS isActive, "
+        + "p.createdAt AS createdAt, "
+        + "(SELECT MIN(v.salePrice) FROM ProductVariant v WHERE v.product = p) AS minSalePrice, "
+        + "CASE WHEN (SELECT MIN(v2.salePrice) FROM ProductVariant v2 WHERE v2.product = p) < p.basePrice "
+        + "THEN true ELSE false END AS isSale "
+        + "FROM Product p WHERE p.productId IN :ids")
+    List<ProductCardView> findCardsByIdIn(Collection<UUID> ids);
+
+    /**
+     * Thẻ sản phẩm phân trang keyset theo (createdAt, productId) giảm dần.
+     */
+    @Query("SELECT p.productId AS productId, p.name AS name, p.categoryType AS categoryType, "
+        + "p.subCategory AS subCategory, p.basePrice AS basePrice, p.isActive AS isActive, "
+        + "p.createdAt AS createdAt, "
+        + "(SELECT MIN(v.salePrice) FROM ProductVariant v WHERE v.product = p) AS minSalePrice, "
+        + "CASE WHEN (SELECT MIN(v2.salePrice) FROM ProductVariant v2 WHERE v2.product = p) < p.basePrice "
+        + "THEN true ELSE false END AS isSale "
+        + "FROM Product p WHERE p.isActive = true "
+        + "AND (:type IS NULL OR LOWER(p.categoryType) = :type) "
+        + "AND (:afterCreatedAt IS NULL OR p.createdAt < :afterCreatedAt "
+        + "OR (p.createdAt = :afterCreatedAt AND p.productId < :afterId)) "
+        + "ORDER BY p.createdAt DESC, p.productId DESC")
+    List<ProductCardView> findCardKeysetPage(
+        String type, Instant afterCreatedAt, UUID afterId, Limit limit);
+
+    @Query("SELECT COUNT(p) FROM Product p WHERE p.isActive = true "
+        + "AND (:type IS NULL OR LOWER(p.categoryType) = :type)")
+    long countActive(String type);
+
+    /**
+     * N ảnh đầu tiên của mỗi sản phẩm (ưu tiên ảnh cấp sản phẩm), mỗi dòng là [product_id, image_url].
+     */
+    @Query(value = "SELECT t.product_id, t.image_url FROM ("
+        + "SELECT i.product_id, i.image_url, ROW_NUMBER() OVER (PARTITION BY i.product_id "
+        + "ORDER BY CASE WHEN i.variant_id IS NULL THEN 0 ELSE 1 END, i.variant_id, "
+        + "i.display_order, i.image_id) AS rn "
+        + "FROM Product_Images i WHERE i.product_id IN (:productIds)) t "
+        + "WHERE t.rn <= :limit ORDER BY t.product_id, t.rn", nativeQuery = true)
+    List<Object[]> findFirstImageUrls(Collection<UUID> productIds, int limit);
+
+    // Bước 2: nạp theo lô cho tập id, mỗi quan hệ một truy vấn cố định
+
+    @Query("SELECT DISTINCT p FROM Product p "
+        + "LEFT JOIN FETCH p.productFrame LEFT JOIN FETCH p.productLens "
+        + "WHERE p.productId IN :ids")
+    List<Product> findWithAttributesByIdIn(Collection<UUID> ids);
+
+    @Query("SELECT DISTINCT p FROM Product p "
+        + "LEFT JOIN FETCH p.productFrame LEFT JOIN FETCH p.productLens "
+        + "WHERE p.isActive = true")
+    List<Product> findAllActiveWithAttributes();
+
+    /**
+     * Dấu vân tay rẻ của dữ liệu mà chỉ mục tìm kiếm/facet dùng (số dòng + CHECKSUM_AGG từng bảng).
+     * Đổi khi có ghi trực tiếp vào DB hoặc từ node khác, không cần ProductChangedEvent.
+     * Chạy ngoài transaction của bên gọi để lỗi ở đây không đánh dấu rollback-only lần dựng chỉ mục.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @Query(value = "SELECT CONCAT("
+        + "(SELECT COUNT_BIG(*) FROM Products), ':', (SELECT CHECKSUM_AGG(BINARY_CHECKSUM(*)) FROM Products), ':', "
+        + "(SELECT COUNT_BIG(*) FROM Product_Frames), ':', "
+        + "(SELECT CHECKSUM_AGG(BINARY_CHECKSUM(*)) FROM Product_Frames), ':', "
+        + "(SELECT COUNT_BIG(*) FROM Product_Lenses), ':', "
+        + "(SELECT CHECKSUM_AGG(BINARY_CHECKSUM(*)) FROM Product_Lenses), ':', "
+        + "(SELECT COUNT_BIG(*) FROM Product_Lens_Tech_Map), ':', "
+        + "(SELECT CHECKSUM_AGG(BINARY_CHECKSUM(*)) FROM Product_Lens_Tech_Map), ':', "
+        + "(SELECT CHECKSUM_AGG(BINARY_CHECKSUM(*)) FROM Master_Lens_Technologies), ':', "
+        + "(SELECT COUNT_BIG(*) FROM Product_Variants), ':', "
+        + "(SELECT CHECKSUM_AGG(BINARY_CHECKSUM(*)) FROM Product_Variants))", nativeQuery = true)
+    String catalogFingerprint();
+
+    @Query("SELECT DISTINCT p FROM Product p LEFT JOIN FETCH p.images WHERE p.productId IN :ids")
+    List<Product> fetchImagesByIdIn(Collection<UUID> ids);
+
+    @Query("SELECT DISTINCT p FROM Product p LEFT JOIN FETCH p.variants WHERE p.productId IN :ids")
+    List<Product> fetchVariantsByIdIn(Collection<UUID> ids);
 }
@@ -0,0 +1,40 @@
+package com.swp391.cclearly.repository;
+
+import com.swp391.cclearly.entity.ProductSalesRollup;
+import com.swp391.cclearly.entity.ProductSalesRollupId;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ProductSalesRollupRepository
+    extends JpaRepository<ProductSalesRollup, ProductSalesRollupId> {
+
+  /**
+   * Trả về [productId, unitsSold, revenue] sắp xếp theo số lượng bán giảm dần.
+   */
+  @Query("""
+      SELECT r.id.productId, SUM(r.unitsSold), SUM(r.revenue)
+      FROM ProductSalesRollup r
+      GROUP BY r.id.productId
+      HAVING SUM(r.unitsSold) > 0
+      ORDER BY SUM(r.unitsSold) DESC
+      """)
+  List<Object[]> findTopProducts(Pageable pageable);
+
+  @Modifying
+  @Query(value = """
+      MERGE Product_Sales_Rollups WITH (HOLDLOCK) AS t
+      USING (SELECT :salesMonth AS sales_month, :productId AS product_id) AS s
+        ON t.sales_month = s.sales_month AND t.product_id = s.product_id
+      WHEN MATCHED THEN UPDATE SET units_sold = t.units_sold + :units, revenue = t.revenue + :revenue
+      WHEN NOT MATCHED THEN INSERT (sales_month, product_id, units_sold, revenue)
+        VALUES (:salesMonth, :productId, :units, :revenue);
+      """, nativeQuery = true)
+  void applyDelta(String salesMonth, UUID productId, long units, BigDecimal revenue);
+}
@@ -2,12 +2,42 @@ package com.swp391.cclearly.repository;
 
 import com.swp391.cclearly.entity.ProductVariant;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface ProductVariantRepository extends JpaRepository<ProductVariant, UUID> {
     Optional<ProductVariant> findBySku(String sku);
+
+    @Query("SELECT DISTINCT v FROM ProductVariant v LEFT JOIN FETCH v.images "
+        + "WHERE v.product.productId IN :productIds")
+    List<ProductVariant> fetchImagesByProductIdIn(Collection<UUID> productIds);
+
+    /**
+     * Dữ liệu facet của variant: [productId, colorName, refractiveIndex, salePrice].
+     */
+    @Query("SELECT v.product.productId, v.colorName, v.refractiveIndex, v.salePrice "
+        + "FROM ProductVariant v WHERE v.product.isActive = true")
+    List<Object[]> findFacetRowsForActiveProducts();
+
+    @Query("SELECT v.product.productId, v.colorName, v.refractiveIndex, v.salePrice "
+        + "FROM ProductVariant v WHERE v.product.productId = :productId")
+    List<Object[]> findFacetRowsByProductId(UUID productId);
+
+    /**
+     * Tra cứu SKU hàng loạt: [sku, variantId].
+     */
+    @Query("SELECT v.sku, v.variantId FROM ProductVariant v WHERE v.sku IN :skus")
+    List<Object[]> findIdsBySkuIn(Collection<String> skus);
+
+    /**
+     * Nhãn hiển thị của biến thể: [variantId, sku, productName].
+     */
+    @Query("SELECT v.variantId, v.sku, v.product.name FROM ProductVariant v WHERE v.variantId IN :variantIds")
+    List<Object[]> findLabelsByIdIn(Collection<UUID> variantIds);
 }
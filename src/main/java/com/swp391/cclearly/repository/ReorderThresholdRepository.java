@@ -0,0 +1,10 @@
+package com.swp391.cclearly.repository;
+
+import com.swp391.cclearly.entity.InventoryStockId;
+import com.swp391.cclearly.entity.ReorderThreshold;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReorderThresholdRepository extends JpaRepository<ReorderThreshold, InventoryStockId> {
+}
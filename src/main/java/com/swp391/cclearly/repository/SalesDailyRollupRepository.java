@@ -0,0 +1,25 @@
+package com.swp391.cclearly.repository;
+
+import com.swp391.cclearly.entity.SalesDailyRollup;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SalesDailyRollupRepository extends JpaRepository<SalesDailyRollup, LocalDate> {
+
+  List<SalesDailyRollup> findBySalesDateBetweenOrderBySalesDateAsc(LocalDate from, LocalDate to);
+
+  @Modifying
+  @Query(value = """
+      MERGE Sales_Daily_Rollups WITH (HOLDLOCK) AS t
+      USING (SELECT :salesDate AS sales_date) AS s ON t.sales_date = s.sales_date
+      WHEN MATCHED THEN UPDATE SET revenue = t.revenue + :revenue, order_count = t.order_count + :orders
+      WHEN NOT MATCHED THEN INSERT (sales_date, revenue, order_count) VALUES (:salesDate, :revenue, :orders);
+      """, nativeQuery = true)
+  void applyDelta(LocalDate salesDate, BigDecimal revenue, long orders);
+}
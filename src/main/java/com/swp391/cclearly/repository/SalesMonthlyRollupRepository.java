@@ -0,0 +1,27 @@
+package com.swp391.cclearly.repository;
+
+import com.swp391.cclearly.entity.SalesMonthlyRollup;
+import java.math.BigDecimal;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SalesMonthlyRollupRepository extends JpaRepository<SalesMonthlyRollup, String> {
+
+  List<SalesMonthlyRollup> findBySalesMonthBetweenOrderBySalesMonthAsc(String from, String to);
+
+  @Query("SELECT COALESCE(SUM(r.revenue), 0) FROM SalesMonthlyRollup r")
+  BigDecimal sumRevenue();
+
+  @Modifying
+  @Query(value = """
+      MERGE Sales_Monthly_Rollups WITH (HOLDLOCK) AS t
+      USING (SELECT :salesMonth AS sales_month) AS s ON t.sales_month = s.sales_month
+      WHEN MATCHED THEN UPDATE SET revenue = t.revenue + :revenue, order_count = t.order_count + :orders
+      WHEN NOT MATCHED THEN INSERT (sales_month, revenue, order_count) VALUES (:salesMonth, :revenue, :orders);
+      """, nativeQuery = true)
+  void applyDelta(String salesMonth, BigDecimal revenue, long orders);
+}
@@ -1,10 +1,35 @@
 package com.swp391.cclearly.repository;
 
 import com.swp391.cclearly.entity.StockMovement;
+import java.time.Instant;
 import java.util.UUID;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface StockMovementRepository extends JpaRepository<StockMovement, UUID> {
+
+  /**
+   * Sổ cái tồn kho, mới nhất trước, lọc theo kho/biến thể/khoảng thời gian [from, to).
+   */
+  @Query(value = """
+      SELECT m FROM StockMovement m JOIN FETCH m.variant v
+      WHERE (:warehouseId IS NULL OR m.warehouseId = :warehouseId)
+        AND (:variantId IS NULL OR v.variantId = :variantId)
+        AND (:from IS NULL OR m.createdAt >= :from)
+        AND (:to IS NULL OR m.createdAt < :to)
+      ORDER BY m.createdAt DESC, m.movementId DESC
+      """,
+      countQuery = """
+      SELECT COUNT(m) FROM StockMovement m
+      WHERE (:warehouseId IS NULL OR m.warehouseId = :warehouseId)
+        AND (:variantId IS NULL OR m.variant.variantId = :variantId)
+        AND (:from IS NULL OR m.createdAt >= :from)
+        AND (:to IS NULL OR m.createdAt < :to)
+      """)
+  Page<StockMovement> findLedger(UUID warehouseId, UUID variantId, Instant from, Instant to,
+      Pageable pageable);
 }
@@ -2,6 +2,8 @@ package com.swp391.cclearly.repository;
 
 import com.swp391.cclearly.entity.SystemConfig;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -9,4 +11,22 @@ import java.util.Optional;
 @Repository
 public interface SystemConfigRepository extends JpaRepository<SystemConfig, String> {
     Optional<SystemConfig> findByConfigKey(String configKey);
+
+    /**
+     * Tăng config_version một cách nguyên tử, trả về số dòng bị ảnh hưởng (0 nếu chưa có dòng).
+     */
+    @Modifying
+    @Query(value = "UPDATE System_Configs "
+        + "SET config_value = CAST(CAST(config_value AS BIGINT) + 1 AS NVARCHAR(MAX)) "
+        + "WHERE config_key = 'config_version'", nativeQuery = true)
+    int incrementVersion();
+
+    /**
+     * Dấu vân tay toàn bảng (số dòng + CHECKSUM_AGG), đổi cả khi cấu hình bị sửa trực tiếp trong DB
+     * mà không tăng config_version.
+     */
+    @Query(value = "SELECT CONCAT(COUNT_BIG(*), ':', "
+        + "CHECKSUM_AGG(CHECKSUM(config_key, config_value, config_group))) FROM System_Configs",
+        nativeQuery = true)
+    String fingerprint();
 }
@@ -17,6 +17,9 @@ public interface UserRepository extends JpaRepository<User, UUID> {
   @Query("SELECT u FROM User u JOIN FETCH u.role WHERE u.userId = :userId")
   Optional<User> findByIdWithRole(UUID userId);
 
+  @Query("SELECT u FROM User u LEFT JOIN FETCH u.role WHERE u.email = :email")
+  Optional<User> findByEmailWithRole(String email);
+
   boolean existsByEmail(String email);
 
   boolean existsByPhoneNumber(String phoneNumber);
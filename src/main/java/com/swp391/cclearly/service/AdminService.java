@@ -10,8 +10,11 @@ import com.swp391.cclearly.dto.admin.SystemSettingResponse;
 import com.swp391.cclearly.dto.admin.UpdateSettingsRequest;
 import com.swp391.cclearly.dto.admin.UpdateUserRequest;
 import com.swp391.cclearly.dto.base.ApiResponse;
+import com.swp391.cclearly.dto.base.CursorPageResponse;
 import com.swp391.cclearly.entity.AuditLog;
-import com.swp391.cclearly.entity.Order;
+import com.swp391.cclearly.entity.Product;
+import com.swp391.cclearly.entity.SalesDailyRollup;
+import com.swp391.cclearly.entity.SalesMonthlyRollup;
 import com.swp391.cclearly.entity.SystemConfig;
 import com.swp391.cclearly.entity.User;
 import com.swp391.cclearly.exception.BadRequestException;
@@ -37,11 +40,13 @@ import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 @Service
@@ -56,6 +61,11 @@ public class AdminService {
   private final RoleRepository roleRepository;
   private final AuditLogRepository auditLogRepository;
   private final AuditLogService auditLogService;
+  private final SalesRollupService salesRollupService;
+  private final PrincipalCacheService principalCacheService;
+  private final SystemConfigService systemConfigService;
+  private final CountCacheService countCacheService;
+  private final AuditLogRetentionService auditLogRetentionService;
   private final PasswordEncoder passwordEncoder;
 
   public ApiResponse<DashboardStatsResponse> getDashboardStats() {
@@ -68,17 +78,8 @@ public class AdminService {
     long deliveredOrders = orderRepository.countByStatus("DELIVERED");
     long cancelledOrders = orderRepository.countByStatus("CANCELLED");
 
-    // Total revenue from delivered orders
-    ZoneId zoneId = ZoneId.of("Asia/Ho_Chi_Minh");
-    List<Order> allOrders = orderRepository.findAll();
-    List<Order> deliveredOrderList = allOrders.stream()
-        .filter(o -> "DELIVERED".equals(o.getStatus()))
-        .collect(Collectors.toList());
-
-    BigDecimal totalRevenue = deliveredOrderList.stream()
-        .map(Order::getFinalAmount)
-        .filter(a -> a != null)
-        .reduce(BigDecimal.ZERO, BigDecimal::add);
+    // Total revenue from delivered orders (read from rollups, not from Orders)
+    BigDecimal totalRevenue = salesRollupService.getTotalRevenue();
 
     // Orders by status
     Map<String, Long> ordersByStatus = new HashMap<>();
@@ -88,59 +89,36 @@ public class AdminService {
     ordersByStatus.put("CANCELLED", cancelledOrders);
 
     // Revenue by month (last 6 months)
-    YearMonth currentMonth = YearMonth.now(zoneId);
+    YearMonth currentMonth = YearMonth.now(SalesRollupService.ZONE);
+    Map<YearMonth, SalesMonthlyRollup> monthly =
+        salesRollupService.getMonthly(currentMonth.minusMonths(5), currentMonth);
     List<DashboardStatsResponse.RevenueByMonth> revenueByMonth = new ArrayList<>();
     for (int i = 5; i >= 0; i--) {
       YearMonth ym = currentMonth.minusMonths(i);
-      String monthLabel = String.valueOf(ym.getMonthValue());
-      BigDecimal monthRevenue = BigDecimal.ZERO;
-      long monthOrders = 0;
-      for (Order o : deliveredOrderList) {
-        if (o.getCreatedAt() != null) {
-          YearMonth orderYm = YearMonth.from(o.getCreatedAt().atZone(zoneId));
-          if (orderYm.equals(ym)) {
-            monthRevenue = monthRevenue.add(
-                o.getFinalAmount() != null ? o.getFinalAmount() : BigDecimal.ZERO);
-            monthOrders++;
-          }
-        }
-      }
+      SalesMonthlyRollup rollup = monthly.get(ym);
       revenueByMonth.add(DashboardStatsResponse.RevenueByMonth.builder()
-          .month(monthLabel)
-          .revenue(monthRevenue)
-          .orders(monthOrders)
+          .month(String.valueOf(ym.getMonthValue()))
+          .revenue(rollup != null ? rollup.getRevenue() : BigDecimal.ZERO)
+          .orders(rollup != null ? rollup.getOrderCount() : 0)
           .build());
     }
 
     // Top products (from delivered order items)
-    Map<UUID, String> productNames = new HashMap<>();
-    Map<UUID, String> productTypes = new HashMap<>();
-    Map<UUID, Long> productSold = new HashMap<>();
-    Map<UUID, BigDecimal> productRevenue = new HashMap<>();
-    for (Order o : deliveredOrderList) {
-      if (o.getOrderItems() != null) {
-        for (var item : o.getOrderItems()) {
-          if (item.getVariant() != null && item.getVariant().getProduct() != null) {
-            UUID productId = item.getVariant().getProduct().getProductId();
-            productNames.putIfAbsent(productId, item.getVariant().getProduct().getName());
-            productTypes.putIfAbsent(productId, item.getVariant().getProduct().getCategoryType());
-            productSold.merge(productId, 1L, Long::sum);
-            productRevenue.merge(productId,
-                item.getUnitPrice() != null ? item.getUnitPrice() : BigDecimal.ZERO,
-                BigDecimal::add);
-          }
-        }
-      }
-    }
-    List<DashboardStatsResponse.TopProduct> topProducts = productSold.entrySet().stream()
-        .sorted(Map.Entry.<UUID, Long>comparingByValue().reversed())
-        .limit(5)
-        .map(e -> DashboardStatsResponse.TopProduct.builder()
-            .name(productNames.get(e.getKey()))
-            .type(productTypes.get(e.getKey()))
-            .sold(e.getValue())
-            .revenue(productRevenue.get(e.getKey()))
-            .build())
+    List<Object[]> topRows = salesRollupService.getTopProducts(5);
+    Map<UUID, Product> products = productRepository.findAllById(
+            topRows.stream().map(r -> (UUID) r[0]).collect(Collectors.toList()))
+        .stream()
+        .collect(Collectors.toMap(Product::getProductId, p -> p));
+    List<DashboardStatsResponse.TopProduct> topProducts = topRows.stream()
+        .map(r -> {
+          Product product = products.get((UUID) r[0]);
+          return DashboardStatsResponse.TopProduct.builder()
+              .name(product != null ? product.getName() : null)
+              .type(product != null ? product.getCategoryType() : null)
+              .sold(((Number) r[1]).longValue())
+              .revenue((BigDecimal) r[2])
+              .build();
+        })
         .collect(Collectors.toList());
 
     DashboardStatsResponse stats = DashboardStatsResponse.builder()
@@ -207,39 +185,24 @@ public class AdminService {
     }
 
     userRepository.save(user);
+    principalCacheService.evict(user);
     auditLogService.log("UPDATE_USER",
         "Cập nhật người dùng: " + user.getEmail());
     return ApiResponse.success("Cập nhật người dùng thành công", toAdminUserResponse(user));
   }
 
   public ApiResponse<RevenueResponse> getRevenue(int days) {
-    ZoneId zoneId = ZoneId.of("Asia/Ho_Chi_Minh");
-    List<Order> deliveredOrders = orderRepository.findAll().stream()
-        .filter(o -> "DELIVERED".equals(o.getStatus()))
-        .collect(Collectors.toList());
-
-    BigDecimal totalRevenue = deliveredOrders.stream()
-        .map(Order::getFinalAmount)
-        .filter(a -> a != null)
-        .reduce(BigDecimal.ZERO, BigDecimal::add);
+    BigDecimal totalRevenue = salesRollupService.getTotalRevenue();
 
     // This month / Last month revenue
-    YearMonth thisMonth = YearMonth.now(zoneId);
+    YearMonth thisMonth = YearMonth.now(SalesRollupService.ZONE);
     YearMonth lastMonth = thisMonth.minusMonths(1);
+    Map<YearMonth, SalesMonthlyRollup> monthly = salesRollupService.getMonthly(lastMonth, thisMonth);
 
-    BigDecimal thisMonthRevenue = BigDecimal.ZERO;
-    BigDecimal lastMonthRevenue = BigDecimal.ZERO;
-
-    for (Order o : deliveredOrders) {
-      if (o.getCreatedAt() != null && o.getFinalAmount() != null) {
-        YearMonth orderYm = YearMonth.from(o.getCreatedAt().atZone(zoneId));
-        if (orderYm.equals(thisMonth)) {
-          thisMonthRevenue = thisMonthRevenue.add(o.getFinalAmount());
-        } else if (orderYm.equals(lastMonth)) {
-          lastMonthRevenue = lastMonthRevenue.add(o.getFinalAmount());
-        }
-      }
-    }
+    BigDecimal thisMonthRevenue = monthly.containsKey(thisMonth)
+        ? monthly.get(thisMonth).getRevenue() : BigDecimal.ZERO;
+    BigDecimal lastMonthRevenue = monthly.containsKey(lastMonth)
+        ? monthly.get(lastMonth).getRevenue() : BigDecimal.ZERO;
 
     double growthPercent = 0.0;
     if (lastMonthRevenue.compareTo(BigDecimal.ZERO) > 0) {
@@ -250,27 +213,20 @@ public class AdminService {
 
     // Revenue by day (last N days)
     int numDays = Math.max(1, Math.min(days, 365));
-    LocalDate today = LocalDate.now(zoneId);
+    LocalDate today = LocalDate.now(SalesRollupService.ZONE);
+    Map<LocalDate, SalesDailyRollup> daily = salesRollupService
+        .getDaily(today.minusDays(numDays - 1), today)
+        .stream()
+        .collect(Collectors.toMap(SalesDailyRollup::getSalesDate, d -> d));
     DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     List<RevenueResponse.DailyRevenue> revenueByDay = new ArrayList<>();
     for (int i = numDays - 1; i >= 0; i--) {
       LocalDate day = today.minusDays(i);
-      BigDecimal dayRevenue = BigDecimal.ZERO;
-      long dayOrders = 0;
-      for (Order o : deliveredOrders) {
-        if (o.getCreatedAt() != null) {
-          LocalDate orderDate = o.getCreatedAt().atZone(zoneId).toLocalDate();
-          if (orderDate.equals(day)) {
-            dayRevenue = dayRevenue.add(
-                o.getFinalAmount() != null ? o.getFinalAmount() : BigDecimal.ZERO);
-            dayOrders++;
-          }
-        }
-      }
+      SalesDailyRollup rollup = daily.get(day);
       revenueByDay.add(RevenueResponse.DailyRevenue.builder()
           .date(day.format(dateFormatter))
-          .revenue(dayRevenue)
-          .orders(dayOrders)
+          .revenue(rollup != null ? rollup.getRevenue() : BigDecimal.ZERO)
+          .orders(rollup != null ? rollup.getOrderCount() : 0)
           .build());
     }
 
@@ -285,9 +241,31 @@ public class AdminService {
     return ApiResponse.success("Lấy doanh thu thành công", response);
   }
 
+  /**
+   * Xây lại bảng tổng hợp doanh thu từ dữ liệu đơn hàng (backfill).
+   */
+  @Transactional
+  public ApiResponse<Void> rebuildRevenueRollups() {
+    salesRollupService.rebuild();
+    auditLogService.log("REBUILD_REVENUE_ROLLUPS", "Xây lại bảng tổng hợp doanh thu");
+    return ApiResponse.success("Đã xây lại dữ liệu doanh thu", null);
+  }
+
+  /**
+   * Xuất ra file nén và xóa nhật ký hệ thống đã quá hạn lưu trữ.
+   * Chạy ngoài transaction để mỗi lô DELETE tự commit.
+   */
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  public ApiResponse<List<String>> archiveAuditLogs() {
+    List<String> months = auditLogRetentionService.archiveExpired();
+    auditLogService.log("ARCHIVE_AUDIT_LOGS", "Lưu trữ nhật ký hệ thống các tháng: " + months);
+    return ApiResponse.success("Đã lưu trữ nhật ký hệ thống", months);
+  }
+
   public ApiResponse<List<SystemSettingResponse>> getSettings() {
     List<SystemConfig> configs = systemConfigRepository.findAll();
     List<SystemSettingResponse> response = configs.stream()
+        .filter(c -> !SystemConfigService.VERSION_KEY.equals(c.getConfigKey()))
         .map(c -> SystemSettingResponse.builder()
             .key(c.getConfigKey())
             .value(c.getConfigValue())
@@ -300,6 +278,11 @@ public class AdminService {
   @Transactional
   public ApiResponse<List<SystemSettingResponse>> updateSettings(UpdateSettingsRequest request) {
     if (request.getSettings() != null) {
+      for (String key : request.getSettings().keySet()) {
+        if (SystemConfigService.RESERVED_KEYS.contains(key)) {
+          throw new BadRequestException("Không thể cập nhật cấu hình hệ thống nội bộ: " + key);
+        }
+      }
       for (var entry : request.getSettings().entrySet()) {
         SystemConfig config = systemConfigRepository.findByConfigKey(entry.getKey())
             .orElse(SystemConfig.builder()
@@ -309,6 +292,7 @@ public class AdminService {
         config.setConfigValue(entry.getValue());
         systemConfigRepository.save(config);
       }
+      systemConfigService.markChanged();
     }
     auditLogService.log("UPDATE_SETTINGS",
         "Cập nhật cấu hình hệ thống: " + request.getSettings().keySet());
@@ -362,6 +346,7 @@ public class AdminService {
 
     user.setStatus("INACTIVE");
     userRepository.save(user);
+    principalCacheService.evict(user);
     auditLogService.log("BAN_ACCOUNT",
         "Khóa tài khoản " + user.getEmail());
 
@@ -400,17 +385,7 @@ public class AdminService {
     }
 
     List<AuditLogResponse> items = logPage.getContent().stream()
-        .map(log -> AuditLogResponse.builder()
-            .logId(log.getLogId())
-            .userId(log.getUser() != null ? log.getUser().getUserId().toString() : null)
-            .userName(log.getUser() != null ? log.getUser().getFullName() : "System")
-            .action(log.getAction())
-            .details(log.getDetails())
-            .oldValue(log.getOldValue())
-            .newValue(log.getNewValue())
-            .ipAddress(log.getIpAddress())
-            .createdAt(log.getCreatedAt())
-            .build())
+        .map(this::toAuditLogResponse)
         .collect(Collectors.toList());
 
     AuditLogPageResponse response = AuditLogPageResponse.builder()
@@ -426,6 +401,56 @@ public class AdminService {
     return ApiResponse.success("Lấy nhật ký hệ thống thành công", response);
   }
 
+  /**
+   * Nhật ký hệ thống phân trang theo cursor (createdAt, logId), không chạy COUNT trừ khi withTotal.
+   */
+  public ApiResponse<CursorPageResponse<AuditLogResponse>> getAuditLogsByCursor(
+      String action, LocalDate fromDate, LocalDate toDate, String cursor, int size,
+      boolean withTotal) {
+    KeysetCursor after = KeysetCursor.decode(cursor);
+    size = KeysetCursor.clampSize(size);
+    String actionFilter = (action != null && !action.isBlank()) ? action : null;
+    Instant from = (fromDate != null)
+        ? fromDate.atStartOfDay(ZoneId.systemDefault()).toInstant()
+        : null;
+    Instant to = (toDate != null)
+        ? toDate.atTime(LocalTime.MAX).atZone(ZoneId.systemDefault()).toInstant()
+        : null;
+
+    List<AuditLog> rows = auditLogRepository.findKeysetPage(actionFilter, from, to,
+        after != null ? after.createdAt() : null, after != null ? after.id() : null,
+        Limit.of(size + 1));
+    boolean hasMore = rows.size() > size;
+    List<AuditLog> pageRows = hasMore ? rows.subList(0, size) : rows;
+    AuditLog last = pageRows.isEmpty() ? null : pageRows.get(pageRows.size() - 1);
+
+    CursorPageResponse<AuditLogResponse> response = CursorPageResponse.<AuditLogResponse>builder()
+        .items(pageRows.stream().map(this::toAuditLogResponse).collect(Collectors.toList()))
+        .size(size)
+        .hasMore(hasMore)
+        .nextCursor(hasMore ? new KeysetCursor(last.getCreatedAt(), last.getLogId()).encode() : null)
+        .totalElements(withTotal
+            ? countCacheService.get("auditLogs:" + actionFilter + ":" + from + ":" + to,
+                () -> auditLogRepository.countFiltered(actionFilter, from, to))
+            : null)
+        .build();
+    return ApiResponse.success("Lấy nhật ký hệ thống thành công", response);
+  }
+
+  private AuditLogResponse toAuditLogResponse(AuditLog log) {
+    return AuditLogResponse.builder()
+        .logId(log.getLogId())
+        .userId(log.getUser() != null ? log.getUser().getUserId().toString() : null)
+        .userName(log.getUser() != null ? log.getUser().getFullName() : "System")
+        .action(log.getAction())
+        .details(log.getDetails())
+        .oldValue(log.getOldValue())
+        .newValue(log.getNewValue())
+        .ipAddress(log.getIpAddress())
+        .createdAt(log.getCreatedAt())
+        .build();
+  }
+
   private AdminUserResponse toAdminUserResponse(User user) {
     return AdminUserResponse.builder()
         .userId(user.getUserId())
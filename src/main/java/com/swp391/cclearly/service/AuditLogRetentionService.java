@@ -0,0 +1,273 @@
+package com.swp391.cclearly.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Lưu trữ và dọn Audit_Logs theo tháng (UTC): các tháng cũ hơn app.audit.retention.months được
+ * xuất ra file NDJSON nén gzip trong app.audit.retention.archive-dir rồi xóa khỏi DB.
+ * Nếu bảng đã được phân vùng theo tháng (document/db/audit-log-partitioning.sql) thì dùng
+ * TRUNCATE ... WITH (PARTITIONS) thay cho DELETE theo lô.
+ * Cron chạy trên mọi node nên mỗi lần chạy giữ applock (sp_getapplock) trên DB; node khác đang chạy thì bỏ qua.
+ * Chỉ xóa đúng các log_id đã xuất, dòng được ghi muộn vào tháng cũ (vd. nạp lại từ file spill) để lần sau.
+ */
+@Service
+@Slf4j
+public class AuditLogRetentionService {
+
+  static final String PARTITION_FUNCTION = "PF_Audit_Logs_Monthly";
+  private static final String APP_LOCK = "audit-log-retention";
+  /** Số log_id mỗi câu DELETE ... IN (giới hạn 2100 tham số của SQL Server). */
+  private static final int DELETE_CHUNK = 1000;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final JsonMapper jsonMapper;
+  private final int retentionMonths;
+  private final Path archiveDir;
+  private final int deleteBatchSize;
+
+  public AuditLogRetentionService(
+      JdbcTemplate jdbcTemplate,
+      PlatformTransactionManager transactionManager,
+      JsonMapper jsonMapper,
+      @Value("${app.audit.retention.months:12}") int retentionMonths,
+      @Value("${app.audit.retention.archive-dir:archive/audit-logs}") String archiveDir,
+      @Value("${app.audit.retention.delete-batch-size:5000}") int deleteBatchSize) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.jsonMapper = jsonMapper;
+    this.retentionMonths = retentionMonths;
+    this.archiveDir = Path.of(archiveDir);
+    this.deleteBatchSize = deleteBatchSize;
+  }
+
+  @Scheduled(cron = "${app.audit.retention.cron:-}", zone = "UTC")
+  public void scheduledRun() {
+    archiveExpired();
+  }
+
+  /**
+   * Xuất và xóa mọi tháng đã quá hạn lưu trữ, trả về danh sách tháng đã xử lý.
+   * Trả về danh sách rỗng nếu node khác đang giữ applock.
+   */
+  public synchronized List<String> archiveExpired() {
+    // applock gắn với session: giữ một connection riêng suốt lần chạy, node chết thì lock tự nhả
+    try (Connection lock = jdbcTemplate.getDataSource().getConnection()) {
+      if (!acquire(lock)) {
+        log.info("Audit log retention is running on another node, skipping");
+        return List.of();
+      }
+      try {
+        return archiveExpiredLocked();
+      } finally {
+        release(lock);
+      }
+    } catch (SQLException e) {
+      throw new IllegalStateException("Không thể lấy applock " + APP_LOCK, e);
+    }
+  }
+
+  private List<String> archiveExpiredLocked() {
+    YearMonth cutoff = YearMonth.now(ZoneOffset.UTC).minusMonths(retentionMonths);
+    OffsetDateTime oldest = jdbcTemplate.queryForObject(
+        "SELECT MIN(created_at) FROM Audit_Logs WHERE created_at < ?", OffsetDateTime.class,
+        utc(cutoff.atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC)));
+    List<String> archived = new ArrayList<>();
+    if (oldest == null) return archived;
+
+    boolean partitioned = isPartitioned();
+    for (YearMonth month = YearMonth.from(oldest.atZoneSameInstant(ZoneOffset.UTC));
+        month.isBefore(cutoff); month = month.plusMonths(1)) {
+      Instant from = month.atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+      Instant to = month.plusMonths(1).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+      Path ids = archiveDir.resolve("audit-logs-" + month + ".ids");
+      long exported = export(month, from, to, ids);
+      long deleted = partitioned ? truncatePartition(from, to, exported, ids) : deleteExported(ids);
+      log.info("Archived audit logs for {}: exported {}, removed {}", month, exported, deleted);
+      archived.add(month.toString());
+    }
+    return archived;
+  }
+
+  /**
+   * Ghi các dòng của tháng ra file .ndjson.gz; ghi file tạm rồi đổi tên để không để lại file dở.
+   * Danh sách log_id đã xuất được ghi vào ids để chỉ xóa đúng các dòng đó.
+   */
+  private long export(YearMonth month, Instant from, Instant to, Path ids) {
+    long[] count = {0};
+    try {
+      Files.createDirectories(archiveDir);
+      Path target = archiveDir.resolve("audit-logs-" + month + ".ndjson.gz");
+      if (Files.exists(target)) {
+        // Đã xuất ở lần chạy trước nhưng chưa xóa xong: giữ file cũ, ghi thêm phần còn lại
+        target = archiveDir.resolve("audit-logs-" + month + "-" + System.currentTimeMillis() + ".ndjson.gz");
+      }
+      Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+      try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+          new GZIPOutputStream(Files.newOutputStream(tmp)), StandardCharsets.UTF_8));
+          BufferedWriter idsOut = Files.newBufferedWriter(ids, StandardCharsets.UTF_8)) {
+        jdbcTemplate.query(con -> {
+          var ps = con.prepareStatement("SELECT log_id, user_id, action, details, old_value, "
+              + "new_value, ip_address, created_at FROM Audit_Logs "
+              + "WHERE created_at >= ? AND created_at < ? ORDER BY created_at, log_id");
+          ps.setObject(1, utc(from));
+          ps.setObject(2, utc(to));
+          ps.setFetchSize(1000);
+          return ps;
+        }, rs -> {
+          Map<String, Object> row = new LinkedHashMap<>();
+          row.put("logId", rs.getString("log_id"));
+          row.put("userId", rs.getString("user_id"));
+          row.put("action", rs.getString("action"));
+          row.put("details", rs.getString("details"));
+          row.put("oldValue", rs.getString("old_value"));
+          row.put("newValue", rs.getString("new_value"));
+          row.put("ipAddress", rs.getString("ip_address"));
+          row.put("createdAt", rs.getObject("created_at", OffsetDateTime.class).toInstant().toString());
+          try {
+            out.write(jsonMapper.writeValueAsString(row));
+            out.newLine();
+            idsOut.write(rs.getString("log_id"));
+            idsOut.newLine();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+          count[0]++;
+        });
+      }
+      Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Không thể xuất audit log tháng " + month, e);
+    }
+    return count[0];
+  }
+
+  /**
+   * Xóa các log_id đã xuất theo lô nhỏ (mỗi lô tự commit) để không giữ lock lâu và không phình
+   * transaction log. Xóa xong thì bỏ file ids.
+   */
+  private long deleteExported(Path ids) {
+    long total = 0;
+    int chunkSize = Math.max(1, Math.min(deleteBatchSize, DELETE_CHUNK));
+    try (BufferedReader in = Files.newBufferedReader(ids, StandardCharsets.UTF_8)) {
+      List<String> chunk = new ArrayList<>(chunkSize);
+      for (String id; (id = in.readLine()) != null; ) {
+        chunk.add(id);
+        if (chunk.size() == chunkSize) {
+          total += deleteIds(chunk);
+          chunk.clear();
+        }
+      }
+      if (!chunk.isEmpty()) total += deleteIds(chunk);
+      Files.delete(ids);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Không thể đọc danh sách log_id đã xuất " + ids, e);
+    }
+    return total;
+  }
+
+  private int deleteIds(List<String> ids) {
+    String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+    return jdbcTemplate.update("DELETE FROM Audit_Logs WHERE log_id IN (" + placeholders + ")", ids.toArray());
+  }
+
+  /**
+   * TRUNCATE phân vùng của tháng chỉ khi phân vùng đúng bằng [from, to) và số dòng khớp số đã xuất;
+   * biên bị thiếu/gộp (SPLIT/MERGE làm tay) thì phân vùng có thể chứa tháng chưa hết hạn, khi đó xóa theo lô.
+   * Đếm và TRUNCATE trong cùng transaction, giữ khóa bảng để không có dòng nào chen vào giữa.
+   */
+  private long truncatePartition(Instant from, Instant to, long exported, Path ids) {
+    Integer partition = jdbcTemplate.queryForObject(
+        "SELECT $PARTITION." + PARTITION_FUNCTION + "(?)", Integer.class, utc(from));
+    // RANGE RIGHT: phân vùng n là [biên n-1, biên n)
+    Map<Integer, Instant> bounds = new HashMap<>();
+    jdbcTemplate.query("SELECT rv.boundary_id, CAST(rv.value AS DATETIMEOFFSET(6)) AS bound "
+        + "FROM sys.partition_range_values rv "
+        + "JOIN sys.partition_functions pf ON pf.function_id = rv.function_id "
+        + "WHERE pf.name = ? AND rv.boundary_id IN (?, ?)",
+        rs -> {
+          bounds.put(rs.getInt("boundary_id"), rs.getObject("bound", OffsetDateTime.class).toInstant());
+        }, PARTITION_FUNCTION, partition - 1, partition);
+    if (!from.equals(bounds.get(partition - 1)) || !to.equals(bounds.get(partition))) {
+      log.warn("Audit log partition {} is not exactly [{}, {}) (bounds {}), deleting in batches instead",
+          partition, from, to, bounds);
+      return deleteExported(ids);
+    }
+    Long truncated = transactionTemplate.execute(status -> {
+      Long rows = jdbcTemplate.queryForObject("SELECT COUNT_BIG(*) FROM Audit_Logs WITH (TABLOCKX, HOLDLOCK) "
+          + "WHERE $PARTITION." + PARTITION_FUNCTION + "(created_at) = ?", Long.class, partition);
+      if (rows == null || rows != exported) {
+        log.warn("Audit log partition {} has {} rows but {} were exported, deleting in batches instead",
+            partition, rows, exported);
+        return null;
+      }
+      jdbcTemplate.execute("TRUNCATE TABLE Audit_Logs WITH (PARTITIONS (" + partition + "))");
+      return rows;
+    });
+    if (truncated == null) return deleteExported(ids);
+    try {
+      Files.delete(ids);
+    } catch (IOException e) {
+      log.warn("Không thể xóa file {}: {}", ids, e.getMessage());
+    }
+    return truncated;
+  }
+
+  private static boolean acquire(Connection con) throws SQLException {
+    try (CallableStatement cs = con.prepareCall("{? = call sp_getapplock(?, 'Exclusive', 'Session', 0)}")) {
+      cs.registerOutParameter(1, Types.INTEGER);
+      cs.setString(2, APP_LOCK);
+      cs.execute();
+      return cs.getInt(1) >= 0;
+    }
+  }
+
+  private static void release(Connection con) throws SQLException {
+    try (CallableStatement cs = con.prepareCall("{call sp_releaseapplock(?, 'Session')}")) {
+      cs.setString(1, APP_LOCK);
+      cs.execute();
+    }
+  }
+
+  private boolean isPartitioned() {
+    Integer n = jdbcTemplate.queryForObject(
+        "SELECT COUNT(*) FROM sys.partition_functions WHERE name = ?", Integer.class,
+        PARTITION_FUNCTION);
+    return n != null && n > 0;
+  }
+
+  private static OffsetDateTime utc(Instant instant) {
+    return instant.atOffset(ZoneOffset.UTC);
+  }
+}
@@ -1,8 +1,6 @@
 package com.swp391.cclearly.service;
 
-import com.swp391.cclearly.entity.AuditLog;
 import com.swp391.cclearly.entity.User;
-import com.swp391.cclearly.repository.AuditLogRepository;
 import jakarta.servlet.http.HttpServletRequest;
 import java.time.Instant;
 import lombok.RequiredArgsConstructor;
@@ -10,8 +8,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
@@ -24,38 +20,19 @@ import org.springframework.web.context.request.ServletRequestAttributes;
 @Slf4j
 public class AuditLogService {
 
-    private final AuditLogRepository auditLogRepository;
+    private final AuditLogWriter auditLogWriter;
 
     /**
      * Ghi audit log với đầy đủ thông tin.
+     * User và IP được lấy ngay trên request thread; việc ghi DB do AuditLogWriter thực hiện theo lô.
      */
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void log(String action, String details, String oldValue, String newValue) {
-        try {
-            User currentUser = getCurrentUser();
-            String ipAddress = getClientIpAddress();
-
-            AuditLog auditLog = AuditLog.builder()
-                    .user(currentUser)
-                    .action(action)
-                    .details(details)
-                    .oldValue(oldValue)
-                    .newValue(newValue)
-                    .ipAddress(ipAddress)
-                    .createdAt(Instant.now())
-                    .build();
-
-            auditLogRepository.save(auditLog);
-        } catch (Exception e) {
-            // Không để lỗi ghi log ảnh hưởng tới nghiệp vụ chính
-            log.warn("Không thể ghi audit log: action={}, details={}, error={}", action, details, e.getMessage());
-        }
+        enqueue(getCurrentUser(), action, details, oldValue, newValue);
     }
 
     /**
      * Ghi audit log đơn giản (không có giá trị cũ/mới).
      */
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void log(String action, String details) {
         log(action, details, null, null);
     }
@@ -63,21 +40,23 @@ public class AuditLogService {
     /**
      * Ghi audit log với User chỉ định (dùng khi chưa có SecurityContext, ví dụ đăng nhập).
      */
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void log(User user, String action, String details) {
-        try {
-            String ipAddress = getClientIpAddress();
-
-            AuditLog auditLog = AuditLog.builder()
-                    .user(user)
-                    .action(action)
-                    .details(details)
-                    .ipAddress(ipAddress)
-                    .createdAt(Instant.now())
-                    .build();
+        enqueue(user, action, details, null, null);
+    }
 
-            auditLogRepository.save(auditLog);
+    private void enqueue(User user, String action, String details, String oldValue, String newValue) {
+        try {
+            auditLogWriter.enqueue(new AuditLogWriter.Entry(
+                    AuditLogWriter.newLogId(),
+                    user != null ? user.getUserId() : null,
+                    action,
+                    details,
+                    oldValue,
+                    newValue,
+                    getClientIpAddress(),
+                    Instant.now()));
         } catch (Exception e) {
+            // Không để lỗi ghi log ảnh hưởng tới nghiệp vụ chính
             log.warn("Không thể ghi audit log: action={}, details={}, error={}", action, details, e.getMessage());
         }
     }
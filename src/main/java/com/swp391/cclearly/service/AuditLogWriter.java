@@ -0,0 +1,344 @@
+package com.swp391.cclearly.service;
+
+import com.swp391.cclearly.entity.TimeOrderedId;
+import com.swp391.cclearly.entity.TimeOrderedIdGenerator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Ghi audit log bất đồng bộ theo lô: request thread chỉ đưa entry vào hàng đợi có giới hạn,
+ * thread nền ghi bằng JDBC batch mỗi app.audit.flush-interval-ms hoặc khi đủ app.audit.batch-size.
+ * Khi hàng đợi đầy áp dụng app.audit.overflow-policy (BLOCK / DROP / SPILL).
+ * Metrics: audit.log.queue.size, audit.log.written, audit.log.dropped, audit.log.spilled, audit.log.flush.
+ */
+@Component
+@Slf4j
+public class AuditLogWriter {
+
+  public enum OverflowPolicy {
+    /** Chờ tối đa app.audit.block-timeout-ms, quá hạn thì bỏ entry. */
+    BLOCK,
+    /** Bỏ entry ngay và tăng bộ đếm audit.log.dropped. */
+    DROP,
+    /** Ghi entry ra file cục bộ, nạp lại vào DB khi hàng đợi rảnh. */
+    SPILL
+  }
+
+  public record Entry(UUID logId, UUID userId, String action, String details,
+      String oldValue, String newValue, String ipAddress, Instant createdAt) {
+  }
+
+  /** Entry đánh dấu dừng: worker ghi nốt lô đang gom rồi thoát, không cần interrupt. */
+  private static final Entry STOP = new Entry(null, null, null, null, null, null, null, null);
+
+  /** Bỏ qua log_id đã có: lô ghi dở (một phần đã commit) rồi bị spill có thể được nạp lại nhiều lần. */
+  private static final String INSERT_SQL = "INSERT INTO Audit_Logs "
+      + "(log_id, user_id, action, details, old_value, new_value, ip_address, created_at) "
+      + "SELECT ?, ?, ?, ?, ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM Audit_Logs WHERE log_id = ?)";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final JsonMapper jsonMapper;
+  private final BlockingQueue<Entry> queue;
+  private final int batchSize;
+  private final long flushIntervalMs;
+  private final long blockTimeoutMs;
+  private final OverflowPolicy overflowPolicy;
+  private final Path spillFile;
+
+  private final Counter written;
+  private final Counter dropped;
+  private final Counter spilled;
+  private final Timer flushTimer;
+
+  private volatile boolean running;
+  private Thread worker;
+
+  public AuditLogWriter(
+      JdbcTemplate jdbcTemplate,
+      JsonMapper jsonMapper,
+      MeterRegistry meterRegistry,
+      @Value("${app.audit.queue-capacity:10000}") int queueCapacity,
+      @Value("${app.audit.batch-size:200}") int batchSize,
+      @Value("${app.audit.flush-interval-ms:500}") long flushIntervalMs,
+      @Value("${app.audit.block-timeout-ms:1000}") long blockTimeoutMs,
+      @Value("${app.audit.overflow-policy:BLOCK}") OverflowPolicy overflowPolicy,
+      @Value("${app.audit.spill-file:logs/audit-spill.ndjson}") String spillFile) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.jsonMapper = jsonMapper;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.batchSize = batchSize;
+    this.flushIntervalMs = flushIntervalMs;
+    this.blockTimeoutMs = blockTimeoutMs;
+    this.overflowPolicy = overflowPolicy;
+    this.spillFile = Path.of(spillFile);
+
+    Gauge.builder("audit.log.queue.size", queue, BlockingQueue::size).register(meterRegistry);
+    this.written = Counter.builder("audit.log.written").register(meterRegistry);
+    this.dropped = Counter.builder("audit.log.dropped").register(meterRegistry);
+    this.spilled = Counter.builder("audit.log.spilled").register(meterRegistry);
+    this.flushTimer = Timer.builder("audit.log.flush").register(meterRegistry);
+  }
+
+  @PostConstruct
+  public void start() {
+    running = true;
+    worker = new Thread(this::runLoop, "audit-log-writer");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /**
+   * Ghi toàn bộ entry còn trong hàng đợi trước khi tắt ứng dụng.
+   */
+  @PreDestroy
+  public void stop() {
+    running = false;
+    if (worker != null) {
+      try {
+        if (!queue.offer(STOP, blockTimeoutMs, TimeUnit.MILLISECONDS)) {
+          worker.interrupt(); // hàng đợi đầy: worker tự ghi lô dở trước khi thoát
+        }
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    List<Entry> remaining = new ArrayList<>();
+    queue.drainTo(remaining);
+    remaining.removeIf(e -> e == STOP);
+    if (!remaining.isEmpty()) {
+      flush(remaining);
+    }
+    log.info("Audit log writer stopped, flushed {} pending entries", remaining.size());
+  }
+
+  /**
+   * Đưa entry vào hàng đợi. Không ném lỗi ra nghiệp vụ chính.
+   */
+  public void enqueue(Entry entry) {
+    if (queue.offer(entry)) return;
+    switch (overflowPolicy) {
+      case BLOCK -> {
+        try {
+          if (!queue.offer(entry, blockTimeoutMs, TimeUnit.MILLISECONDS)) {
+            drop(entry);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          drop(entry);
+        }
+      }
+      case DROP -> drop(entry);
+      case SPILL -> spill(List.of(entry));
+    }
+  }
+
+  public static UUID newLogId() {
+    return TimeOrderedIdGenerator.generate(TimeOrderedId.Style.SQL_SERVER);
+  }
+
+  private void runLoop() {
+    List<Entry> batch = new ArrayList<>(batchSize);
+    while (true) {
+      try {
+        Entry first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+        if (first == STOP) return;
+        if (first == null) {
+          replaySpill();
+          continue;
+        }
+        batch.add(first);
+        long deadline = System.currentTimeMillis() + flushIntervalMs;
+        while (batch.size() < batchSize) {
+          long wait = deadline - System.currentTimeMillis();
+          if (wait <= 0) break;
+          Entry next = queue.poll(wait, TimeUnit.MILLISECONDS);
+          if (next == STOP) return;
+          if (next == null) break;
+          batch.add(next);
+        }
+      } catch (InterruptedException e) {
+        if (!running) return;
+      } catch (RuntimeException e) {
+        // Không để worker chết: lỗi bất ngờ chỉ được ghi log, vòng lặp tiếp tục
+        log.error("Audit log writer error: {}", e.getMessage(), e);
+      } finally {
+        // Lô đã lấy khỏi hàng đợi luôn được ghi (kể cả khi dừng), flush không ném lỗi
+        if (!batch.isEmpty()) {
+          flush(batch);
+          batch.clear();
+        }
+      }
+    }
+  }
+
+  private void flush(List<Entry> batch) {
+    try {
+      flushTimer.record(() -> insert(batch));
+      written.increment(batch.size());
+    } catch (Exception e) {
+      // DB lỗi: không mất log, chuyển ra file để nạp lại sau
+      log.warn("Không thể ghi {} audit log vào DB, chuyển ra file: {}", batch.size(), e.getMessage());
+      spill(batch);
+    }
+  }
+
+  private void insert(List<Entry> batch) {
+    jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, e) -> {
+      ps.setString(1, e.logId().toString());
+      ps.setString(2, e.userId() != null ? e.userId().toString() : null);
+      ps.setString(3, e.action());
+      ps.setString(4, e.details());
+      ps.setString(5, e.oldValue());
+      ps.setString(6, e.newValue());
+      ps.setString(7, e.ipAddress());
+      ps.setObject(8, e.createdAt().atOffset(ZoneOffset.UTC));
+      ps.setString(9, e.logId().toString());
+    });
+  }
+
+  private void drop(Entry entry) {
+    dropped.increment();
+    log.warn("Hàng đợi audit log đầy, bỏ qua: action={}, details={}", entry.action(), entry.details());
+  }
+
+  private synchronized void spill(List<Entry> entries) {
+    try {
+      Files.createDirectories(spillFile.toAbsolutePath().getParent());
+      try (BufferedWriter out = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+          StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+        for (Entry e : entries) {
+          out.write(jsonMapper.writeValueAsString(e));
+          out.newLine();
+        }
+      }
+      spilled.increment(entries.size());
+    } catch (IOException | RuntimeException ex) {
+      dropped.increment(entries.size());
+      log.error("Không thể ghi audit log ra file {}: {}", spillFile, ex.getMessage());
+    }
+  }
+
+  /**
+   * Nạp lại các entry đã spill ra file khi hàng đợi đang rảnh. Spill mới phát sinh trong lúc còn file
+   * .replaying được nối vào file đó. Dòng DB từ chối (vd. vượt độ dài cột) được chuyển sang .corrupt
+   * để không chặn các dòng sau; lỗi khác (mất kết nối) thì giữ lại phần chưa ghi để thử lại.
+   */
+  private void replaySpill() {
+    Path replaying = spillFile.resolveSibling(spillFile.getFileName() + ".replaying");
+    List<String> lines;
+    synchronized (this) {
+      try {
+        boolean hasNew = Files.exists(spillFile) && Files.size(spillFile) > 0;
+        if (!Files.exists(replaying)) {
+          if (!hasNew) return;
+          Files.move(spillFile, replaying, StandardCopyOption.ATOMIC_MOVE);
+        } else if (hasNew) {
+          Files.write(replaying, Files.readAllBytes(spillFile), StandardOpenOption.APPEND);
+          Files.delete(spillFile);
+        }
+        lines = Files.readAllLines(replaying, StandardCharsets.UTF_8);
+      } catch (IOException e) {
+        log.warn("Không thể đọc file audit spill: {}", e.getMessage());
+        return;
+      }
+    }
+    List<Entry> entries = new ArrayList<>(lines.size());
+    List<String> corrupt = new ArrayList<>();
+    for (String line : lines) {
+      if (line.isBlank()) continue;
+      try {
+        entries.add(jsonMapper.readValue(line, Entry.class));
+      } catch (RuntimeException e) {
+        corrupt.add(line); // dòng ghi dở khi crash: cách ly, không chặn các dòng còn lại
+      }
+    }
+    if (!corrupt.isEmpty()) quarantine(corrupt, "unreadable");
+    int done = 0;
+    int rejected = 0;
+    try {
+      for (int i = 0; i < entries.size(); i += batchSize) {
+        int end = Math.min(i + batchSize, entries.size());
+        List<Entry> chunk = entries.subList(i, end);
+        try {
+          insert(chunk);
+        } catch (DataAccessException e) {
+          rejected += insertEach(chunk);
+        }
+        done = end;
+      }
+      Files.deleteIfExists(replaying);
+      written.increment(entries.size() - rejected);
+      log.info("Replayed {} spilled audit log entries", entries.size() - rejected);
+    } catch (Exception e) {
+      // Giữ lại phần chưa ghi được để thử lại ở lần rảnh tiếp theo
+      written.increment(done - rejected);
+      log.warn("Không thể nạp lại audit log từ file: {}", e.getMessage());
+      try {
+        List<String> rest = new ArrayList<>();
+        for (Entry entry : entries.subList(done, entries.size())) {
+          rest.add(jsonMapper.writeValueAsString(entry));
+        }
+        Files.write(replaying, rest, StandardCharsets.UTF_8);
+      } catch (IOException | RuntimeException ex) {
+        log.error("Không thể cập nhật file audit spill: {}", ex.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Ghi từng dòng của một lô bị lỗi. Dòng bị DB từ chối vì dữ liệu được cách ly; lỗi khác được ném ra
+   * (các dòng đã ghi sẽ được bỏ qua khi nạp lại vì INSERT_SQL bỏ qua log_id đã có).
+   * Trả về số dòng bị cách ly.
+   */
+  private int insertEach(List<Entry> chunk) {
+    List<String> rejected = new ArrayList<>();
+    for (Entry entry : chunk) {
+      try {
+        insert(List.of(entry));
+      } catch (DataIntegrityViolationException e) {
+        log.warn("DB từ chối audit log {}: {}", entry.logId(), e.getMostSpecificCause().getMessage());
+        rejected.add(jsonMapper.writeValueAsString(entry));
+      }
+    }
+    if (!rejected.isEmpty()) quarantine(rejected, "rejected");
+    return rejected.size();
+  }
+
+  private void quarantine(List<String> lines, String reason) {
+    Path target = spillFile.resolveSibling(spillFile.getFileName() + ".corrupt");
+    try {
+      Files.write(target, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+      log.warn("Moved {} {} audit spill lines to {}", lines.size(), reason, target);
+    } catch (IOException e) {
+      dropped.increment(lines.size());
+      log.error("Không thể ghi file cách ly audit spill {}: {}", target, e.getMessage());
+    }
+  }
+}
@@ -35,6 +35,7 @@ public class AuthService {
   private final AuthenticationManager authenticationManager;
   private final EmailService emailService;
   private final AuditLogService auditLogService;
+  private final PrincipalCacheService principalCacheService;
 
   @Value("${app.otp.expiration-minutes:5}")
   private int otpExpirationMinutes;
@@ -163,6 +164,7 @@ public class AuthService {
     user.setIsEmailVerified(true);
     user.setStatus(USER_STATUS_ACTIVE);
     userRepository.save(user);
+    principalCacheService.evict(user);
 
     return ApiResponse.success("Xác thực email thành công");
   }
@@ -239,6 +241,7 @@ public class AuthService {
     User user = resetToken.getUser();
     user.setPasswordHash(passwordEncoder.encode(request.getNewPassword()));
     userRepository.save(user);
+    principalCacheService.evict(user);
 
     // Mark token as used
     resetToken.setUsed(true);
@@ -0,0 +1,35 @@
+package com.swp391.cclearly.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Cache ngắn hạn cho các truy vấn COUNT(*) của danh sách phân trang theo cursor.
+ * Tổng số chỉ mang tính ước lượng (có thể lệch trong khoảng TTL).
+ */
+@Service
+public class CountCacheService {
+
+  private final Cache<String, Long> cache;
+
+  public CountCacheService(
+      MeterRegistry meterRegistry,
+      @Value("${app.count-cache.ttl-seconds:60}") long ttlSeconds) {
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(1000)
+        .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+        .recordStats()
+        .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, "countCache");
+  }
+
+  public long get(String key, Supplier<Long> counter) {
+    return cache.get(key, k -> counter.get());
+  }
+}
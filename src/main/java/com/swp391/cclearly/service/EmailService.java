@@ -1,7 +1,5 @@
 package com.swp391.cclearly.service;
 
-import com.swp391.cclearly.entity.SystemConfig;
-import com.swp391.cclearly.repository.SystemConfigRepository;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
@@ -18,7 +16,7 @@ import org.springframework.stereotype.Service;
 public class EmailService {
 
   private final JavaMailSender mailSender;
-  private final SystemConfigRepository systemConfigRepository;
+  private final SystemConfigService systemConfigService;
 
   @Value("${spring.mail.username}")
   private String fromEmail;
@@ -26,27 +24,20 @@ public class EmailService {
   @Value("${app.frontend-url:http://localhost:3000}")
   private String frontendUrl;
 
-  private String getConfig(String key, String defaultValue) {
-    return systemConfigRepository.findByConfigKey(key)
-        .map(SystemConfig::getConfigValue)
-        .filter(v -> v != null && !v.isBlank())
-        .orElse(defaultValue);
-  }
-
   private String getBannerTitle() {
-    return getConfig("email_banner_title", "CClearly");
+    return systemConfigService.get().emailBannerTitle();
   }
 
   private String getBannerSubtitle() {
-    return getConfig("email_banner_subtitle", "");
+    return systemConfigService.get().emailBannerSubtitle();
   }
 
   private String getBannerColor() {
-    return getConfig("email_banner_color", "#4F46E5");
+    return systemConfigService.get().emailBannerColor();
   }
 
   private String getFooterText() {
-    return getConfig("email_footer_text", "© 2024 CClearly. All rights reserved.");
+    return systemConfigService.get().emailFooterText();
   }
 
   /**
@@ -0,0 +1,241 @@
+package com.swp391.cclearly.service;
+
+import com.swp391.cclearly.exception.BadRequestException;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Xuất dữ liệu lớn (audit log, đơn hàng, doanh thu) ra CSV hoặc NDJSON, có thể nén gzip.
+ * Dữ liệu được đọc bằng JDBC cursor forward-only và ghi thẳng ra OutputStream từng dòng,
+ * nên bộ nhớ dùng không phụ thuộc số dòng. Bộ lọc giống các API phân trang tương ứng.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExportService {
+
+  public enum Format {
+    CSV("text/csv", "csv"),
+    NDJSON("application/x-ndjson", "ndjson");
+
+    public final String contentType;
+    public final String extension;
+
+    Format(String contentType, String extension) {
+      this.contentType = contentType;
+      this.extension = extension;
+    }
+
+    public static Format parse(String value) {
+      try {
+        return Format.valueOf(value.trim().toUpperCase());
+      } catch (RuntimeException e) {
+        throw new BadRequestException("Định dạng xuất không hợp lệ (csv hoặc ndjson)");
+      }
+    }
+  }
+
+  private static final int FETCH_SIZE = 1000;
+  private static final int FLUSH_EVERY_ROWS = 1000;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final JsonMapper jsonMapper;
+
+  /**
+   * Nhật ký hệ thống, cùng bộ lọc với GET /api/admin/logs.
+   */
+  public void exportAuditLogs(OutputStream out, Format format, boolean gzip,
+      String action, LocalDate fromDate, LocalDate toDate) {
+    StringBuilder sql = new StringBuilder("SELECT l.log_id, l.created_at, l.action, "
+        + "u.email AS user_email, u.full_name AS user_name, l.details, l.old_value, l.new_value, "
+        + "l.ip_address FROM Audit_Logs l LEFT JOIN Users u ON u.user_id = l.user_id WHERE 1 = 1");
+    List<Object> params = new ArrayList<>();
+    if (action != null && !action.isBlank()) {
+      sql.append(" AND l.action = ?");
+      params.add(action);
+    }
+    if (fromDate != null && toDate != null) {
+      sql.append(" AND l.created_at BETWEEN ? AND ?");
+      params.add(fromDate.atStartOfDay(ZoneId.systemDefault()).toOffsetDateTime());
+      params.add(toDate.atTime(LocalTime.MAX).atZone(ZoneId.systemDefault()).toOffsetDateTime());
+    }
+    sql.append(" ORDER BY l.created_at DESC, l.log_id DESC");
+    stream(out, format, gzip, sql.toString(), params);
+  }
+
+  /**
+   * Đơn hàng, cùng bộ lọc với GET /api/orders/admin/all.
+   */
+  public void exportOrders(OutputStream out, Format format, boolean gzip, String status) {
+    StringBuilder sql = new StringBuilder("SELECT o.order_id, o.code, o.created_at, o.status, "
+        + "u.email AS customer_email, u.full_name AS customer_name, o.final_amount, o.shipping_fee, "
+        + "o.payment_type, o.is_preorder, o.tracking_number "
+        + "FROM Orders o LEFT JOIN Users u ON u.user_id = o.user_id WHERE 1 = 1");
+    List<Object> params = new ArrayList<>();
+    if (status != null && !status.isBlank()) {
+      sql.append(" AND o.status = ?");
+      params.add(status.toUpperCase());
+    }
+    sql.append(" ORDER BY o.created_at DESC, o.order_id DESC");
+    stream(out, format, gzip, sql.toString(), params);
+  }
+
+  /**
+   * Doanh thu theo ngày (từ bảng tổng hợp), mặc định toàn bộ lịch sử.
+   */
+  public void exportDailyRevenue(OutputStream out, Format format, boolean gzip,
+      LocalDate fromDate, LocalDate toDate) {
+    StringBuilder sql = new StringBuilder(
+        "SELECT sales_date, revenue, order_count FROM Sales_Daily_Rollups WHERE 1 = 1");
+    List<Object> params = new ArrayList<>();
+    if (fromDate != null) {
+      sql.append(" AND sales_date >= ?");
+      params.add(fromDate);
+    }
+    if (toDate != null) {
+      sql.append(" AND sales_date <= ?");
+      params.add(toDate);
+    }
+    sql.append(" ORDER BY sales_date");
+    stream(out, format, gzip, sql.toString(), params);
+  }
+
+  private void stream(OutputStream rawOut, Format format, boolean gzip, String sql,
+      List<Object> params) {
+    long start = System.currentTimeMillis();
+    long[] rows = {0};
+    try {
+      OutputStream target = gzip ? new GZIPOutputStream(rawOut, 64 * 1024) : rawOut;
+      Writer writer = new BufferedWriter(
+          new OutputStreamWriter(target, StandardCharsets.UTF_8), 64 * 1024);
+      jdbcTemplate.query(con -> {
+        var ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        for (int i = 0; i < params.size(); i++) {
+          ps.setObject(i + 1, params.get(i));
+        }
+        ps.setFetchSize(FETCH_SIZE);
+        return ps;
+      }, (ResultSet rs) -> {
+        try {
+          ResultSetMetaData meta = rs.getMetaData();
+          if (format == Format.CSV) {
+            writer.write('\uFEFF'); // BOM để Excel đọc đúng tiếng Việt
+            writeCsvHeader(writer, meta);
+          }
+          while (rs.next()) {
+            if (format == Format.CSV) {
+              writeCsvRow(writer, rs, meta);
+            } else {
+              writeJsonRow(writer, rs, meta);
+            }
+            if (++rows[0] % FLUSH_EVERY_ROWS == 0) writer.flush();
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        return null;
+      });
+      writer.flush();
+      if (target instanceof GZIPOutputStream gz) gz.finish();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    log.info("Exported {} rows as {}{} in {} ms", rows[0], format,
+        gzip ? "+gzip" : "", System.currentTimeMillis() - start);
+  }
+
+  private static void writeCsvHeader(Writer writer, ResultSetMetaData meta)
+      throws SQLException, IOException {
+    for (int i = 1; i <= meta.getColumnCount(); i++) {
+      if (i > 1) writer.write(',');
+      writer.write(meta.getColumnLabel(i));
+    }
+    writer.write("\r\n");
+  }
+
+  private static void writeCsvRow(Writer writer, ResultSet rs, ResultSetMetaData meta)
+      throws SQLException, IOException {
+    for (int i = 1; i <= meta.getColumnCount(); i++) {
+      if (i > 1) writer.write(',');
+      Object value = readValue(rs, meta, i);
+      if (value != null) writer.write(csvEscape(value.toString(), isText(meta.getColumnType(i))));
+    }
+    writer.write("\r\n");
+  }
+
+  private void writeJsonRow(Writer writer, ResultSet rs, ResultSetMetaData meta)
+      throws SQLException, IOException {
+    Map<String, Object> row = new LinkedHashMap<>();
+    for (int i = 1; i <= meta.getColumnCount(); i++) {
+      row.put(meta.getColumnLabel(i), readValue(rs, meta, i));
+    }
+    writer.write(jsonMapper.writeValueAsString(row));
+    writer.write('\n');
+  }
+
+  /**
+   * Chuẩn hóa giá trị: datetimeoffset -> ISO-8601 UTC, uniqueidentifier -> chuỗi, số tiền -> plain string.
+   */
+  private static Object readValue(ResultSet rs, ResultSetMetaData meta, int i) throws SQLException {
+    String typeName = meta.getColumnTypeName(i);
+    if ("datetimeoffset".equalsIgnoreCase(typeName)) {
+      OffsetDateTime value = rs.getObject(i, OffsetDateTime.class);
+      return value != null ? value.withOffsetSameInstant(ZoneOffset.UTC).toInstant().toString() : null;
+    }
+    if ("uniqueidentifier".equalsIgnoreCase(typeName)) {
+      return rs.getString(i);
+    }
+    Object value = rs.getObject(i);
+    if (value instanceof BigDecimal d) return d.toPlainString();
+    if (value instanceof java.sql.Date d) return d.toLocalDate().toString();
+    if (value instanceof java.sql.Timestamp t) return Instant.ofEpochMilli(t.getTime()).toString();
+    return value;
+  }
+
+  private static boolean isText(int sqlType) {
+    return switch (sqlType) {
+      case Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR, Types.NCHAR, Types.NVARCHAR,
+           Types.LONGNVARCHAR, Types.CLOB, Types.NCLOB -> true;
+      default -> false;
+    };
+  }
+
+  /**
+   * Giá trị văn bản bắt đầu bằng = + - @ tab hoặc CR được thêm ' phía trước để Excel/Sheets không
+   * hiểu là công thức (CSV injection). Cột số giữ nguyên để số âm vẫn là số.
+   */
+  private static String csvEscape(String value, boolean text) {
+    if (text && !value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0) {
+      value = "'" + value;
+    }
+    boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+        || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+    return quote ? '"' + value.replace("\"", "\"\"") + '"' : value;
+  }
+}
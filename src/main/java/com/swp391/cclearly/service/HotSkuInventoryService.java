@@ -0,0 +1,360 @@
+package com.swp391.cclearly.service;
+
+import com.swp391.cclearly.entity.StockMovement;
+import com.swp391.cclearly.repository.InventoryReservationRepository;
+import com.swp391.cclearly.repository.InventoryStockRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Chế độ "hot SKU" (bật bằng app.inventory.hot-skus): tồn kho của các biến thể bán rất chạy được giữ
+ * trong StripedStockCounter, checkout trừ hàng trong bộ nhớ không cần khóa dòng Inventory_Stock.
+ * Lượng đã bán được cộng dồn và ghi xuống Inventory_Stock / Stock_Movements theo lô
+ * (app.inventory.hot-sku-flush-ms) và khi tắt ứng dụng. Reservation của hàng chưa ghi xuống mang
+ * pending_flush = 1 (xóa cùng transaction ghi lô), nên sau khi crash, lúc khởi động phần còn treo được trừ
+ * khỏi Inventory_Stock trước khi nạp bộ đếm. Đối soát với DB khi khởi động và định kỳ.
+ * Chỉ đúng khi chạy một instance; nhiều instance thì để trống app.inventory.hot-skus.
+ * Metrics: inventory.hot_sku.pending, inventory.hot_sku.flushed, inventory.hot_sku.drift.
+ */
+@Service
+@Slf4j
+public class HotSkuInventoryService {
+
+  public record Allocation(UUID warehouseId, int quantity) {
+  }
+
+  private record PendingUnit(UUID reservationId, int quantity) {
+  }
+
+  /**
+   * Trạng thái của một dòng (kho, biến thể). Bất biến: quantity_on_hand trong DB
+   * = available + pending + inflight - incoming (inflight: đã trừ nhưng transaction chưa kết thúc;
+   * incoming: đã cộng vào DB nhưng chưa cộng vào bộ đếm). completions tăng mỗi khi một transaction
+   * liên quan kết thúc, để đối soát biết có thay đổi xen giữa lúc đọc DB hay không.
+   * unflushed: các reservation đã commit nhưng chưa ghi xuống DB, tổng số lượng bằng pending.
+   */
+  private static final class HotStock {
+    final UUID warehouseId;
+    final UUID variantId;
+    final StripedStockCounter available;
+    final LongAdder pending = new LongAdder();
+    final LongAdder inflight = new LongAdder();
+    final LongAdder incoming = new LongAdder();
+    final AtomicLong completions = new AtomicLong();
+    final Queue<PendingUnit> unflushed = new ConcurrentLinkedQueue<>();
+
+    HotStock(UUID warehouseId, UUID variantId, long onHand) {
+      this.warehouseId = warehouseId;
+      this.variantId = variantId;
+      this.available = new StripedStockCounter(onHand);
+    }
+  }
+
+  private static final String MOVEMENT_REASON = "ORDER_RESERVE";
+  private static final String RECOVER_REASON = "HOT_SKU_RECOVER";
+  private static final int FLUSH_CHUNK = 1000;
+
+  private final InventoryStockRepository inventoryStockRepository;
+  private final InventoryReservationRepository reservationRepository;
+  private final StockLedgerService stockLedgerService;
+  private final TransactionTemplate transactionTemplate;
+  private final Set<String> hotSkus;
+  private final Map<UUID, List<HotStock>> stocks = new ConcurrentHashMap<>();
+  private final Counter flushedUnits;
+  private final LongAdder lastDrift = new LongAdder();
+
+  public HotSkuInventoryService(
+      InventoryStockRepository inventoryStockRepository,
+      InventoryReservationRepository reservationRepository,
+      StockLedgerService stockLedgerService,
+      PlatformTransactionManager transactionManager,
+      MeterRegistry meterRegistry,
+      @Value("${app.inventory.hot-skus:}") String hotSkus) {
+    this.inventoryStockRepository = inventoryStockRepository;
+    this.reservationRepository = reservationRepository;
+    this.stockLedgerService = stockLedgerService;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.hotSkus = Arrays.stream(hotSkus.split(","))
+        .map(String::trim)
+        .filter(s -> !s.isEmpty())
+        .collect(Collectors.toUnmodifiableSet());
+    this.flushedUnits = Counter.builder("inventory.hot_sku.flushed")
+        .description("Số đơn vị hàng hot SKU đã ghi xuống Inventory_Stock")
+        .register(meterRegistry);
+    Gauge.builder("inventory.hot_sku.pending", stocks, m -> m.values().stream()
+            .flatMap(List::stream).mapToLong(s -> s.pending.sum()).sum())
+        .description("Số đơn vị hàng hot SKU đã bán nhưng chưa ghi xuống DB")
+        .register(meterRegistry);
+    Gauge.builder("inventory.hot_sku.drift", lastDrift, LongAdder::sum)
+        .description("Chênh lệch tuyệt đối giữa bộ đếm và DB ở lần đối soát gần nhất")
+        .register(meterRegistry);
+  }
+
+  public boolean isHot(UUID variantId) {
+    return stocks.containsKey(variantId);
+  }
+
+  /**
+   * Trừ hàng trong bộ nhớ, ưu tiên kho còn nhiều hàng. Trả về null (không trừ gì) nếu không đủ.
+   * record lưu reservation (pending_flush = 1) cho từng phần và trả về reservation_id.
+   * Phải gọi trong transaction: rollback thì hàng được trả lại bộ đếm, commit thì chờ ghi xuống DB.
+   */
+  public List<Allocation> tryReserve(UUID variantId, int quantity, Function<Allocation, UUID> record) {
+    List<HotStock> rows = new ArrayList<>(stocks.getOrDefault(variantId, List.of()));
+    rows.sort((a, b) -> Long.compare(b.available.sum(), a.available.sum()));
+
+    Map<HotStock, Integer> taken = new HashMap<>();
+    int remaining = quantity;
+    for (HotStock row : rows) {
+      if (remaining == 0) break;
+      int take = (int) Math.min(remaining, row.available.sum());
+      if (take <= 0) continue;
+      // Tăng inflight trước khi trừ để đối soát không coi khoảng hở là lệch số liệu
+      row.inflight.add(take);
+      if (row.available.tryTake(take)) {
+        taken.put(row, take);
+        remaining -= take;
+      } else {
+        row.inflight.add(-take);
+      }
+    }
+    if (remaining > 0) {
+      taken.forEach((row, q) -> {
+        row.available.add(q);
+        row.inflight.add(-q);
+      });
+      return null;
+    }
+
+    List<Allocation> allocations = new ArrayList<>();
+    Map<HotStock, PendingUnit> units = new HashMap<>();
+    try {
+      taken.forEach((row, q) -> {
+        Allocation allocation = new Allocation(row.warehouseId, q);
+        units.put(row, new PendingUnit(record.apply(allocation), q));
+        allocations.add(allocation);
+      });
+    } catch (RuntimeException e) {
+      taken.forEach((row, q) -> {
+        row.available.add(q);
+        row.inflight.add(-q);
+      });
+      throw e;
+    }
+
+    afterCompletion(committed -> units.forEach((row, unit) -> {
+      if (committed) {
+        row.unflushed.add(unit);
+        row.pending.add(unit.quantity());
+      } else {
+        row.available.add(unit.quantity());
+      }
+      row.inflight.add(-unit.quantity());
+      row.completions.incrementAndGet();
+    }));
+    return allocations;
+  }
+
+  /**
+   * Báo hàng đã được cộng vào Inventory_Stock (nhập kho, hủy đơn). Gọi trong transaction đã ghi DB;
+   * bộ đếm tăng sau khi commit, trong lúc chờ phần cộng thêm được tính vào incoming để đối soát bỏ qua dòng này.
+   */
+  public void onStockAdded(UUID warehouseId, UUID variantId, int quantity) {
+    HotStock row = find(warehouseId, variantId);
+    if (row == null) return; // dòng mới sẽ được nạp ở lần đối soát sau
+    row.incoming.add(quantity);
+    afterCompletion(committed -> {
+      if (committed) row.available.add(quantity);
+      row.incoming.add(-quantity);
+      row.completions.incrementAndGet();
+    });
+  }
+
+  /**
+   * Ghi lượng hàng đã bán xuống DB (qua sổ cái, JDBC batch) và bỏ cờ pending_flush của các reservation
+   * tương ứng trong cùng một transaction. Lỗi thì giữ lại cho lần sau.
+   */
+  @Scheduled(
+      fixedDelayString = "${app.inventory.hot-sku-flush-ms:1000}",
+      initialDelayString = "${app.inventory.hot-sku-flush-ms:1000}")
+  public synchronized void flush() {
+    Map<HotStock, List<PendingUnit>> drained = new HashMap<>();
+    stocks.values().forEach(rows -> rows.forEach(row -> {
+      List<PendingUnit> units = new ArrayList<>();
+      for (PendingUnit unit; (unit = row.unflushed.poll()) != null; ) {
+        units.add(unit);
+      }
+      if (units.isEmpty()) return;
+      row.pending.add(-quantityOf(units));
+      drained.put(row, units);
+    }));
+    if (drained.isEmpty()) return;
+
+    List<StockLedgerService.Change> changes = drained.entrySet().stream()
+        .map(e -> new StockLedgerService.Change(e.getKey().warehouseId, e.getKey().variantId,
+            (int) -quantityOf(e.getValue()), MOVEMENT_REASON, StockMovement.REF_HOT_SKU, null))
+        .toList();
+    List<UUID> reservationIds = drained.values().stream()
+        .flatMap(List::stream)
+        .map(PendingUnit::reservationId)
+        .toList();
+    try {
+      transactionTemplate.executeWithoutResult(status -> {
+        stockLedgerService.applyBatch(changes);
+        for (int i = 0; i < reservationIds.size(); i += FLUSH_CHUNK) {
+          reservationRepository.markFlushed(
+              reservationIds.subList(i, Math.min(i + FLUSH_CHUNK, reservationIds.size())));
+        }
+      });
+      flushedUnits.increment(drained.values().stream().mapToLong(HotSkuInventoryService::quantityOf).sum());
+    } catch (RuntimeException e) {
+      drained.forEach((row, units) -> {
+        row.unflushed.addAll(units);
+        row.pending.add(quantityOf(units));
+      });
+      log.warn("Không thể ghi tồn kho hot SKU xuống DB, thử lại lần sau: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Ghi nốt phần còn trong bộ nhớ khi tắt ứng dụng (sau khi web server đã dừng nhận request).
+   */
+  @PreDestroy
+  public void flushOnShutdown() {
+    if (stocks.isEmpty()) return;
+    flush();
+    long left = stocks.values().stream().flatMap(List::stream).mapToLong(s -> s.pending.sum()).sum();
+    if (left > 0) {
+      log.warn("Còn {} đơn vị hot SKU chưa ghi xuống DB, sẽ được trừ khi khởi động lại", left);
+    }
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void loadOnStartup() {
+    recoverUnflushed();
+    if (hotSkus.isEmpty()) return;
+    reconcile();
+    log.info("Hot SKU mode bật cho {} SKU ({} biến thể)", hotSkus.size(), stocks.size());
+  }
+
+  /**
+   * Trừ khỏi Inventory_Stock phần hàng hot SKU đã bán nhưng chưa kịp ghi xuống (lần chạy trước bị crash
+   * hoặc flush cuối thất bại). Chạy trước khi nạp bộ đếm, lúc chưa có SKU nào ở chế độ hot nên không có
+   * reservation pending_flush mới phát sinh xen vào. Chạy cả khi hot-skus đang trống, vì cấu hình có thể
+   * vừa được tắt.
+   */
+  void recoverUnflushed() {
+    List<Object[]> rows = reservationRepository.sumPendingFlush();
+    if (rows.isEmpty()) return;
+    List<StockLedgerService.Change> changes = rows.stream()
+        .map(r -> new StockLedgerService.Change((UUID) r[0], (UUID) r[1],
+            -((Number) r[2]).intValue(), RECOVER_REASON, StockMovement.REF_HOT_SKU, null))
+        .toList();
+    transactionTemplate.executeWithoutResult(status -> {
+      stockLedgerService.applyBatch(changes);
+      reservationRepository.markAllFlushed();
+    });
+    log.warn("Đã trừ {} đơn vị hot SKU chưa ghi xuống DB từ lần chạy trước",
+        changes.stream().mapToLong(c -> -c.quantity()).sum());
+  }
+
+  /**
+   * Đối soát bộ đếm với Inventory_Stock. Chỉ tự sửa lệch khi không có transaction nào đang giữ hàng
+   * (inflight = 0), nếu không thì chỉ ghi log để lần sau kiểm tra lại.
+   */
+  @Scheduled(
+      fixedDelayString = "${app.inventory.hot-sku-reconcile-ms:300000}",
+      initialDelayString = "${app.inventory.hot-sku-reconcile-ms:300000}")
+  public synchronized void reconcile() {
+    if (hotSkus.isEmpty()) return;
+    flush();
+    // Chụp trạng thái trước khi đọc DB: chỉ sửa lệch cho dòng không có transaction nào
+    // đang dở hoặc vừa kết thúc trong suốt khoảng đọc
+    Map<HotStock, Long> quiet = new HashMap<>();
+    stocks.values().forEach(rows -> rows.forEach(row -> {
+      if (isQuiet(row)) quiet.put(row, row.completions.get());
+    }));
+
+    long totalDrift = 0;
+    for (Object[] r : inventoryStockRepository.findStockRowsBySkuIn(hotSkus)) {
+      UUID warehouseId = (UUID) r[0];
+      UUID variantId = (UUID) r[1];
+      long onHand = r[2] != null ? ((Number) r[2]).longValue() : 0;
+      HotStock row = find(warehouseId, variantId);
+      if (row == null) {
+        stocks.computeIfAbsent(variantId, k -> new CopyOnWriteArrayList<>())
+            .add(new HotStock(warehouseId, variantId, onHand));
+        continue;
+      }
+      long drift = onHand - row.pending.sum() - row.inflight.sum() + row.incoming.sum() - row.available.sum();
+      if (drift == 0) continue;
+      totalDrift += Math.abs(drift);
+      Long completionsBefore = quiet.get(row);
+      if (completionsBefore != null && isQuiet(row) && row.completions.get() == completionsBefore) {
+        row.available.add(drift);
+        log.warn("Hot SKU {} kho {} lệch {} so với DB, đã điều chỉnh", variantId, warehouseId, drift);
+      } else {
+        log.warn("Hot SKU {} kho {} lệch {} so với DB (đang có giao dịch, chưa điều chỉnh)",
+            variantId, warehouseId, drift);
+      }
+    }
+    lastDrift.reset();
+    lastDrift.add(totalDrift);
+  }
+
+  private static long quantityOf(List<PendingUnit> units) {
+    return units.stream().mapToLong(PendingUnit::quantity).sum();
+  }
+
+  private static boolean isQuiet(HotStock row) {
+    return row.inflight.sum() == 0 && row.incoming.sum() == 0;
+  }
+
+  private HotStock find(UUID warehouseId, UUID variantId) {
+    for (HotStock row : stocks.getOrDefault(variantId, List.of())) {
+      if (row.warehouseId.equals(warehouseId)) return row;
+    }
+    return null;
+  }
+
+  private static void afterCompletion(Consumer<Boolean> callback) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      callback.accept(true);
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(int status) {
+        callback.accept(status == STATUS_COMMITTED);
+      }
+    });
+  }
+}
@@ -0,0 +1,213 @@
+package com.swp391.cclearly.service;
+
+import com.swp391.cclearly.dto.base.ApiResponse;
+import com.swp391.cclearly.entity.IdempotencyKey;
+import com.swp391.cclearly.entity.User;
+import com.swp391.cclearly.exception.BadRequestException;
+import com.swp391.cclearly.repository.IdempotencyKeyRepository;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Hỗ trợ header Idempotency-Key cho các API thay đổi đơn hàng.
+ * Lần đầu: giành khóa (INSERT IN_PROGRESS, khóa chính chặn instance khác), chạy thao tác và lưu response
+ * trong cùng transaction với thao tác nên không thể có đơn đã tạo mà khóa chưa hoàn tất.
+ * Lần sau cùng key và cùng nội dung: phát lại response đã lưu; khác nội dung thì báo lỗi.
+ * Yêu cầu trùng đồng thời trên cùng instance chờ lần chạy đầu (CompletableFuture) thay vì chạy lại.
+ * Thao tác lỗi không được lưu, client có thể thử lại với cùng key. Khóa hết hạn sau app.idempotency.ttl-hours.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+  public static final String HEADER = "Idempotency-Key";
+
+  private static final int MAX_KEY_LENGTH = 255;
+
+  private final IdempotencyKeyRepository idempotencyKeyRepository;
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final JsonMapper jsonMapper;
+  private final Duration ttl;
+  private final Duration lockTimeout;
+  private final int deleteBatchSize;
+  private final Map<String, CompletableFuture<Void>> inflight = new ConcurrentHashMap<>();
+
+  public IdempotencyService(
+      IdempotencyKeyRepository idempotencyKeyRepository,
+      JdbcTemplate jdbcTemplate,
+      PlatformTransactionManager transactionManager,
+      JsonMapper jsonMapper,
+      @Value("${app.idempotency.ttl-hours:24}") long ttlHours,
+      @Value("${app.idempotency.lock-timeout-ms:60000}") long lockTimeoutMs,
+      @Value("${app.idempotency.delete-batch-size:5000}") int deleteBatchSize) {
+    this.idempotencyKeyRepository = idempotencyKeyRepository;
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.jsonMapper = jsonMapper;
+    this.ttl = Duration.ofHours(ttlHours);
+    this.lockTimeout = Duration.ofMillis(lockTimeoutMs);
+    this.deleteBatchSize = deleteBatchSize;
+  }
+
+  /**
+   * Chạy action đúng một lần cho mỗi (người dùng, scope, key). key rỗng thì chạy bình thường.
+   * scope phân biệt thao tác (vd. "cancel:" + orderId); request dùng để phát hiện key bị dùng lại với nội dung khác.
+   */
+  public <T> ApiResponse<T> execute(User user, String scope, String key, Object request,
+      Class<T> dataType, Supplier<ApiResponse<T>> action) {
+    if (key == null || key.isBlank()) {
+      return action.get();
+    }
+    if (key.length() > MAX_KEY_LENGTH) {
+      throw new BadRequestException("Idempotency-Key không được dài quá " + MAX_KEY_LENGTH + " ký tự");
+    }
+    String userId = user != null ? user.getUserId().toString() : "anonymous";
+    String keyHash = hash(userId + "\n" + scope + "\n" + key.trim());
+    String requestHash = hash(scope + "\n" + (request != null ? jsonMapper.writeValueAsString(request) : ""));
+
+    while (true) {
+      CompletableFuture<Void> mine = new CompletableFuture<>();
+      CompletableFuture<Void> running = inflight.putIfAbsent(keyHash, mine);
+      if (running != null) {
+        await(running);
+        continue; // lần chạy trước đã xong (thành công thì phát lại, lỗi thì tự chạy)
+      }
+      try {
+        return runOnce(keyHash, requestHash, dataType, action);
+      } finally {
+        inflight.remove(keyHash, mine);
+        mine.complete(null);
+      }
+    }
+  }
+
+  private <T> ApiResponse<T> runOnce(String keyHash, String requestHash, Class<T> dataType,
+      Supplier<ApiResponse<T>> action) {
+    if (!claim(keyHash, requestHash)) {
+      IdempotencyKey existing = idempotencyKeyRepository.findById(keyHash).orElse(null);
+      if (existing == null || existing.getExpiresAt().isBefore(Instant.now())) {
+        // Khóa vừa hết hạn/bị xóa: dọn bản ghi hết hạn rồi giành lại một lần
+        jdbcTemplate.update("DELETE FROM Idempotency_Keys WHERE key_hash = ? AND expires_at < ?",
+            keyHash, utc(Instant.now()));
+        if (!claim(keyHash, requestHash)) {
+          throw new BadRequestException("Yêu cầu với Idempotency-Key này đang được xử lý");
+        }
+      } else {
+        if (!existing.getRequestHash().equals(requestHash)) {
+          throw new BadRequestException("Idempotency-Key đã được dùng cho một yêu cầu khác");
+        }
+        if (!IdempotencyKey.COMPLETED.equals(existing.getStatus())) {
+          throw new BadRequestException("Yêu cầu với Idempotency-Key này đang được xử lý");
+        }
+        return jsonMapper.readValue(existing.getResponseBody(),
+            jsonMapper.getTypeFactory().constructParametricType(ApiResponse.class, dataType));
+      }
+    }
+
+    try {
+      return transactionTemplate.execute(status -> {
+        ApiResponse<T> response = action.get();
+        idempotencyKeyRepository.complete(keyHash, jsonMapper.writeValueAsString(response),
+            Instant.now().plus(ttl));
+        return response;
+      });
+    } catch (RuntimeException e) {
+      release(keyHash);
+      throw e;
+    }
+  }
+
+  /**
+   * Giành khóa trong transaction riêng. IN_PROGRESS hết hạn sau lockTimeout để khóa của instance bị sập
+   * không treo mãi (thao tác chưa commit thì chưa có gì để phát lại).
+   */
+  private boolean claim(String keyHash, String requestHash) {
+    Instant now = Instant.now();
+    try {
+      jdbcTemplate.update("INSERT INTO Idempotency_Keys (key_hash, request_hash, status, created_at, expires_at) "
+          + "VALUES (?, ?, ?, ?, ?)",
+          keyHash, requestHash, IdempotencyKey.IN_PROGRESS, utc(now), utc(now.plus(lockTimeout)));
+      return true;
+    } catch (DuplicateKeyException e) {
+      return false;
+    }
+  }
+
+  private void release(String keyHash) {
+    try {
+      jdbcTemplate.update("DELETE FROM Idempotency_Keys WHERE key_hash = ? AND status = ?",
+          keyHash, IdempotencyKey.IN_PROGRESS);
+    } catch (RuntimeException e) {
+      log.warn("Không thể giải phóng Idempotency-Key {}: {}", keyHash, e.getMessage());
+    }
+  }
+
+  private void await(CompletableFuture<Void> running) {
+    try {
+      running.get(lockTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      throw new BadRequestException("Yêu cầu với Idempotency-Key này đang được xử lý");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BadRequestException("Yêu cầu bị gián đoạn");
+    } catch (ExecutionException e) {
+      // future chỉ được complete bình thường
+    }
+  }
+
+  /**
+   * Xóa các khóa đã hết hạn theo lô.
+   */
+  @Scheduled(
+      fixedDelayString = "${app.idempotency.cleanup-ms:3600000}",
+      initialDelayString = "${app.idempotency.cleanup-ms:3600000}")
+  public long purgeExpired() {
+    long total = 0;
+    int deleted;
+    do {
+      deleted = jdbcTemplate.update(
+          "DELETE TOP (" + deleteBatchSize + ") FROM Idempotency_Keys WHERE expires_at < ?",
+          utc(Instant.now()));
+      total += deleted;
+    } while (deleted > 0);
+    if (total > 0) log.info("Purged {} expired idempotency keys", total);
+    return total;
+  }
+
+  private static String hash(String value) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256")
+          .digest(value.getBytes(StandardCharsets.UTF_8));
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  private static OffsetDateTime utc(Instant instant) {
+    return instant.atOffset(ZoneOffset.UTC);
+  }
+}
@@ -0,0 +1,124 @@
+package com.swp391.cclearly.service;
+
+import com.swp391.cclearly.entity.InventoryReservation;
+import com.swp391.cclearly.entity.Order;
+import com.swp391.cclearly.entity.StockMovement;
+import com.swp391.cclearly.exception.BadRequestException;
+import com.swp391.cclearly.repository.InventoryReservationRepository;
+import com.swp391.cclearly.repository.InventoryStockRepository;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Giữ hàng cho đơn hàng khi checkout. Tồn kho được trừ bằng UPDATE có điều kiện
+ * (quantity_on_hand >= số lượng) nên hai đơn song song không thể bán quá số hàng còn lại.
+ * Reservation không có hạn: checkout chưa có trạng thái chờ thanh toán online (PAYOS được ghi COMPLETED
+ * ngay, COD chờ nhân viên xác nhận), nên hàng chỉ được trả lại kho khi đơn bị hủy.
+ */
+@Service
+@RequiredArgsConstructor
+public class InventoryReservationService {
+
+  private final InventoryStockRepository inventoryStockRepository;
+  private final InventoryReservationRepository reservationRepository;
+  private final HotSkuInventoryService hotSkuInventoryService;
+  private final StockLedgerService stockLedgerService;
+
+  /**
+   * Trừ tồn kho cho từng biến thể của đơn (variantId -> số lượng), ưu tiên kho còn nhiều hàng,
+   * có thể tách một dòng ra nhiều kho. Ném BadRequestException nếu không đủ hàng;
+   * transaction của đơn rollback nên các phần đã trừ trước đó cũng được hoàn lại.
+   * Reservation chỉ được persist, ghi xuống DB cùng lần flush của đơn.
+   */
+  @Transactional
+  public void reserve(Order order, Map<UUID, Integer> quantities, Map<UUID, String> labels) {
+    // Duyệt theo thứ tự variantId cố định để các đơn song song khóa dòng theo cùng thứ tự
+    for (var entry : new TreeMap<>(quantities).entrySet()) {
+      UUID variantId = entry.getKey();
+      int remaining = entry.getValue();
+      if (hotSkuInventoryService.isHot(variantId)) {
+        List<HotSkuInventoryService.Allocation> allocations = hotSkuInventoryService.tryReserve(variantId,
+            remaining, a -> save(order, a.warehouseId(), variantId, a.quantity(), true));
+        if (allocations != null) {
+          remaining = 0;
+        }
+      } else {
+        for (Object[] row : inventoryStockRepository.findAvailableByVariantId(variantId)) {
+          if (remaining == 0) break;
+          UUID warehouseId = (UUID) row[0];
+          int take = Math.min(remaining, ((Number) row[1]).intValue());
+          if (take <= 0 || stockLedgerService.tryRemove(new StockLedgerService.Change(warehouseId, variantId,
+              take, "ORDER_RESERVE", StockMovement.REF_ORDER, order.getOrderId())) == null) {
+            continue; // đơn khác vừa lấy hàng ở kho này
+          }
+          save(order, warehouseId, variantId, take, false);
+          remaining -= take;
+        }
+      }
+      if (remaining > 0) {
+        throw new BadRequestException("Sản phẩm " + labels.getOrDefault(variantId, variantId.toString())
+            + " không đủ hàng trong kho");
+      }
+    }
+  }
+
+  /**
+   * Trả lại kho toàn bộ hàng đang giữ của đơn (khi hủy). Mỗi reservation chỉ được trả đúng một lần.
+   */
+  @Transactional
+  public void release(UUID orderId) {
+    returnToStock(orderId, "ORDER_RELEASE", StockMovement.REF_ORDER, orderId);
+  }
+
+  /**
+   * Nhập lại kho hàng khách trả khi hoàn tất đổi trả, về đúng kho đã xuất; movement tham chiếu phiếu hoàn tiền.
+   * Đơn cũ chưa có reservation thì không có gì để nhập lại.
+   */
+  @Transactional
+  public void restock(UUID orderId, UUID refundId) {
+    returnToStock(orderId, "RETURN_RESTOCK", StockMovement.REF_REFUND, refundId);
+  }
+
+  private void returnToStock(UUID orderId, String reason, String referenceType, UUID referenceId) {
+    List<InventoryReservation> reservations = reservationRepository.findByOrderOrderIdAndStatusIn(
+        orderId, Set.of(InventoryReservation.COMMITTED));
+    for (InventoryReservation r : reservations) {
+      if (reservationRepository.transition(r.getReservationId(), r.getStatus(),
+          InventoryReservation.RELEASED) == 1) {
+        stockLedgerService.apply(new StockLedgerService.Change(r.getWarehouseId(), r.getVariantId(),
+            r.getQuantity(), reason, referenceType, referenceId));
+        hotSkuInventoryService.onStockAdded(r.getWarehouseId(), r.getVariantId(), r.getQuantity());
+      }
+    }
+  }
+
+  /**
+   * Đồng bộ reservation theo trạng thái mới của đơn. Gọi trong cùng transaction cập nhật đơn.
+   */
+  @Transactional
+  public void onStatusChange(Order order, String previousStatus) {
+    String status = order.getStatus();
+    if (status == null || status.equals(previousStatus)) return;
+    if ("CANCELLED".equals(status)) {
+      release(order.getOrderId());
+    }
+  }
+
+  private UUID save(Order order, UUID warehouseId, UUID variantId, int quantity, boolean pendingFlush) {
+    return reservationRepository.save(InventoryReservation.builder()
+        .order(order)
+        .warehouseId(warehouseId)
+        .variantId(variantId)
+        .quantity(quantity)
+        .status(InventoryReservation.COMMITTED)
+        .pendingFlush(pendingFlush)
+        .build()).getReservationId();
+  }
+
+}
@@ -2,17 +2,22 @@ package com.swp391.cclearly.service;
 
 import com.swp391.cclearly.dto.base.ApiResponse;
 import com.swp391.cclearly.dto.inventory.ImportStockRequest;
+import com.swp391.cclearly.dto.inventory.InventoryPageResponse;
 import com.swp391.cclearly.dto.inventory.InventoryResponse;
+import com.swp391.cclearly.dto.inventory.StockBalanceResponse;
+import com.swp391.cclearly.dto.inventory.StockMovementPageResponse;
+import com.swp391.cclearly.dto.inventory.StockMovementResponse;
 import com.swp391.cclearly.entity.InventoryStock;
-import com.swp391.cclearly.entity.InventoryStockId;
 import com.swp391.cclearly.entity.ProductVariant;
 import com.swp391.cclearly.entity.StockMovement;
 import com.swp391.cclearly.entity.Warehouse;
+import com.swp391.cclearly.exception.BadRequestException;
 import com.swp391.cclearly.exception.ResourceNotFoundException;
 import com.swp391.cclearly.repository.InventoryStockRepository;
 import com.swp391.cclearly.repository.ProductVariantRepository;
 import com.swp391.cclearly.repository.StockMovementRepository;
 import com.swp391.cclearly.repository.WarehouseRepository;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -20,6 +25,9 @@ import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -31,120 +39,199 @@ public class InventoryService {
   private final InventoryStockRepository inventoryStockRepository;
   private final ProductVariantRepository productVariantRepository;
   private final WarehouseRepository warehouseRepository;
+  private final StockLedgerService stockLedgerService;
   private final StockMovementRepository stockMovementRepository;
   private final AuditLogService auditLogService;
+  private final HotSkuInventoryService hotSkuInventoryService;
 
-  public ApiResponse<List<InventoryResponse>> getInventory(String search, UUID warehouseId) {
-    List<InventoryStock> allStocks = inventoryStockRepository.findAll();
-
-    // Group by variant
-    Map<UUID, List<InventoryStock>> grouped = allStocks.stream()
-        .filter(stock -> {
-          if (warehouseId != null) {
-            return stock.getWarehouse().getWarehouseId().equals(warehouseId);
-          }
-          return true;
-        })
-        .collect(Collectors.groupingBy(stock -> stock.getVariant().getVariantId()));
-
-    List<InventoryResponse> response = new ArrayList<>();
-    for (var entry : grouped.entrySet()) {
-      List<InventoryStock> stocks = entry.getValue();
-      ProductVariant variant = stocks.get(0).getVariant();
-
-      // Search filter
-      if (search != null && !search.isBlank()) {
-        String q = search.toLowerCase();
-        boolean matches = (variant.getProduct().getName() != null &&
-            variant.getProduct().getName().toLowerCase().contains(q))
-            || (variant.getSku() != null && variant.getSku().toLowerCase().contains(q));
-        if (!matches) continue;
-      }
+  private static final int IN_CHUNK = 1000;
+  private static final int MAX_PAGE_SIZE = 100;
 
-      int totalStock = stocks.stream()
-          .mapToInt(s -> s.getQuantityOnHand() != null ? s.getQuantityOnHand() : 0)
-          .sum();
-
-      List<InventoryResponse.WarehouseStock> warehouseStocks = stocks.stream()
-          .map(s -> InventoryResponse.WarehouseStock.builder()
-              .warehouseId(s.getWarehouse().getWarehouseId())
-              .warehouseName(s.getWarehouse().getName())
-              .quantityOnHand(s.getQuantityOnHand() != null ? s.getQuantityOnHand() : 0)
-              .locationCode(s.getLocationCode())
-              .build())
-          .collect(Collectors.toList());
-
-      response.add(InventoryResponse.builder()
-          .variantId(variant.getVariantId())
-          .productName(variant.getProduct().getName())
-          .variantSku(variant.getSku())
-          .colorName(variant.getColorName())
-          .productType(variant.getProduct().getCategoryType())
-          .price(variant.getSalePrice() != null ? variant.getSalePrice() : variant.getProduct().getBasePrice())
-          .totalStock(totalStock)
-          .warehouseStocks(warehouseStocks)
-          .build());
-    }
+  /**
+   * Danh sách tồn kho (không phân trang) — lọc theo kho/tên/SKU trong SQL.
+   */
+  public ApiResponse<List<InventoryResponse>> getInventory(String search, UUID warehouseId) {
+    List<UUID> variantIds = inventoryStockRepository
+        .findVariantIds(warehouseId, searchPattern(search), Pageable.unpaged())
+        .getContent();
+    return ApiResponse.success("Lấy danh sách tồn kho thành công", loadResponses(variantIds, warehouseId));
+  }
 
+  /**
+   * Danh sách tồn kho phân trang (page bắt đầu từ 1), gộp theo biến thể.
+   */
+  public ApiResponse<InventoryPageResponse> getInventoryPage(
+      String search, UUID warehouseId, int page, int size) {
+    page = Math.max(page, 1);
+    size = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    Page<UUID> idPage = inventoryStockRepository.findVariantIds(
+        warehouseId, searchPattern(search), PageRequest.of(page - 1, size));
+
+    InventoryPageResponse response = InventoryPageResponse.builder()
+        .items(loadResponses(idPage.getContent(), warehouseId))
+        .meta(InventoryPageResponse.Meta.builder()
+            .page(page)
+            .size(size)
+            .totalElements(idPage.getTotalElements())
+            .totalPages(idPage.getTotalPages())
+            .build())
+        .build();
     return ApiResponse.success("Lấy danh sách tồn kho thành công", response);
   }
 
-  @Transactional
-  public ApiResponse<InventoryResponse> importStock(ImportStockRequest request) {
-    ProductVariant variant = productVariantRepository.findById(request.getVariantId())
-        .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy biến thể sản phẩm"));
-    Warehouse warehouse = warehouseRepository.findById(request.getWarehouseId())
-        .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy kho"));
-
-    InventoryStockId stockId = new InventoryStockId(warehouse.getWarehouseId(), variant.getVariantId());
-
-    InventoryStock stock = inventoryStockRepository.findById(stockId)
-        .orElse(InventoryStock.builder()
-            .id(stockId)
-            .warehouse(warehouse)
-            .variant(variant)
-            .quantityOnHand(0)
-            .build());
-
-    stock.setQuantityOnHand(stock.getQuantityOnHand() + request.getQuantity());
-    inventoryStockRepository.save(stock);
-
-    // Record stock movement
-    StockMovement movement = StockMovement.builder()
-        .variant(variant)
-        .quantity(request.getQuantity())
-        .reason(request.getReason() != null ? request.getReason() : "IMPORT")
-        .build();
-    stockMovementRepository.save(movement);
+  /**
+   * Nạp tồn kho (kèm kho, biến thể, sản phẩm) của các biến thể theo đúng thứ tự variantIds.
+   */
+  private List<InventoryResponse> loadResponses(List<UUID> variantIds, UUID warehouseId) {
+    Map<UUID, List<InventoryStock>> grouped = new HashMap<>();
+    for (int i = 0; i < variantIds.size(); i += IN_CHUNK) {
+      List<UUID> chunk = variantIds.subList(i, Math.min(i + IN_CHUNK, variantIds.size()));
+      for (InventoryStock stock : inventoryStockRepository.findWithDetailsByVariantIdIn(chunk, warehouseId)) {
+        grouped.computeIfAbsent(stock.getId().getVariantId(), k -> new ArrayList<>()).add(stock);
+      }
+    }
 
-    // Build response for just this variant
-    List<InventoryStock> variantStocks = inventoryStockRepository.findAll().stream()
-        .filter(s -> s.getVariant().getVariantId().equals(variant.getVariantId()))
-        .collect(Collectors.toList());
+    List<InventoryResponse> response = new ArrayList<>(variantIds.size());
+    for (UUID variantId : variantIds) {
+      List<InventoryStock> stocks = grouped.get(variantId);
+      if (stocks != null) response.add(toResponse(stocks));
+    }
+    return response;
+  }
 
-    int totalStock = variantStocks.stream()
+  private InventoryResponse toResponse(List<InventoryStock> stocks) {
+    ProductVariant variant = stocks.get(0).getVariant();
+    int totalStock = stocks.stream()
         .mapToInt(s -> s.getQuantityOnHand() != null ? s.getQuantityOnHand() : 0)
         .sum();
 
-    List<InventoryResponse.WarehouseStock> warehouseStocks = variantStocks.stream()
+    List<InventoryResponse.WarehouseStock> warehouseStocks = stocks.stream()
         .map(s -> InventoryResponse.WarehouseStock.builder()
             .warehouseId(s.getWarehouse().getWarehouseId())
             .warehouseName(s.getWarehouse().getName())
-            .quantityOnHand(s.getQuantityOnHand())
+            .quantityOnHand(s.getQuantityOnHand() != null ? s.getQuantityOnHand() : 0)
             .locationCode(s.getLocationCode())
             .build())
         .collect(Collectors.toList());
 
-    InventoryResponse response = InventoryResponse.builder()
+    return InventoryResponse.builder()
         .variantId(variant.getVariantId())
         .productName(variant.getProduct().getName())
         .variantSku(variant.getSku())
         .colorName(variant.getColorName())
         .productType(variant.getProduct().getCategoryType())
-        .price(variant.getSalePrice())
+        .price(variant.getSalePrice() != null ? variant.getSalePrice() : variant.getProduct().getBasePrice())
         .totalStock(totalStock)
         .warehouseStocks(warehouseStocks)
         .build();
+  }
+
+  /**
+   * Sổ cái tồn kho phân trang (page bắt đầu từ 1), lọc theo kho/biến thể/khoảng [from, to).
+   */
+  public ApiResponse<StockMovementPageResponse> getMovements(
+      UUID warehouseId, UUID variantId, Instant from, Instant to, int page, int size) {
+    page = Math.max(page, 1);
+    size = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    Page<StockMovement> movements = stockMovementRepository.findLedger(
+        warehouseId, variantId, from, to, PageRequest.of(page - 1, size));
+
+    List<StockMovementResponse> items = movements.getContent().stream()
+        .map(m -> StockMovementResponse.builder()
+            .movementId(m.getMovementId())
+            .createdAt(m.getCreatedAt())
+            .warehouseId(m.getWarehouseId())
+            .variantId(m.getVariant() != null ? m.getVariant().getVariantId() : null)
+            .variantSku(m.getVariant() != null ? m.getVariant().getSku() : null)
+            .quantity(m.getQuantity() != null ? m.getQuantity() : 0)
+            .balanceAfter(m.getBalanceAfter())
+            .reason(m.getReason())
+            .referenceType(m.getReferenceType())
+            .referenceId(m.getReferenceId())
+            .build())
+        .collect(Collectors.toList());
+
+    StockMovementPageResponse response = StockMovementPageResponse.builder()
+        .items(items)
+        .meta(StockMovementPageResponse.Meta.builder()
+            .page(page)
+            .size(size)
+            .totalElements(movements.getTotalElements())
+            .totalPages(movements.getTotalPages())
+            .build())
+        .build();
+    return ApiResponse.success("Lấy lịch sử xuất nhập kho thành công", response);
+  }
+
+  /**
+   * Tồn kho tại một thời điểm trong quá khứ (snapshot + movement sau snapshot).
+   */
+  public ApiResponse<List<StockBalanceResponse>> getStockAt(Instant at, UUID warehouseId, UUID variantId) {
+    List<StockBalanceResponse> response = stockLedgerService.balancesAt(at, warehouseId, variantId).stream()
+        .map(b -> StockBalanceResponse.builder()
+            .warehouseId(b.warehouseId())
+            .variantId(b.variantId())
+            .quantity(b.quantity())
+            .build())
+        .collect(Collectors.toList());
+    return ApiResponse.success("Lấy tồn kho theo thời điểm thành công", response);
+  }
+
+  /**
+   * Tồn đầu kỳ, cuối kỳ và chênh lệch trong khoảng [from, to].
+   */
+  public ApiResponse<List<StockBalanceResponse>> getStockPeriod(
+      Instant from, Instant to, UUID warehouseId, UUID variantId) {
+    if (!from.isBefore(to)) {
+      throw new BadRequestException("Thời điểm bắt đầu phải trước thời điểm kết thúc");
+    }
+    Map<List<UUID>, Integer> opening = new HashMap<>();
+    for (StockLedgerService.Balance b : stockLedgerService.balancesAt(from, warehouseId, variantId)) {
+      opening.put(List.of(b.warehouseId(), b.variantId()), b.quantity());
+    }
+
+    List<StockBalanceResponse> response = new ArrayList<>();
+    for (StockLedgerService.Balance b : stockLedgerService.balancesAt(to, warehouseId, variantId)) {
+      int open = opening.getOrDefault(List.of(b.warehouseId(), b.variantId()), 0);
+      response.add(StockBalanceResponse.builder()
+          .warehouseId(b.warehouseId())
+          .variantId(b.variantId())
+          .opening(open)
+          .quantity(b.quantity())
+          .delta(b.quantity() - open)
+          .build());
+    }
+    return ApiResponse.success("Lấy biến động tồn kho thành công", response);
+  }
+
+  @Transactional
+  public ApiResponse<Integer> takeSnapshot() {
+    int rows = stockLedgerService.takeSnapshot();
+    auditLogService.log("STOCK_SNAPSHOT", "Chụp số dư tồn kho " + rows + " dòng");
+    return ApiResponse.success("Chụp số dư tồn kho thành công", rows);
+  }
+
+  private static String searchPattern(String search) {
+    return search != null && !search.isBlank() ? "%" + search.trim().toLowerCase() + "%" : null;
+  }
+
+  @Transactional
+  public ApiResponse<InventoryResponse> importStock(ImportStockRequest request) {
+    ProductVariant variant = productVariantRepository.findById(request.getVariantId())
+        .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy biến thể sản phẩm"));
+    Warehouse warehouse = warehouseRepository.findById(request.getWarehouseId())
+        .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy kho"));
+
+    // Cộng tồn kho nguyên tử (MERGE) và ghi sổ cái trong cùng transaction
+    stockLedgerService.apply(new StockLedgerService.Change(
+        warehouse.getWarehouseId(), variant.getVariantId(), request.getQuantity(),
+        request.getReason() != null ? request.getReason() : "IMPORT", StockMovement.REF_IMPORT, null));
+    hotSkuInventoryService.onStockAdded(warehouse.getWarehouseId(), variant.getVariantId(),
+        request.getQuantity());
+
+    // Build response for just this variant
+    InventoryResponse response = toResponse(inventoryStockRepository
+        .findWithDetailsByVariantIdIn(List.of(variant.getVariantId()), null));
 
     auditLogService.log("IMPORT_STOCK",
         "Nhập " + request.getQuantity() + " " + variant.getProduct().getName()
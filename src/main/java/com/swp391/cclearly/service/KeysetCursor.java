@@ -0,0 +1,44 @@
+package com.swp391.cclearly.service;
+
+import com.swp391.cclearly.exception.BadRequestException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Vị trí keyset (createdAt, id) của bản ghi cuối trang, mã hóa thành token mờ cho client.
+ */
+public record KeysetCursor(Instant createdAt, UUID id) {
+
+  public static final int MAX_PAGE_SIZE = 100;
+
+  /**
+   * Giới hạn kích thước trang cursor về 1..MAX_PAGE_SIZE (size 0/âm làm Limit.of lỗi, size lớn quét cả bảng).
+   */
+  public static int clampSize(int size) {
+    return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+  }
+
+  public String encode() {
+    String raw = createdAt.toEpochMilli() + ":" + createdAt.getNano() + ":" + id;
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Giải mã cursor từ client; null hoặc rỗng nghĩa là trang đầu tiên.
+   */
+  public static KeysetCursor decode(String token) {
+    if (token == null || token.isBlank()) return null;
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      String[] parts = raw.split(":", 3);
+      Instant createdAt = Instant.ofEpochMilli(Long.parseLong(parts[0]))
+          .plusNanos(Integer.parseInt(parts[1]) % 1_000_000);
+      return new KeysetCursor(createdAt, UUID.fromString(parts[2]));
+    } catch (RuntimeException e) {
+      throw new BadRequestException("Cursor không hợp lệ");
+    }
+  }
+}
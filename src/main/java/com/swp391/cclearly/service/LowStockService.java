@@ -0,0 +1,350 @@
+package com.swp391.cclearly.service;
+
+import com.swp391.cclearly.dto.base.ApiResponse;
+import com.swp391.cclearly.dto.inventory.LowStockFeedResponse;
+import com.swp391.cclearly.dto.inventory.LowStockItemResponse;
+import com.swp391.cclearly.dto.inventory.LowStockPageResponse;
+import com.swp391.cclearly.dto.inventory.ReorderThresholdRequest;
+import com.swp391.cclearly.entity.InventoryStock;
+import com.swp391.cclearly.entity.InventoryStockId;
+import com.swp391.cclearly.entity.ReorderThreshold;
+import com.swp391.cclearly.exception.ResourceNotFoundException;
+import com.swp391.cclearly.repository.InventoryStockRepository;
+import com.swp391.cclearly.repository.ProductVariantRepository;
+import com.swp391.cclearly.repository.ReorderThresholdRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Phát hiện tồn kho thấp theo kiểu tăng dần: chỉ đánh giá lại các (kho, biến thể) vừa thay đổi
+ * (StockChangedEvent từ sổ cái), giữ tập "dưới ngưỡng" trong bộ nhớ và một change feed có số thứ tự
+ * để client chỉ lấy phần thay đổi. Ngưỡng riêng lưu ở Reorder_Thresholds, mặc định là low_stock_threshold.
+ * Trạng thái nằm trong bộ nhớ của từng instance; nạp lại khi khởi động hoặc qua /low-stock/rebuild.
+ * seq bắt đầu lại từ 0 ở mỗi instance, nên feed kèm epoch (ngẫu nhiên mỗi lần khởi động) để client
+ * phát hiện đã chuyển sang instance khác hoặc instance vừa khởi động lại.
+ * Listener sau commit có thể chạy lệch thứ tự, nên mỗi số dư kèm row_version của Inventory_Stock
+ * và số dư cũ hơn số dư đã biết bị bỏ qua.
+ * Metrics: inventory.low_stock.size.
+ */
+@Service
+@Slf4j
+public class LowStockService {
+
+  public static final String LOW_STOCK_THRESHOLD = "low_stock_threshold";
+  public static final String ENTERED = "ENTERED";
+  public static final String UPDATED = "UPDATED";
+  public static final String CLEARED = "CLEARED";
+
+  private static final int MAX_PAGE_SIZE = 100;
+  private static final int MAX_FEED_LIMIT = 1000;
+
+  private record Alert(UUID warehouseId, UUID variantId, int quantity, int threshold, Instant since) {
+  }
+
+  private record Level(int quantity, long version) {
+  }
+
+  private final InventoryStockRepository inventoryStockRepository;
+  private final ReorderThresholdRepository reorderThresholdRepository;
+  private final ProductVariantRepository productVariantRepository;
+  private final SystemConfigService systemConfigService;
+  private final AuditLogService auditLogService;
+  private final int feedCapacity;
+
+  private final Map<List<UUID>, Integer> thresholds = new ConcurrentHashMap<>();
+  private final Map<List<UUID>, Alert> below = new ConcurrentHashMap<>();
+  private final Map<List<UUID>, Level> levels = new ConcurrentHashMap<>();
+  private final Deque<LowStockFeedResponse.Event> feed = new ArrayDeque<>();
+  private final AtomicLong seq = new AtomicLong();
+  private final String epoch = UUID.randomUUID().toString();
+
+  public LowStockService(
+      InventoryStockRepository inventoryStockRepository,
+      ReorderThresholdRepository reorderThresholdRepository,
+      ProductVariantRepository productVariantRepository,
+      SystemConfigService systemConfigService,
+      AuditLogService auditLogService,
+      MeterRegistry meterRegistry,
+      @Value("${app.inventory.low-stock.feed-capacity:10000}") int feedCapacity) {
+    this.inventoryStockRepository = inventoryStockRepository;
+    this.reorderThresholdRepository = reorderThresholdRepository;
+    this.productVariantRepository = productVariantRepository;
+    this.systemConfigService = systemConfigService;
+    this.auditLogService = auditLogService;
+    this.feedCapacity = feedCapacity;
+    Gauge.builder("inventory.low_stock.size", below, Map::size)
+        .description("Số dòng tồn kho đang dưới ngưỡng đặt hàng lại")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Nạp ngưỡng và tập dưới ngưỡng ban đầu. Chỉ đọc các dòng có tồn kho <= ngưỡng lớn nhất.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  @Transactional(readOnly = true)
+  public void rebuild() {
+    Map<List<UUID>, Integer> loaded = new HashMap<>();
+    for (ReorderThreshold t : reorderThresholdRepository.findAll()) {
+      loaded.put(key(t.getId().getWarehouseId(), t.getId().getVariantId()), t.getThreshold());
+    }
+    thresholds.keySet().retainAll(loaded.keySet());
+    thresholds.putAll(loaded);
+
+    int maxThreshold = Math.max(defaultThreshold(),
+        loaded.values().stream().mapToInt(Integer::intValue).max().orElse(0));
+    Map<List<UUID>, Level> candidates = new HashMap<>();
+    for (Object[] row : inventoryStockRepository.findRowsAtOrBelow(maxThreshold)) {
+      candidates.put(key(uuid(row[0]), uuid(row[1])), level(row[2], row[3]));
+    }
+    // Dòng đang trong tập nhưng không còn là ứng viên thì đã vượt ngưỡng
+    for (List<UUID> k : List.copyOf(below.keySet())) {
+      if (candidates.containsKey(k)) continue;
+      List<Object[]> current = inventoryStockRepository.findQuantityAndVersion(k.get(0), k.get(1));
+      if (current.isEmpty()) {
+        drop(k.get(0), k.get(1));
+      } else {
+        Level level = level(current.get(0)[0], current.get(0)[1]);
+        evaluate(k.get(0), k.get(1), level.quantity(), level.version());
+      }
+    }
+    candidates.forEach((k, level) -> evaluate(k.get(0), k.get(1), level.quantity(), level.version()));
+    log.info("Low-stock detector loaded: {} thresholds, {} rows below threshold",
+        thresholds.size(), below.size());
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onStockChanged(StockChangedEvent event) {
+    for (StockChangedEvent.Row b : event.balances()) {
+      evaluate(b.warehouseId(), b.variantId(), b.quantity(), b.version());
+    }
+  }
+
+  @Transactional
+  public ApiResponse<Void> setThreshold(ReorderThresholdRequest request) {
+    InventoryStockId id = new InventoryStockId(request.getWarehouseId(), request.getVariantId());
+    InventoryStock stock = inventoryStockRepository.findById(id)
+        .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy tồn kho của biến thể tại kho này"));
+
+    if (request.getThreshold() == null) {
+      reorderThresholdRepository.deleteById(id);
+    } else {
+      reorderThresholdRepository.save(ReorderThreshold.builder()
+          .id(id)
+          .threshold(request.getThreshold())
+          .updatedAt(Instant.now())
+          .build());
+    }
+
+    List<UUID> k = key(id.getWarehouseId(), id.getVariantId());
+    Integer threshold = request.getThreshold();
+    List<Object[]> current = inventoryStockRepository.findQuantityAndVersion(k.get(0), k.get(1));
+    Level level = current.isEmpty() ? new Level(0, 0) : level(current.get(0)[0], current.get(0)[1]);
+    afterCommit(() -> {
+      if (threshold == null) {
+        thresholds.remove(k);
+      } else {
+        thresholds.put(k, threshold);
+      }
+      evaluate(k.get(0), k.get(1), level.quantity(), level.version());
+    });
+
+    auditLogService.log("UPDATE_REORDER_THRESHOLD", "Ngưỡng đặt hàng lại của " + stock.getVariant().getSku()
+        + " tại kho " + stock.getWarehouse().getName() + ": "
+        + (threshold != null ? threshold : "mặc định"));
+    return ApiResponse.success("Cập nhật ngưỡng tồn kho thành công", null);
+  }
+
+  /**
+   * Danh sách đang dưới ngưỡng (thiếu nhiều nhất trước), đọc từ bộ nhớ.
+   */
+  @Transactional(readOnly = true)
+  public ApiResponse<LowStockPageResponse> getLowStock(UUID warehouseId, int page, int size) {
+    page = Math.max(page, 1);
+    size = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    long latest = seq.get();
+    List<Alert> all = below.values().stream()
+        .filter(a -> warehouseId == null || a.warehouseId().equals(warehouseId))
+        .sorted(Comparator.comparingInt((Alert a) -> a.quantity() - a.threshold())
+            .thenComparing(a -> a.variantId())
+            .thenComparing(a -> a.warehouseId()))
+        .toList();
+    int from = (int) Math.min((long) (page - 1) * size, all.size());
+    List<Alert> pageItems = all.subList(from, Math.min(from + size, all.size()));
+
+    Map<UUID, Object[]> labels = pageItems.isEmpty() ? Map.of()
+        : productVariantRepository.findLabelsByIdIn(
+                pageItems.stream().map(Alert::variantId).collect(Collectors.toSet())).stream()
+            .collect(Collectors.toMap(r -> (UUID) r[0], r -> r, (a, b) -> a));
+
+    List<LowStockItemResponse> items = pageItems.stream()
+        .map(a -> {
+          Object[] label = labels.get(a.variantId());
+          return LowStockItemResponse.builder()
+              .warehouseId(a.warehouseId())
+              .variantId(a.variantId())
+              .variantSku(label != null ? (String) label[1] : null)
+              .productName(label != null ? (String) label[2] : null)
+              .quantity(a.quantity())
+              .threshold(a.threshold())
+              .since(a.since())
+              .build();
+        })
+        .collect(Collectors.toList());
+
+    LowStockPageResponse response = LowStockPageResponse.builder()
+        .items(items)
+        .epoch(epoch)
+        .latestSeq(latest)
+        .meta(LowStockPageResponse.Meta.builder()
+            .page(page)
+            .size(size)
+            .totalElements(all.size())
+            .totalPages((all.size() + size - 1) / size)
+            .build())
+        .build();
+    return ApiResponse.success("Lấy danh sách tồn kho thấp thành công", response);
+  }
+
+  /**
+   * Các thay đổi có seq > since (tối đa limit). reset=true nếu feed đã bỏ qua các sự kiện cũ hơn since,
+   * hoặc since không thuộc instance này (epoch khác, since lớn hơn seq hiện tại): khi đó không trả sự kiện,
+   * client tải lại /low-stock và theo dõi tiếp từ latestSeq/epoch mới.
+   */
+  public ApiResponse<LowStockFeedResponse> getChanges(long since, String clientEpoch, int limit) {
+    int max = Math.max(1, Math.min(limit, MAX_FEED_LIMIT));
+    List<LowStockFeedResponse.Event> events;
+    boolean reset;
+    long latest;
+    synchronized (feed) {
+      latest = seq.get();
+      if ((clientEpoch != null && !clientEpoch.equals(epoch)) || since > latest) {
+        reset = true;
+        events = List.of();
+      } else {
+        reset = !feed.isEmpty() && feed.peekFirst().getSeq() > since + 1;
+        events = feed.stream().filter(e -> e.getSeq() > since).limit(max).toList();
+      }
+    }
+    LowStockFeedResponse response = LowStockFeedResponse.builder()
+        .events(events)
+        .epoch(epoch)
+        .latestSeq(events.isEmpty() ? latest : events.get(events.size() - 1).getSeq())
+        .reset(reset)
+        .build();
+    return ApiResponse.success("Lấy thay đổi tồn kho thấp thành công", response);
+  }
+
+  /**
+   * Ghi nhận số dư (nếu mới hơn số dư đã biết) rồi đánh giá lại với số dư mới nhất.
+   * Số dư cũ vẫn kích hoạt đánh giá lại vì ngưỡng có thể vừa đổi (setThreshold).
+   */
+  private void evaluate(UUID warehouseId, UUID variantId, int quantity, long version) {
+    List<UUID> k = key(warehouseId, variantId);
+    int defaultThreshold = defaultThreshold();
+    // Khóa theo feed để thứ tự sự kiện trong feed khớp với thứ tự cập nhật tập dưới ngưỡng
+    synchronized (feed) {
+      Level latest = levels.merge(k, new Level(quantity, version),
+          (old, incoming) -> incoming.version() >= old.version() ? incoming : old);
+      apply(k, latest.quantity(), thresholds.getOrDefault(k, defaultThreshold));
+    }
+  }
+
+  /**
+   * Dòng tồn kho không còn tồn tại: quên số dư đã biết và gỡ khỏi tập dưới ngưỡng.
+   */
+  private void drop(UUID warehouseId, UUID variantId) {
+    List<UUID> k = key(warehouseId, variantId);
+    synchronized (feed) {
+      levels.remove(k);
+      apply(k, Integer.MAX_VALUE, thresholds.getOrDefault(k, 0));
+    }
+  }
+
+  private void apply(List<UUID> k, int quantity, int threshold) {
+    UUID warehouseId = k.get(0);
+    UUID variantId = k.get(1);
+    boolean low = threshold > 0 && quantity <= threshold;
+    Alert previous = below.get(k);
+    if (!low) {
+      if (previous != null) {
+        below.remove(k);
+        append(CLEARED, warehouseId, variantId, quantity, threshold);
+      }
+    } else if (previous == null) {
+      below.put(k, new Alert(warehouseId, variantId, quantity, threshold, Instant.now()));
+      append(ENTERED, warehouseId, variantId, quantity, threshold);
+    } else if (previous.quantity() != quantity || previous.threshold() != threshold) {
+      below.put(k, new Alert(warehouseId, variantId, quantity, threshold, previous.since()));
+      append(UPDATED, warehouseId, variantId, quantity, threshold);
+    }
+  }
+
+  private void append(String type, UUID warehouseId, UUID variantId, int quantity, int threshold) {
+    feed.addLast(LowStockFeedResponse.Event.builder()
+        .seq(seq.incrementAndGet())
+        .type(type)
+        .warehouseId(warehouseId)
+        .variantId(variantId)
+        .quantity(quantity)
+        .threshold(threshold)
+        .at(Instant.now())
+        .build());
+    while (feed.size() > feedCapacity) feed.removeFirst();
+  }
+
+  private int defaultThreshold() {
+    String value = systemConfigService.get().get(LOW_STOCK_THRESHOLD, "5");
+    try {
+      return Math.max(0, Integer.parseInt(value.trim()));
+    } catch (NumberFormatException e) {
+      return 5;
+    }
+  }
+
+  private static List<UUID> key(UUID warehouseId, UUID variantId) {
+    return List.of(warehouseId, variantId);
+  }
+
+  // uniqueidentifier may come back as String from a native query
+  private static UUID uuid(Object value) {
+    return value instanceof UUID u ? u : UUID.fromString(value.toString());
+  }
+
+  private static Level level(Object quantity, Object version) {
+    return new Level(quantity != null ? ((Number) quantity).intValue() : 0,
+        version != null ? ((Number) version).longValue() : 0);
+  }
+
+  private static void afterCommit(Runnable action) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      action.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        action.run();
+      }
+    });
+  }
+}
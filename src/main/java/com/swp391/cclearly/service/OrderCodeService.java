@@ -0,0 +1,102 @@
+package com.swp391.cclearly.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Cấp mã đơn hàng ngắn, duy nhất: số thứ tự lấy theo khối từ sequence Order_Code_Seq
+ * (sp_sequence_get_range, mỗi khối app.orders.code-block-size số) nên phần lớn đơn không cần truy vấn DB.
+ * Số được xáo trộn song ánh trong 30 bit rồi mã hóa Crockford base32 (không có I, L, O, U),
+ * ví dụ CC7K2M9Q. Các khối không chồng nhau giữa các instance và giữa các lần khởi động.
+ */
+@Service
+@Slf4j
+public class OrderCodeService {
+
+  public static final String PREFIX = "CC";
+
+  private static final String SEQUENCE = "dbo.Order_Code_Seq";
+  private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+  private static final int WIDTH = 6;
+  private static final long SPACE = 1L << (5 * WIDTH);
+  // Hằng số lẻ nên phép nhân modulo 2^30 là song ánh: mã liên tiếp không đoán được từ nhau
+  private static final long MULTIPLIER = 0x2E3D5A7BL;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final int blockSize;
+  private long next;
+  private long limit;
+
+  public OrderCodeService(
+      JdbcTemplate jdbcTemplate,
+      @Value("${app.orders.code-block-size:100}") int blockSize) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.blockSize = Math.max(1, blockSize);
+  }
+
+  /**
+   * data.sql chạy với continue-on-error nên lỗi tạo sequence/unique index không làm dừng ứng dụng;
+   * kiểm tra lại ở đây và dừng khởi động nếu thiếu, tránh chạy khi mã đơn không được đảm bảo duy nhất.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void verifySchema() {
+    Integer sequences = jdbcTemplate.queryForObject(
+        "SELECT COUNT(*) FROM sys.sequences WHERE name = 'Order_Code_Seq'", Integer.class);
+    Integer indexes = jdbcTemplate.queryForObject(
+        "SELECT COUNT(*) FROM sys.indexes WHERE name = 'UX_Orders_code' AND is_unique = 1 "
+            + "AND object_id = OBJECT_ID('Orders')", Integer.class);
+    if (sequences == null || sequences == 0 || indexes == null || indexes == 0) {
+      throw new IllegalStateException("Thiếu sequence Order_Code_Seq hoặc unique index UX_Orders_code "
+          + "(xem phần ORDER CODES trong data.sql; có thể do mã đơn trùng chưa được xử lý)");
+    }
+  }
+
+  public String nextCode() {
+    return PREFIX + encode(nextNumber());
+  }
+
+  private synchronized long nextNumber() {
+    if (next >= limit) {
+      Long first = jdbcTemplate.queryForObject("""
+          SET NOCOUNT ON;
+          DECLARE @first SQL_VARIANT;
+          EXEC sys.sp_sequence_get_range @sequence_name = ?, @range_size = ?, @range_first_value = @first OUTPUT;
+          SELECT CAST(@first AS BIGINT);
+          """, Long.class, SEQUENCE, blockSize);
+      if (first == null) {
+        throw new IllegalStateException("Không lấy được khối mã đơn hàng từ " + SEQUENCE);
+      }
+      next = first;
+      limit = first + blockSize;
+      log.debug("Reserved order codes {}..{}", next, limit - 1);
+    }
+    return next++;
+  }
+
+  static String encode(long number) {
+    long value = number < SPACE ? (number * MULTIPLIER) & (SPACE - 1) : number;
+    StringBuilder sb = new StringBuilder();
+    do {
+      sb.append(ALPHABET[(int) (value & 31)]);
+      value >>>= 5;
+    } while (value > 0);
+    while (sb.length() < WIDTH) sb.append('0');
+    return sb.reverse().toString();
+  }
+
+  /**
+   * Chuẩn hóa mã khách nhập: bỏ khoảng trắng/gạch, in hoa, I/L thành 1, O thành 0 (theo Crockford).
+   * Chỉ áp dụng cho phần sau tiền tố của mã dạng mới; mã cũ giữ nguyên.
+   */
+  public static String normalize(String code) {
+    String value = code.trim().toUpperCase().replace(" ", "");
+    if (!value.startsWith(PREFIX)) return value;
+    String body = value.substring(PREFIX.length()).replace("-", "");
+    if (body.length() != WIDTH) return value;
+    return PREFIX + body.replace('I', '1').replace('L', '1').replace('O', '0');
+  }
+}
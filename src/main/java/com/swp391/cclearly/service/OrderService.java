@@ -1,6 +1,7 @@
 package com.swp391.cclearly.service;
 
 import com.swp391.cclearly.dto.base.ApiResponse;
+import com.swp391.cclearly.dto.base.CursorPageResponse;
 import com.swp391.cclearly.dto.order.CreateOrderRequest;
 import com.swp391.cclearly.dto.order.OrderPageResponse;
 import com.swp391.cclearly.dto.order.OrderResponse;
@@ -22,15 +23,23 @@ import com.swp391.cclearly.repository.AddressRepository;
 import com.swp391.cclearly.repository.CartRepository;
 import com.swp391.cclearly.repository.OrderItemRepository;
 import com.swp391.cclearly.repository.OrderRepository;
+import com.swp391.cclearly.repository.PaymentRepository;
+import com.swp391.cclearly.repository.ProductImageRepository;
 import com.swp391.cclearly.repository.RefundRepository;
-import com.swp391.cclearly.repository.SystemConfigRepository;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -47,25 +56,119 @@ public class OrderService {
   private final AddressRepository addressRepository;
   private final RefundRepository refundRepository;
   private final OrderItemRepository orderItemRepository;
-  private final SystemConfigRepository systemConfigRepository;
+  private final SystemConfigService systemConfigService;
+  private final SalesRollupService salesRollupService;
+  private final CountCacheService countCacheService;
+  private final InventoryReservationService inventoryReservationService;
+  private final PaymentRepository paymentRepository;
+  private final ProductImageRepository productImageRepository;
+  private final OrderCodeService orderCodeService;
+
+  private static final int IN_CHUNK = 1000;
+  private static final int MAX_PAGE_SIZE = 100;
+  private static final Duration SYNC_SETTLE = Duration.ofSeconds(5);
+
+  private record PaymentRow(String method, String status, BigDecimal amount) {
+  }
+
+  private record CustomerRow(UUID userId, String email, String phoneNumber, String fullName) {
+  }
 
   public ApiResponse<List<OrderResponse>> getUserOrders(User user) {
-    List<Order> orders = orderRepository.findByUserOrderByOrderIdDesc(user);
-    List<OrderResponse> response = orders.stream().map(this::toResponse).collect(Collectors.toList());
+    List<Order> orders = orderRepository.findByUserOrderByCreatedAtDescOrderIdDesc(user);
+    return ApiResponse.success("Lấy danh sách đơn hàng thành công", toResponses(orders));
+  }
+
+  /**
+   * Đơn của khách theo cursor (createdAt, orderId), mới nhất trước.
+   */
+  @Transactional(readOnly = true)
+  public ApiResponse<CursorPageResponse<OrderResponse>> getUserOrdersByCursor(User user, String cursor, int size) {
+    size = clampSize(size);
+    KeysetCursor after = KeysetCursor.decode(cursor);
+    List<Order> rows = orderRepository.findUserKeysetPage(user,
+        after != null ? after.createdAt() : null, after != null ? after.id() : null,
+        Limit.of(size + 1));
+    boolean hasMore = rows.size() > size;
+    List<Order> pageRows = hasMore ? rows.subList(0, size) : rows;
+    Order last = pageRows.isEmpty() ? null : pageRows.get(pageRows.size() - 1);
+
+    CursorPageResponse<OrderResponse> response = CursorPageResponse.<OrderResponse>builder()
+        .items(toResponses(pageRows))
+        .size(size)
+        .hasMore(hasMore)
+        .nextCursor(hasMore ? new KeysetCursor(last.getCreatedAt(), last.getOrderId()).encode() : null)
+        .build();
     return ApiResponse.success("Lấy danh sách đơn hàng thành công", response);
   }
 
+  /**
+   * Đồng bộ tăng dần: đơn được tạo hoặc thay đổi sau since-token (hoặc sau modifiedSince nếu không có token),
+   * cũ nhất trước. nextCursor là token cho lần đồng bộ sau (giữ nguyên token cũ nếu không có gì mới).
+   * Bỏ qua các thay đổi trong SYNC_SETTLE gần nhất để transaction commit muộn không bị client vượt qua.
+   * If-Modified-Since/Last-Modified chỉ chính xác tới giây trong khi updated_at có phần lẻ giây: mốc trên được
+   * làm tròn xuống đầu giây, nên một trang không còn hasMore đã chứa mọi thay đổi tới hết giây của Last-Modified
+   * và modifiedSince được hiểu là "đã có mọi thay đổi trước modifiedSince + 1s".
+   */
+  @Transactional(readOnly = true)
+  public ApiResponse<CursorPageResponse<OrderResponse>> getUserOrderChanges(
+      User user, String since, Instant modifiedSince, int size) {
+    size = clampSize(size);
+    KeysetCursor after = KeysetCursor.decode(since);
+    Instant sinceAt = after != null ? after.createdAt()
+        : modifiedSince != null ? modifiedSince.plusSeconds(1).minusNanos(1) : Instant.EPOCH;
+    UUID afterId = after != null ? after.id() : null;
+    Instant until = Instant.now().minus(SYNC_SETTLE).truncatedTo(ChronoUnit.SECONDS).minusNanos(1);
+
+    List<Order> rows = orderRepository.findUserChangesSince(user, sinceAt, afterId, until, Limit.of(size + 1));
+    boolean hasMore = rows.size() > size;
+    List<Order> pageRows = hasMore ? rows.subList(0, size) : rows;
+    Order last = pageRows.isEmpty() ? null : pageRows.get(pageRows.size() - 1);
+
+    String next = last != null
+        ? new KeysetCursor(last.getUpdatedAt(), last.getOrderId()).encode()
+        : since != null && !since.isBlank() ? since : null;
+    CursorPageResponse<OrderResponse> response = CursorPageResponse.<OrderResponse>builder()
+        .items(toResponses(pageRows))
+        .size(size)
+        .hasMore(hasMore)
+        .nextCursor(next)
+        .build();
+    return ApiResponse.success("Lấy danh sách đơn hàng thay đổi thành công", response);
+  }
+
+  private static int clampSize(int size) {
+    return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+  }
+
   public ApiResponse<OrderResponse> getOrderById(User user, UUID orderId) {
     Order order = orderRepository.findById(orderId)
         .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy đơn hàng"));
+    checkCanView(user, order);
+    return ApiResponse.success("Lấy thông tin đơn hàng thành công", toResponse(order));
+  }
 
+  /**
+   * Tra cứu đơn theo mã (dùng unique index UX_Orders_code), chấp nhận mã gõ nhầm I/L/O.
+   */
+  public ApiResponse<OrderResponse> getOrderByCode(User user, String code) {
+    if (code == null || code.isBlank()) {
+      throw new BadRequestException("Mã đơn hàng không được để trống");
+    }
+    String normalized = OrderCodeService.normalize(code);
+    Order order = orderRepository.findByCode(code.trim())
+        .or(() -> orderRepository.findByCode(normalized))
+        .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy đơn hàng"));
+    checkCanView(user, order);
+    return ApiResponse.success("Lấy thông tin đơn hàng thành công", toResponse(order));
+  }
+
+  private static void checkCanView(User user, Order order) {
     if (!order.getUser().getUserId().equals(user.getUserId())
         && !user.getRole().getRoleName().equals("ADMIN")
         && !user.getRole().getRoleName().equals("SALES_STAFF")) {
       throw new BadRequestException("Không có quyền xem đơn hàng này");
     }
-
-    return ApiResponse.success("Lấy thông tin đơn hàng thành công", toResponse(order));
   }
 
   public ApiResponse<OrderResponse> createOrder(User user, CreateOrderRequest request) {
@@ -92,7 +195,7 @@ public class OrderService {
     }
 
     // Build order
-    String orderCode = "CC" + System.currentTimeMillis();
+    String orderCode = orderCodeService.nextCode();
 
     // Check if any cart item is a preorder variant
     boolean hasPreorder = cart.getCartItems().stream()
@@ -103,6 +206,7 @@ public class OrderService {
         .code(orderCode)
         .status("PENDING")
         .address(address)
+        .createdAt(Instant.now())
         .isPreorder(hasPreorder ? true : null)
         .preorderDeadline(hasPreorder ? java.time.LocalDate.now().plusDays(7) : null)
         .paymentType(hasPreorder ? "DEPOSIT" : null)
@@ -112,15 +216,22 @@ public class OrderService {
     List<OrderItem> orderItems = new ArrayList<>();
     BigDecimal total = BigDecimal.ZERO;
     BigDecimal preorderTotal = BigDecimal.ZERO;
+    Map<UUID, Integer> reserveQuantities = new HashMap<>();
+    Map<UUID, String> reserveLabels = new HashMap<>();
 
     for (var cartItem : cart.getCartItems()) {
       ProductVariant v = cartItem.getVariant();
+      int quantity = cartItem.getQuantity() != null ? cartItem.getQuantity() : 1;
       BigDecimal price = v.getSalePrice() != null ? v.getSalePrice() : v.getProduct().getBasePrice();
-      BigDecimal lineTotal = price.multiply(BigDecimal.valueOf(cartItem.getQuantity()));
+      BigDecimal lineTotal = price.multiply(BigDecimal.valueOf(quantity));
       total = total.add(lineTotal);
 
       if (Boolean.TRUE.equals(v.getIsPreorder())) {
         preorderTotal = preorderTotal.add(lineTotal);
+      } else {
+        // Hàng có sẵn phải giữ tồn kho; hàng pre-order chưa có trong kho
+        reserveQuantities.merge(v.getVariantId(), quantity, Integer::sum);
+        reserveLabels.put(v.getVariantId(), v.getProduct().getName() + " (SKU: " + v.getSku() + ")");
       }
 
       OrderItem oi = OrderItem.builder()
@@ -136,20 +247,15 @@ public class OrderService {
     order.getOrderItems().addAll(orderItems);
 
     // Compute shipping fee from system config
-    BigDecimal defaultShippingFee = systemConfigRepository.findByConfigKey("default_shipping_fee")
-        .map(c -> new BigDecimal(c.getConfigValue()))
-        .orElse(new BigDecimal("30000"));
-    BigDecimal freeShippingThreshold = systemConfigRepository.findByConfigKey("free_shipping_threshold")
-        .map(c -> new BigDecimal(c.getConfigValue()))
-        .orElse(new BigDecimal("500000"));
+    SystemConfigService.Snapshot config = systemConfigService.get();
+    BigDecimal defaultShippingFee = config.defaultShippingFee();
+    BigDecimal freeShippingThreshold = config.freeShippingThreshold();
 
     BigDecimal shippingFee = total.compareTo(freeShippingThreshold) >= 0
         ? BigDecimal.ZERO : defaultShippingFee;
     order.setShippingFee(shippingFee);
     order.setFinalAmount(total.add(shippingFee));
 
-    order = orderRepository.save(order);
-
     // Create Payment records
     if (hasPreorder) {
       // Preorder: deposit = 50% of preorder items' value, paid via PAYOS
@@ -190,8 +296,11 @@ public class OrderService {
           .build();
       order.getPayments().add(payment);
     }
+    // Một lần persist (cascade dòng hàng + thanh toán); mọi INSERT được ghi theo lô khi flush lúc commit
     order = orderRepository.save(order);
 
+    inventoryReservationService.reserve(order, reserveQuantities, reserveLabels);
+
     // Clear cart
     cart.getCartItems().clear();
     cartRepository.save(cart);
@@ -211,8 +320,11 @@ public class OrderService {
       throw new BadRequestException("Không thể hủy đơn hàng ở trạng thái hiện tại");
     }
 
+    String previousStatus = order.getStatus();
     order.setStatus("CANCELLED");
     orderRepository.save(order);
+    salesRollupService.onStatusChange(order, previousStatus);
+    inventoryReservationService.onStatusChange(order, previousStatus);
 
     return ApiResponse.success("Hủy đơn hàng thành công", null);
   }
@@ -220,8 +332,11 @@ public class OrderService {
   public ApiResponse<Void> updateOrderStatus(UUID orderId, String status) {
     Order order = orderRepository.findById(orderId)
         .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy đơn hàng"));
+    String previousStatus = order.getStatus();
     order.setStatus(status.toUpperCase());
     orderRepository.save(order);
+    salesRollupService.onStatusChange(order, previousStatus);
+    inventoryReservationService.onStatusChange(order, previousStatus);
     return ApiResponse.success("Cập nhật trạng thái đơn hàng thành công", null);
   }
 
@@ -231,6 +346,7 @@ public class OrderService {
   public ApiResponse<Void> updateOrderStatusWithNote(UUID orderId, String status, String note) {
     Order order = orderRepository.findById(orderId)
         .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy đơn hàng"));
+    String previousStatus = order.getStatus();
     order.setStatus(status.toUpperCase());
     // If note looks like a tracking number (for shipped status), save it
     if (note != null && !note.isBlank()) {
@@ -239,6 +355,8 @@ public class OrderService {
       }
     }
     orderRepository.save(order);
+    salesRollupService.onStatusChange(order, previousStatus);
+    inventoryReservationService.onStatusChange(order, previousStatus);
     return ApiResponse.success("Cập nhật trạng thái đơn hàng thành công", null);
   }
 
@@ -297,6 +415,8 @@ public class OrderService {
     }
 
     orderItemRepository.save(targetItem);
+    // Đơn kính đổi loại đơn trong OrderResponse nên đánh dấu đơn đã thay đổi cho đồng bộ
+    order.setUpdatedAt(Instant.now());
 
     return ApiResponse.success("Lưu thông tin đơn kính thành công", null);
   }
@@ -307,14 +427,12 @@ public class OrderService {
     Pageable pageable = PageRequest.of(page - 1, size);
     Page<Order> orderPage;
     if (status != null && !status.isBlank()) {
-      orderPage = orderRepository.findByStatusOrderByOrderIdDesc(status.toUpperCase(), pageable);
+      orderPage = orderRepository.findByStatusOrderByCreatedAtDescOrderIdDesc(status.toUpperCase(), pageable);
     } else {
-      orderPage = orderRepository.findAllByOrderByOrderIdDesc(pageable);
+      orderPage = orderRepository.findAllByOrderByCreatedAtDescOrderIdDesc(pageable);
     }
 
-    List<OrderResponse> items = orderPage.getContent().stream()
-        .map(this::toResponse)
-        .collect(Collectors.toList());
+    List<OrderResponse> items = toResponses(orderPage.getContent());
 
     OrderPageResponse response = OrderPageResponse.builder()
         .items(items)
@@ -329,6 +447,36 @@ public class OrderService {
     return ApiResponse.success("Lấy danh sách đơn hàng thành công", response);
   }
 
+  /**
+   * Admin: danh sách đơn hàng phân trang theo cursor (createdAt, orderId), COUNT chỉ khi withTotal.
+   */
+  public ApiResponse<CursorPageResponse<OrderResponse>> getAllOrdersByCursor(
+      String status, String cursor, int size, boolean withTotal) {
+    KeysetCursor after = KeysetCursor.decode(cursor);
+    size = KeysetCursor.clampSize(size);
+    String statusFilter = (status != null && !status.isBlank()) ? status.toUpperCase() : null;
+
+    List<Order> rows = orderRepository.findKeysetPage(statusFilter,
+        after != null ? after.createdAt() : null, after != null ? after.id() : null,
+        Limit.of(size + 1));
+    boolean hasMore = rows.size() > size;
+    List<Order> pageRows = hasMore ? rows.subList(0, size) : rows;
+    Order last = pageRows.isEmpty() ? null : pageRows.get(pageRows.size() - 1);
+
+    CursorPageResponse<OrderResponse> response = CursorPageResponse.<OrderResponse>builder()
+        .items(toResponses(pageRows))
+        .size(size)
+        .hasMore(hasMore)
+        .nextCursor(hasMore ? new KeysetCursor(last.getCreatedAt(), last.getOrderId()).encode() : null)
+        .totalElements(withTotal
+            ? countCacheService.get("orders:" + statusFilter, () -> statusFilter != null
+                ? orderRepository.countByStatus(statusFilter)
+                : orderRepository.count())
+            : null)
+        .build();
+    return ApiResponse.success("Lấy danh sách đơn hàng thành công", response);
+  }
+
   // Customer: request return/refund
   public ApiResponse<Void> requestReturn(User user, UUID orderId, ReturnRequest request) {
     Order order = orderRepository.findById(orderId)
@@ -353,10 +501,70 @@ public class OrderService {
 
     order.setStatus("RETURN_REQUESTED");
     orderRepository.save(order);
+    salesRollupService.onStatusChange(order, "DELIVERED");
 
     return ApiResponse.success("Yêu cầu trả hàng đã được gửi", null);
   }
 
+  /**
+   * Map một trang đơn sang OrderResponse bằng số truy vấn cố định (dòng hàng + biến thể + sản phẩm,
+   * ảnh, thanh toán, khách), không duyệt lazy collection của từng đơn. address phải được fetch sẵn.
+   */
+  private List<OrderResponse> toResponses(List<Order> orders) {
+    if (orders.isEmpty()) return List.of();
+    List<UUID> orderIds = orders.stream().map(Order::getOrderId).toList();
+
+    Map<UUID, List<Object[]>> itemRows = new HashMap<>();
+    Set<UUID> variantIds = new LinkedHashSet<>();
+    Map<UUID, List<PaymentRow>> payments = new HashMap<>();
+    Map<UUID, CustomerRow> customers = new HashMap<>();
+    for (int i = 0; i < orderIds.size(); i += IN_CHUNK) {
+      List<UUID> chunk = orderIds.subList(i, Math.min(i + IN_CHUNK, orderIds.size()));
+      for (Object[] row : orderItemRepository.findRowsByOrderIdIn(chunk)) {
+        itemRows.computeIfAbsent((UUID) row[0], k -> new ArrayList<>()).add(row);
+        variantIds.add((UUID) row[3]);
+      }
+      for (Object[] row : paymentRepository.findRowsByOrderIdIn(chunk)) {
+        payments.computeIfAbsent((UUID) row[0], k -> new ArrayList<>())
+            .add(new PaymentRow((String) row[1], (String) row[2], (BigDecimal) row[3]));
+      }
+      for (Object[] row : orderRepository.findCustomerRowsByOrderIdIn(chunk)) {
+        customers.put((UUID) row[0],
+            new CustomerRow((UUID) row[1], (String) row[2], (String) row[3], (String) row[4]));
+      }
+    }
+
+    Map<UUID, String> images = new HashMap<>();
+    List<UUID> variantList = new ArrayList<>(variantIds);
+    for (int i = 0; i < variantList.size(); i += IN_CHUNK) {
+      for (Object[] row : productImageRepository.findUrlsByVariantIdIn(
+          variantList.subList(i, Math.min(i + IN_CHUNK, variantList.size())))) {
+        images.putIfAbsent((UUID) row[0], (String) row[1]);
+      }
+    }
+
+    List<OrderResponse> response = new ArrayList<>(orders.size());
+    for (Order o : orders) {
+      List<Object[]> rows = itemRows.getOrDefault(o.getOrderId(), List.of());
+      List<OrderResponse.OrderItemResponse> items = rows.stream()
+          .map(r -> OrderResponse.OrderItemResponse.builder()
+              .orderItemId((UUID) r[1])
+              .productName((String) r[6])
+              .variantSku((String) r[4])
+              .colorName((String) r[5])
+              .productType((String) r[7])
+              .unitPrice((BigDecimal) r[2])
+              .quantity(1)
+              .imageUrl(images.get((UUID) r[3]))
+              .build())
+          .collect(Collectors.toList());
+      boolean prescription = rows.stream().anyMatch(r -> r[8] != null);
+      response.add(toResponse(o, items, prescription, payments.getOrDefault(o.getOrderId(), List.of()),
+          customers.get(o.getOrderId())));
+    }
+    return response;
+  }
+
   private OrderResponse toResponse(Order o) {
     List<OrderResponse.OrderItemResponse> items = o.getOrderItems().stream()
         .map(oi -> {
@@ -381,21 +589,28 @@ public class OrderService {
         .collect(Collectors.toList());
 
     // Determine order type: prescription if any item has prescription
-    String type = o.getOrderItems().stream()
-        .anyMatch(oi -> oi.getPrescription() != null) ? "prescription" : "standard";
+    boolean prescription = o.getOrderItems().stream()
+        .anyMatch(oi -> oi.getPrescription() != null);
+
+    List<PaymentRow> payments = o.getPayments() == null ? List.of() : o.getPayments().stream()
+        .map(p -> new PaymentRow(p.getMethod(), p.getStatus(), p.getAmount()))
+        .toList();
+    User u = o.getUser();
+    CustomerRow customer = u == null ? null
+        : new CustomerRow(u.getUserId(), u.getEmail(), u.getPhoneNumber(), u.getFullName());
+    return toResponse(o, items, prescription, payments, customer);
+  }
 
+  private OrderResponse toResponse(Order o, List<OrderResponse.OrderItemResponse> items,
+      boolean prescription, List<PaymentRow> payments, CustomerRow customer) {
     // Get payment method from first payment if exists
-    String paymentMethod = o.getPayments() != null && !o.getPayments().isEmpty()
-        ? o.getPayments().iterator().next().getMethod()
-        : null;
+    String paymentMethod = !payments.isEmpty() ? payments.get(0).method() : null;
 
     // Compute paidAmount (sum of COMPLETED payments) and codAmount
     BigDecimal paidAmount = BigDecimal.ZERO;
-    if (o.getPayments() != null) {
-      for (Payment p : o.getPayments()) {
-        if ("COMPLETED".equalsIgnoreCase(p.getStatus()) && p.getAmount() != null) {
-          paidAmount = paidAmount.add(p.getAmount());
-        }
+    for (PaymentRow p : payments) {
+      if ("COMPLETED".equalsIgnoreCase(p.status()) && p.amount() != null) {
+        paidAmount = paidAmount.add(p.amount());
       }
     }
     BigDecimal codAmount = o.getFinalAmount() != null
@@ -404,18 +619,18 @@ public class OrderService {
 
     return OrderResponse.builder()
         .orderId(o.getOrderId())
-        .userId(o.getUser() != null ? o.getUser().getUserId() : null)
+        .userId(customer != null ? customer.userId() : null)
         .code(o.getCode())
         .status(o.getStatus())
-        .type(type)
+        .type(prescription ? "prescription" : "standard")
         .finalAmount(o.getFinalAmount())
         .shippingFee(o.getShippingFee())
-        .customerEmail(o.getUser() != null ? o.getUser().getEmail() : null)
+        .customerEmail(customer != null ? customer.email() : null)
         .trackingNumber(o.getTrackingNumber())
         .shippingStreet(o.getAddress() != null ? o.getAddress().getStreet() : null)
         .shippingCity(o.getAddress() != null ? o.getAddress().getCity() : null)
-        .shippingPhone(o.getUser() != null ? o.getUser().getPhoneNumber() : null)
-        .recipientName(o.getUser() != null ? o.getUser().getFullName() : null)
+        .shippingPhone(customer != null ? customer.phoneNumber() : null)
+        .recipientName(customer != null ? customer.fullName() : null)
         .paymentMethod(paymentMethod)
         .paidAmount(paidAmount)
         .codAmount(codAmount)
@@ -423,6 +638,7 @@ public class OrderService {
         .preorderDeadline(o.getPreorderDeadline())
         .paymentType(o.getPaymentType())
         .createdAt(o.getCreatedAt())
+        .updatedAt(o.getUpdatedAt())
         .items(items)
         .build();
   }
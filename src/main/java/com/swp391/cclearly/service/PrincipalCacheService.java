@@ -0,0 +1,115 @@
+package com.swp391.cclearly.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.swp391.cclearly.entity.Role;
+import com.swp391.cclearly.entity.User;
+import com.swp391.cclearly.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Cache in-process cho principal (User + Role) dùng bởi JwtAuthenticationFilter,
+ * tránh một lần truy vấn Users cho mỗi request đã xác thực.
+ * Cache giữ snapshot bất biến; mỗi lần lấy trả về một User (và Role) mới, nên request này sửa
+ * principal không ảnh hưởng request khác đang dùng cùng tài khoản.
+ * Metrics: cache.gets{cache="principalCache",result=hit|miss}, cache.size, cache.evictions.
+ */
+@Service
+@Slf4j
+public class PrincipalCacheService {
+
+  private final UserRepository userRepository;
+  private final Cache<String, Principal> cache;
+
+  private record Principal(
+      UUID userId,
+      String email,
+      String passwordHash,
+      String fullName,
+      String phoneNumber,
+      String status,
+      Boolean isEmailVerified,
+      Instant createdAt,
+      Instant lastLogin,
+      UUID roleId,
+      String roleName,
+      String roleDescription) {
+
+    static Principal of(User u) {
+      Role r = u.getRole();
+      return new Principal(u.getUserId(), u.getEmail(), u.getPasswordHash(), u.getFullName(),
+          u.getPhoneNumber(), u.getStatus(), u.getIsEmailVerified(), u.getCreatedAt(), u.getLastLogin(),
+          r != null ? r.getRoleId() : null, r != null ? r.getRoleName() : null,
+          r != null ? r.getDescription() : null);
+    }
+
+    User toUser() {
+      return User.builder()
+          .userId(userId)
+          .email(email)
+          .passwordHash(passwordHash)
+          .fullName(fullName)
+          .phoneNumber(phoneNumber)
+          .status(status)
+          .isEmailVerified(isEmailVerified)
+          .createdAt(createdAt)
+          .lastLogin(lastLogin)
+          .role(roleId != null || roleName != null
+              ? Role.builder().roleId(roleId).roleName(roleName).description(roleDescription).build()
+              : null)
+          .build();
+    }
+  }
+
+  public PrincipalCacheService(
+      UserRepository userRepository,
+      MeterRegistry meterRegistry,
+      @Value("${app.security.principal-cache.max-size:10000}") long maxSize,
+      @Value("${app.security.principal-cache.ttl-seconds:300}") long ttlSeconds) {
+    this.userRepository = userRepository;
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+        .recordStats()
+        .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, "principalCache");
+  }
+
+  /**
+   * Lấy principal theo email; chỉ truy vấn DB khi cache miss. Email không tồn tại không được cache.
+   * Luôn trả về bản sao User tách rời (detached), không dùng chung giữa các request.
+   */
+  public Optional<User> findByEmail(String email) {
+    return Optional.ofNullable(
+            cache.get(email, key -> userRepository.findByEmailWithRole(key).map(Principal::of).orElse(null)))
+        .map(Principal::toUser);
+  }
+
+  /**
+   * Xóa principal khỏi cache. Gọi từ mọi chỗ thay đổi thông tin, trạng thái hoặc mật khẩu user.
+   * Xóa ngay lập tức và xóa thêm lần nữa sau commit để request song song không nạp lại dữ liệu cũ.
+   */
+  public void evict(User user) {
+    if (user == null || user.getEmail() == null) return;
+    String email = user.getEmail();
+    cache.invalidate(email);
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          cache.invalidate(email);
+        }
+      });
+    }
+  }
+}
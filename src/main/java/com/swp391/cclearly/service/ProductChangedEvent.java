@@ -0,0 +1,10 @@
+package com.swp391.cclearly.service;
+
+import java.util.UUID;
+
+/**
+ * Phát ra khi sản phẩm được tạo, cập nhật hoặc xóa mềm. Các chỉ mục trong bộ nhớ
+ * lắng nghe sự kiện này sau khi transaction commit.
+ */
+public record ProductChangedEvent(UUID productId) {
+}
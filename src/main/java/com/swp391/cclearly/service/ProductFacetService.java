@@ -0,0 +1,314 @@
+package com.swp391.cclearly.service;
+
+import com.swp391.cclearly.dto.product.ProductFacetFilter;
+import com.swp391.cclearly.entity.MasterLensTechnology;
+import com.swp391.cclearly.entity.Product;
+import com.swp391.cclearly.repository.ProductLensRepository;
+import com.swp391.cclearly.repository.ProductRepository;
+import com.swp391.cclearly.repository.ProductVariantRepository;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Facet engine trong bộ nhớ cho catalog: mỗi giá trị facet giữ một BitSet các sản phẩm đang hoạt động
+ * (đánh số thứ tự nội bộ). Lọc = AND giữa các facet, OR trong cùng facet; đếm theo kiểu
+ * disjunctive (mỗi facet được đếm với bộ lọc của các facet khác).
+ * Cập nhật theo ProductChangedEvent sau commit và dựng lại khi dấu vân tay catalog trong DB đổi.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductFacetService {
+
+  public static final String TYPE = "type";
+  public static final String SHAPE = "shape";
+  public static final String MATERIAL = "material";
+  public static final String LENS_WIDTH = "lensWidth";
+  public static final String REFRACTIVE_INDEX = "refractiveIndex";
+  public static final String COLOR = "color";
+  public static final String PRICE_BAND = "priceBand";
+  public static final String TECHNOLOGY = "technology";
+
+  private static final List<String> FACETS = List.of(
+      TYPE, SHAPE, MATERIAL, LENS_WIDTH, REFRACTIVE_INDEX, COLOR, PRICE_BAND, TECHNOLOGY);
+
+  private static final BigDecimal BAND_500K = new BigDecimal("500000");
+  private static final BigDecimal BAND_1M = new BigDecimal("1000000");
+  private static final BigDecimal BAND_2M = new BigDecimal("2000000");
+
+  private final ProductRepository productRepository;
+  private final ProductVariantRepository productVariantRepository;
+  private final ProductLensRepository productLensRepository;
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  // facet -> giá trị -> các ordinal sản phẩm
+  private final Map<String, Map<String, BitSet>> index = new HashMap<>();
+  private final Map<UUID, Integer> ordinals = new HashMap<>();
+  private final List<UUID> productIds = new ArrayList<>();
+  private final Map<UUID, Map<String, Set<String>>> valuesByProduct = new HashMap<>();
+  private final BitSet live = new BitSet();
+  private volatile String fingerprint;
+
+  public record FacetResult(List<UUID> productIds, Map<String, Map<String, Integer>> counts) {
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  @Transactional(readOnly = true)
+  public void rebuild() {
+    long start = System.currentTimeMillis();
+    // Đọc trước khi nạp: thay đổi xảy ra trong lúc dựng sẽ khiến lần poll sau dựng lại
+    String before = readFingerprint();
+    List<Product> products = productRepository.findAllActiveWithAttributes();
+    productLensRepository.fetchAllTechnologies();
+    Map<UUID, List<Object[]>> variants = new HashMap<>();
+    for (Object[] row : productVariantRepository.findFacetRowsForActiveProducts()) {
+      variants.computeIfAbsent((UUID) row[0], k -> new ArrayList<>()).add(row);
+    }
+
+    Map<UUID, Map<String, Set<String>>> built = new TreeMap<>();
+    for (Product p : products) {
+      built.put(p.getProductId(), facetValues(p, variants.getOrDefault(p.getProductId(), List.of())));
+    }
+
+    lock.writeLock().lock();
+    try {
+      index.clear();
+      ordinals.clear();
+      productIds.clear();
+      valuesByProduct.clear();
+      live.clear();
+      built.forEach(this::addLocked);
+    } finally {
+      lock.writeLock().unlock();
+    }
+    fingerprint = before;
+    log.info("Built product facet index: {} products in {} ms",
+        built.size(), System.currentTimeMillis() - start);
+  }
+
+  /**
+   * ProductChangedEvent chỉ đến từ node này; ghi trực tiếp vào DB hoặc từ node khác được phát hiện
+   * bằng dấu vân tay catalog và dựng lại toàn bộ chỉ mục.
+   */
+  @Scheduled(
+      fixedDelayString = "${app.catalog-index.poll-interval-ms:30000}",
+      initialDelayString = "${app.catalog-index.poll-interval-ms:30000}")
+  @Transactional(readOnly = true)
+  public void pollCatalog() {
+    String current = readFingerprint();
+    if (current != null && !Objects.equals(current, fingerprint)) {
+      log.info("Catalog changed outside this node, rebuilding product facet index");
+      rebuild();
+    }
+  }
+
+  @TransactionalEventListener
+  @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+  public void onProductChanged(ProductChangedEvent event) {
+    UUID id = event.productId();
+    Map<String, Set<String>> values = productRepository.findWithAttributesByIdIn(List.of(id))
+        .stream()
+        .filter(p -> Boolean.TRUE.equals(p.getIsActive()))
+        .map(p -> facetValues(p, productVariantRepository.findFacetRowsByProductId(id)))
+        .findFirst()
+        .orElse(null);
+
+    lock.writeLock().lock();
+    try {
+      removeLocked(id);
+      if (values != null) addLocked(id, values);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Lọc và đếm facet. Thứ tự id trả về ổn định theo thứ tự đánh chỉ mục.
+   */
+  public FacetResult query(ProductFacetFilter filter) {
+    Map<String, Predicate<String>> selected = toMatchers(filter);
+
+    lock.readLock().lock();
+    try {
+      Map<String, BitSet> selectedBits = new HashMap<>();
+      selected.forEach((facet, matcher) -> {
+        BitSet bits = new BitSet();
+        index.getOrDefault(facet, Map.of()).forEach((value, ids) -> {
+          if (matcher.test(value)) bits.or(ids);
+        });
+        selectedBits.put(facet, bits);
+      });
+
+      BitSet result = (BitSet) live.clone();
+      selectedBits.values().forEach(result::and);
+
+      Map<String, Map<String, Integer>> counts = new LinkedHashMap<>();
+      for (String facet : FACETS) {
+        BitSet base = (BitSet) live.clone();
+        selectedBits.forEach((other, bits) -> {
+          if (!other.equals(facet)) base.and(bits);
+        });
+        Map<String, Integer> facetCounts = new TreeMap<>();
+        index.getOrDefault(facet, Map.of()).forEach((value, ids) -> {
+          BitSet hit = (BitSet) ids.clone();
+          hit.and(base);
+          int n = hit.cardinality();
+          if (n > 0) facetCounts.put(value, n);
+        });
+        counts.put(facet, facetCounts);
+      }
+
+      List<UUID> ids = new ArrayList<>(result.cardinality());
+      for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+        ids.add(productIds.get(i));
+      }
+      return new FacetResult(ids, counts);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private static Map<String, Predicate<String>> toMatchers(ProductFacetFilter filter) {
+    Map<String, Predicate<String>> matchers = new HashMap<>();
+    if (filter.getType() != null && !filter.getType().isBlank()) {
+      String type = filter.getType().toLowerCase();
+      matchers.put(TYPE, type::equals);
+    }
+    putValues(matchers, SHAPE, filter.getShapes());
+    putValues(matchers, MATERIAL, filter.getMaterials());
+    putValues(matchers, COLOR, filter.getColors());
+    putValues(matchers, REFRACTIVE_INDEX, filter.getRefractiveIndexes());
+    putValues(matchers, TECHNOLOGY, filter.getTechnologies());
+    putValues(matchers, PRICE_BAND, filter.getPriceBands());
+    Integer min = filter.getLensWidthMin();
+    Integer max = filter.getLensWidthMax();
+    if (min != null || max != null) {
+      matchers.put(LENS_WIDTH, v -> {
+        int width = Integer.parseInt(v);
+        return (min == null || width >= min) && (max == null || width <= max);
+      });
+    }
+    return matchers;
+  }
+
+  private static void putValues(
+      Map<String, Predicate<String>> matchers, String facet, List<String> values) {
+    if (values == null || values.isEmpty()) return;
+    Set<String> wanted = new HashSet<>();
+    values.forEach(v -> wanted.add(v.trim().toLowerCase()));
+    matchers.put(facet, v -> wanted.contains(v.toLowerCase()));
+  }
+
+  /**
+   * Giá trị facet của một sản phẩm. variantRows: [productId, colorName, refractiveIndex, salePrice].
+   */
+  private static Map<String, Set<String>> facetValues(Product p, List<Object[]> variantRows) {
+    Map<String, Set<String>> values = new HashMap<>();
+    add(values, TYPE, p.getCategoryType() != null ? p.getCategoryType().toLowerCase() : null);
+    if (p.getProductFrame() != null) {
+      var f = p.getProductFrame();
+      add(values, SHAPE, f.getShape());
+      add(values, MATERIAL, f.getMaterial());
+      add(values, LENS_WIDTH, f.getLensWidthMm() != null ? f.getLensWidthMm().toString() : null);
+    }
+    if (p.getProductLens() != null) {
+      var l = p.getProductLens();
+      add(values, MATERIAL, l.getMaterial());
+      for (MasterLensTechnology t : l.getTechnologies()) {
+        add(values, TECHNOLOGY, t.getName());
+      }
+    }
+
+    BigDecimal price = null;
+    for (Object[] row : variantRows) {
+      add(values, COLOR, (String) row[1]);
+      if (row[2] != null) {
+        add(values, REFRACTIVE_INDEX,
+            new BigDecimal(row[2].toString()).stripTrailingZeros().toPlainString());
+      }
+      BigDecimal salePrice = (BigDecimal) row[3];
+      if (salePrice != null && (price == null || salePrice.compareTo(price) < 0)) {
+        price = salePrice;
+      }
+    }
+    if (price == null) price = p.getBasePrice();
+    add(values, PRICE_BAND, priceBand(price));
+    return values;
+  }
+
+  private static String priceBand(BigDecimal price) {
+    if (price == null) return null;
+    if (price.compareTo(BAND_500K) < 0) return "under-500k";
+    if (price.compareTo(BAND_1M) < 0) return "500k-1m";
+    if (price.compareTo(BAND_2M) < 0) return "1m-2m";
+    return "2m-up";
+  }
+
+  private static void add(Map<String, Set<String>> values, String facet, String value) {
+    if (value == null || value.isBlank()) return;
+    values.computeIfAbsent(facet, k -> new HashSet<>()).add(value.trim());
+  }
+
+  private void addLocked(UUID id, Map<String, Set<String>> values) {
+    int ordinal = ordinals.computeIfAbsent(id, k -> {
+      productIds.add(k);
+      return productIds.size() - 1;
+    });
+    live.set(ordinal);
+    valuesByProduct.put(id, values);
+    values.forEach((facet, facetValues) -> {
+      Map<String, BitSet> byValue = index.computeIfAbsent(facet, k -> new HashMap<>());
+      facetValues.forEach(v -> byValue.computeIfAbsent(v, k -> new BitSet()).set(ordinal));
+    });
+  }
+
+  /**
+   * Xóa sản phẩm khỏi các bitset; ordinal được giữ lại để tái sử dụng nếu sản phẩm quay lại.
+   */
+  private void removeLocked(UUID id) {
+    Integer ordinal = ordinals.get(id);
+    Map<String, Set<String>> old = valuesByProduct.remove(id);
+    if (ordinal == null || old == null) return;
+    live.clear(ordinal);
+    old.forEach((facet, facetValues) -> {
+      Map<String, BitSet> byValue = index.get(facet);
+      if (byValue == null) return;
+      for (String v : facetValues) {
+        BitSet bits = byValue.get(v);
+        if (bits == null) continue;
+        bits.clear(ordinal);
+        if (bits.isEmpty()) byValue.remove(v);
+      }
+    });
+  }
+
+  private String readFingerprint() {
+    try {
+      return productRepository.catalogFingerprint();
+    } catch (Exception e) {
+      log.warn("Không thể đọc dấu vân tay catalog: {}", e.getMessage());
+      return null;
+    }
+  }
+}
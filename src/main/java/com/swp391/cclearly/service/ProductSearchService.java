@@ -0,0 +1,246 @@
+package com.swp391.cclearly.service;
+
+import com.swp391.cclearly.entity.MasterLensTechnology;
+import com.swp391.cclearly.entity.Product;
+import com.swp391.cclearly.entity.ProductFrame;
+import com.swp391.cclearly.entity.ProductLens;
+import com.swp391.cclearly.repository.ProductLensRepository;
+import com.swp391.cclearly.repository.ProductRepository;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Chỉ mục đảo ngược trong bộ nhớ cho tìm kiếm sản phẩm (thay cho LIKE '%term%').
+ * Đánh chỉ mục tên, danh mục con, chất liệu/kiểu gọng, loại tròng và công nghệ tròng.
+ * Không phân biệt dấu tiếng Việt ("gọng" khớp "gong"), hỗ trợ khớp tiền tố và xếp hạng theo trọng số trường.
+ * Chỉ chứa sản phẩm đang hoạt động; cập nhật theo ProductChangedEvent sau commit và dựng lại
+ * khi dấu vân tay catalog trong DB đổi (ghi từ node khác hoặc sửa tay).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSearchService {
+
+  private static final float WEIGHT_NAME = 3.0f;
+  private static final float WEIGHT_SUB_CATEGORY = 1.5f;
+  private static final float WEIGHT_ATTRIBUTE = 1.0f;
+  // Khớp tiền tố được tính điểm thấp hơn khớp nguyên từ
+  private static final float PREFIX_FACTOR = 0.6f;
+
+  private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+  private static final Pattern SEPARATORS = Pattern.compile("[^a-z0-9]+");
+
+  private final ProductRepository productRepository;
+  private final ProductLensRepository productLensRepository;
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  // token -> (productId -> điểm)
+  private final NavigableMap<String, Map<UUID, Float>> postings = new TreeMap<>();
+  private final Map<UUID, Doc> docs = new HashMap<>();
+  private volatile boolean ready;
+  private volatile String fingerprint;
+
+  private record Doc(String type, String name, Map<String, Float> terms) {
+  }
+
+  /**
+   * Bỏ dấu tiếng Việt, chuyển chữ thường ("Gọng Đồi Mồi" -> "gong doi moi").
+   */
+  public static String fold(String text) {
+    if (text == null) return "";
+    String lower = text.toLowerCase().replace('đ', 'd');
+    return MARKS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("");
+  }
+
+  public static List<String> tokenize(String text) {
+    List<String> tokens = new ArrayList<>();
+    for (String t : SEPARATORS.split(fold(text))) {
+      if (!t.isEmpty()) tokens.add(t);
+    }
+    return tokens;
+  }
+
+  public boolean isReady() {
+    return ready;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  @Transactional(readOnly = true)
+  public void rebuild() {
+    long start = System.currentTimeMillis();
+    // Đọc trước khi nạp: thay đổi xảy ra trong lúc dựng sẽ khiến lần poll sau dựng lại
+    String before = readFingerprint();
+    List<Product> products = productRepository.findAllActiveWithAttributes();
+    productLensRepository.fetchAllTechnologies();
+
+    Map<UUID, Doc> built = new HashMap<>();
+    for (Product p : products) {
+      built.put(p.getProductId(), toDoc(p));
+    }
+
+    lock.writeLock().lock();
+    try {
+      postings.clear();
+      docs.clear();
+      built.forEach(this::addLocked);
+      ready = true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+    fingerprint = before;
+    log.info("Built product search index: {} products, {} terms in {} ms",
+        built.size(), postings.size(), System.currentTimeMillis() - start);
+  }
+
+  /**
+   * ProductChangedEvent chỉ đến từ node này; ghi trực tiếp vào DB hoặc từ node khác được phát hiện
+   * bằng dấu vân tay catalog và dựng lại toàn bộ chỉ mục.
+   */
+  @Scheduled(
+      fixedDelayString = "${app.catalog-index.poll-interval-ms:30000}",
+      initialDelayString = "${app.catalog-index.poll-interval-ms:30000}")
+  @Transactional(readOnly = true)
+  public void pollCatalog() {
+    String current = readFingerprint();
+    if (current != null && !Objects.equals(current, fingerprint)) {
+      log.info("Catalog changed outside this node, rebuilding product search index");
+      rebuild();
+    }
+  }
+
+  /**
+   * Cập nhật chỉ mục cho một sản phẩm sau khi transaction tạo/sửa/xóa đã commit.
+   */
+  @TransactionalEventListener
+  @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+  public void onProductChanged(ProductChangedEvent event) {
+    UUID id = event.productId();
+    Doc doc = productRepository.findWithAttributesByIdIn(List.of(id)).stream()
+        .filter(p -> Boolean.TRUE.equals(p.getIsActive()))
+        .map(this::toDoc)
+        .findFirst()
+        .orElse(null);
+
+    lock.writeLock().lock();
+    try {
+      removeLocked(id);
+      if (doc != null) addLocked(id, doc);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Tìm sản phẩm theo từ khóa, trả về id đã xếp hạng (điểm giảm dần, sau đó theo tên).
+   * Mọi từ trong truy vấn đều phải khớp (nguyên từ hoặc tiền tố).
+   *
+   * @param type lọc theo loại sản phẩm (chữ thường), null để bỏ qua
+   */
+  public List<UUID> search(String query, String type) {
+    List<String> terms = tokenize(query);
+    if (terms.isEmpty()) return List.of();
+
+    lock.readLock().lock();
+    try {
+      Map<UUID, Float> scores = null;
+      for (String term : terms) {
+        Map<UUID, Float> termScores = new HashMap<>();
+        for (var entry : postings.subMap(term, true, term + Character.MAX_VALUE, false).entrySet()) {
+          float factor = entry.getKey().equals(term) ? 1f : PREFIX_FACTOR;
+          entry.getValue().forEach((id, w) -> termScores.merge(id, w * factor, Math::max));
+        }
+        if (scores == null) {
+          scores = termScores;
+        } else {
+          scores.keySet().retainAll(termScores.keySet());
+          for (var e : scores.entrySet()) {
+            e.setValue(e.getValue() + termScores.get(e.getKey()));
+          }
+        }
+        if (scores.isEmpty()) return List.of();
+      }
+
+      Map<UUID, Float> result = scores;
+      return result.keySet().stream()
+          .filter(id -> type == null || type.equals(docs.get(id).type()))
+          .sorted(Comparator.<UUID>comparingDouble(id -> -result.get(id))
+              .thenComparing(id -> docs.get(id).name()))
+          .toList();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private Doc toDoc(Product p) {
+    Map<String, Float> terms = new HashMap<>();
+    addField(terms, p.getName(), WEIGHT_NAME);
+    addField(terms, p.getSubCategory(), WEIGHT_SUB_CATEGORY);
+    ProductFrame frame = p.getProductFrame();
+    if (frame != null) {
+      addField(terms, frame.getMaterial(), WEIGHT_ATTRIBUTE);
+      addField(terms, frame.getShape(), WEIGHT_ATTRIBUTE);
+    }
+    ProductLens lens = p.getProductLens();
+    if (lens != null) {
+      addField(terms, lens.getLensType(), WEIGHT_ATTRIBUTE);
+      addField(terms, lens.getMaterial(), WEIGHT_ATTRIBUTE);
+      for (MasterLensTechnology t : lens.getTechnologies()) {
+        addField(terms, t.getName(), WEIGHT_ATTRIBUTE);
+      }
+    }
+    String type = p.getCategoryType() != null ? p.getCategoryType().toLowerCase() : null;
+    return new Doc(type, fold(p.getName()), terms);
+  }
+
+  private static void addField(Map<String, Float> terms, String value, float weight) {
+    for (String token : tokenize(value)) {
+      terms.merge(token, weight, Float::sum);
+    }
+  }
+
+  private void addLocked(UUID id, Doc doc) {
+    docs.put(id, doc);
+    doc.terms().forEach((term, weight) ->
+        postings.computeIfAbsent(term, k -> new HashMap<>()).put(id, weight));
+  }
+
+  private void removeLocked(UUID id) {
+    Doc old = docs.remove(id);
+    if (old == null) return;
+    for (String term : old.terms().keySet()) {
+      Map<UUID, Float> ids = postings.get(term);
+      if (ids != null) {
+        ids.remove(id);
+        if (ids.isEmpty()) postings.remove(term);
+      }
+    }
+  }
+
+  private String readFingerprint() {
+    try {
+      return productRepository.catalogFingerprint();
+    } catch (Exception e) {
+      log.warn("Không thể đọc dấu vân tay catalog: {}", e.getMessage());
+      return null;
+    }
+  }
+}
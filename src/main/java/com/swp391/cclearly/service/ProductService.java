@@ -1,7 +1,11 @@
 package com.swp391.cclearly.service;
 
 import com.swp391.cclearly.dto.base.ApiResponse;
+import com.swp391.cclearly.dto.base.CursorPageResponse;
 import com.swp391.cclearly.dto.product.CreateProductRequest;
+import com.swp391.cclearly.dto.product.ProductCardView;
+import com.swp391.cclearly.dto.product.ProductFacetFilter;
+import com.swp391.cclearly.dto.product.ProductFacetResponse;
 import com.swp391.cclearly.dto.product.ProductPageResponse;
 import com.swp391.cclearly.dto.product.ProductResponse;
 import com.swp391.cclearly.dto.product.UpdateProductRequest;
@@ -12,19 +16,23 @@ import com.swp391.cclearly.entity.ProductLens;
 import com.swp391.cclearly.entity.ProductVariant;
 import com.swp391.cclearly.exception.ResourceNotFoundException;
 import com.swp391.cclearly.repository.ProductImageRepository;
+import com.swp391.cclearly.repository.ProductLensRepository;
 import com.swp391.cclearly.repository.ProductRepository;
 import com.swp391.cclearly.repository.ProductVariantRepository;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -36,37 +44,162 @@ public class ProductService {
   private final ProductRepository productRepository;
   private final ProductVariantRepository productVariantRepository;
   private final ProductImageRepository productImageRepository;
+  private final ProductLensRepository productLensRepository;
   private final AuditLogService auditLogService;
+  private final ProductSearchService productSearchService;
+  private final ProductFacetService productFacetService;
+  private final CountCacheService countCacheService;
+  private final ApplicationEventPublisher eventPublisher;
 
-  public ApiResponse<ProductPageResponse> getProducts(String type, String search, int page, int size) {
-    Pageable pageable = PageRequest.of(page - 1, size);
+  public static final int CARD_IMAGE_LIMIT = 3;
 
-    Specification<Product> spec = Specification.where(activeOnly());
-    if (type != null && !type.isBlank()) {
-      spec = spec.and(hasType(type));
+  /**
+   * Danh sách sản phẩm. view = "card" (mặc định) chỉ trả thông tin thẻ sản phẩm,
+   * view = "full" trả đầy đủ variants, thuộc tính frame/lens như trang chi tiết.
+   * Có từ khóa thì tìm qua chỉ mục trong bộ nhớ, kết quả xếp theo độ liên quan.
+   */
+  public ApiResponse<ProductPageResponse> getProducts(
+      String type, String search, int page, int size, String view) {
+    boolean card = !"full".equalsIgnoreCase(view);
+    String typeFilter = type != null && !type.isBlank() ? type.toLowerCase() : null;
+    boolean hasSearch = search != null && !search.isBlank();
+
+    if (hasSearch && productSearchService.isReady()) {
+      List<UUID> ranked = productSearchService.search(search, typeFilter);
+      int from = Math.min((page - 1) * size, ranked.size());
+      List<UUID> pageIds = ranked.subList(from, Math.min(from + size, ranked.size()));
+      List<ProductResponse> content = pageIds.isEmpty() ? List.of() : card
+          ? toCardResponses(productRepository.findCardsByIdIn(pageIds), pageIds)
+          : loadForListing(pageIds).stream().map(this::toResponse).collect(Collectors.toList());
+      return pageResponse(content, page, size, ranked.size());
     }
-    if (search != null && !search.isBlank()) {
-      spec = spec.and(nameContains(search));
+
+    // Index not built yet: fall back to the LIKE filter
+    Pageable pageable = PageRequest.of(page - 1, size);
+    String searchFilter = hasSearch ? "%" + search.toLowerCase() + "%" : null;
+    if (card) {
+      Page<ProductCardView> cardPage =
+          productRepository.findActiveCards(typeFilter, searchFilter, pageable);
+      List<UUID> ids = cardPage.getContent().stream()
+          .map(ProductCardView::getProductId)
+          .collect(Collectors.toList());
+      return pageResponse(toCardResponses(cardPage.getContent(), ids),
+          page, size, cardPage.getTotalElements());
     }
 
-    Page<Product> productPage = productRepository.findAll(spec, pageable);
-    List<ProductResponse> content = productPage.getContent().stream()
+    // Phase 1: page ids only, phase 2: batch-load the page's associations
+    Page<UUID> idPage = productRepository.findActiveIds(typeFilter, searchFilter, pageable);
+    List<ProductResponse> content = loadForListing(idPage.getContent()).stream()
         .map(this::toResponse)
         .collect(Collectors.toList());
+    return pageResponse(content, page, size, idPage.getTotalElements());
+  }
+
+  /**
+   * Lọc catalog theo facet và trả kèm số lượng sản phẩm cho từng giá trị facet.
+   */
+  public ApiResponse<ProductFacetResponse> getFacetedProducts(
+      ProductFacetFilter filter, int page, int size) {
+    ProductFacetService.FacetResult result = productFacetService.query(filter);
+    List<UUID> ids = result.productIds();
+    int from = Math.min((page - 1) * size, ids.size());
+    List<UUID> pageIds = ids.subList(from, Math.min(from + size, ids.size()));
+    List<ProductResponse> content = pageIds.isEmpty()
+        ? List.of()
+        : toCardResponses(productRepository.findCardsByIdIn(pageIds), pageIds);
+
+    ProductFacetResponse response = ProductFacetResponse.builder()
+        .products(toPage(content, page, size, ids.size()))
+        .facets(result.counts())
+        .build();
+    return ApiResponse.success("Lấy danh sách sản phẩm thành công", response);
+  }
+
+  /**
+   * Thẻ sản phẩm phân trang theo cursor (createdAt, productId), mới nhất trước.
+   */
+  public ApiResponse<CursorPageResponse<ProductResponse>> getProductsByCursor(
+      String type, String cursor, int size, boolean withTotal) {
+    KeysetCursor after = KeysetCursor.decode(cursor);
+    size = KeysetCursor.clampSize(size);
+    String typeFilter = type != null && !type.isBlank() ? type.toLowerCase() : null;
+
+    List<ProductCardView> rows = productRepository.findCardKeysetPage(typeFilter,
+        after != null ? after.createdAt() : null, after != null ? after.id() : null,
+        Limit.of(size + 1));
+    boolean hasMore = rows.size() > size;
+    List<ProductCardView> pageRows = hasMore ? rows.subList(0, size) : rows;
+    ProductCardView last = pageRows.isEmpty() ? null : pageRows.get(pageRows.size() - 1);
+    List<UUID> ids = pageRows.stream()
+        .map(ProductCardView::getProductId)
+        .collect(Collectors.toList());
+
+    CursorPageResponse<ProductResponse> response = CursorPageResponse.<ProductResponse>builder()
+        .items(toCardResponses(pageRows, ids))
+        .size(size)
+        .hasMore(hasMore)
+        .nextCursor(hasMore
+            ? new KeysetCursor(last.getCreatedAt(), last.getProductId()).encode() : null)
+        .totalElements(withTotal
+            ? countCacheService.get("products:" + typeFilter,
+                () -> productRepository.countActive(typeFilter))
+            : null)
+        .build();
+    return ApiResponse.success("Lấy danh sách sản phẩm thành công", response);
+  }
+
+  private ApiResponse<ProductPageResponse> pageResponse(
+      List<ProductResponse> content, int page, int size, long totalElements) {
+    return ApiResponse.success("Lấy danh sách sản phẩm thành công",
+        toPage(content, page, size, totalElements));
+  }
 
-    ProductPageResponse response = ProductPageResponse.builder()
+  private static ProductPageResponse toPage(
+      List<ProductResponse> content, int page, int size, long totalElements) {
+    return ProductPageResponse.builder()
         .content(content)
         .page(page)
         .size(size)
-        .totalElements(productPage.getTotalElements())
-        .totalPages(productPage.getTotalPages())
+        .totalElements(totalElements)
+        .totalPages(size > 0 ? (int) ((totalElements + size - 1) / size) : 0)
         .build();
+  }
 
-    return ApiResponse.success("Lấy danh sách sản phẩm thành công", response);
+  /**
+   * Build card responses in the order of ids, attaching the first CARD_IMAGE_LIMIT images.
+   */
+  private List<ProductResponse> toCardResponses(List<ProductCardView> cards, List<UUID> ids) {
+    Map<UUID, List<String>> imagesByProduct = new HashMap<>();
+    if (!ids.isEmpty()) {
+      for (Object[] row : productRepository.findFirstImageUrls(ids, CARD_IMAGE_LIMIT)) {
+        // uniqueidentifier may come back as String from a native query
+        UUID productId = row[0] instanceof UUID u ? u : UUID.fromString(row[0].toString());
+        imagesByProduct.computeIfAbsent(productId, k -> new ArrayList<>()).add((String) row[1]);
+      }
+    }
+
+    Map<UUID, ProductCardView> byId = cards.stream()
+        .collect(Collectors.toMap(ProductCardView::getProductId, c -> c));
+    return ids.stream()
+        .map(byId::get)
+        .filter(Objects::nonNull)
+        .map(c -> ProductResponse.builder()
+            .id(c.getProductId())
+            .name(c.getName())
+            .type(c.getCategoryType() != null ? c.getCategoryType().toLowerCase() : null)
+            .subCategory(c.getSubCategory())
+            .basePrice(c.getBasePrice())
+            .isActive(c.getIsActive())
+            .isSale(Boolean.TRUE.equals(c.getIsSale()))
+            .salePrice(Boolean.TRUE.equals(c.getIsSale()) ? c.getMinSalePrice() : null)
+            .images(imagesByProduct.getOrDefault(c.getProductId(), List.of()))
+            .build())
+        .collect(Collectors.toList());
   }
 
   public ApiResponse<ProductResponse> getProductById(UUID id) {
-    Product product = productRepository.findById(id)
+    Product product = loadForListing(List.of(id)).stream()
+        .findFirst()
         .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy sản phẩm"));
     return ApiResponse.success("Lấy thông tin sản phẩm thành công", toResponse(product));
   }
@@ -166,6 +299,7 @@ public class ProductService {
       recalculateBasePrice(product);
     }
 
+    eventPublisher.publishEvent(new ProductChangedEvent(product.getProductId()));
     auditLogService.log("ADD_PRODUCT",
         "Thêm sản phẩm mới: " + product.getName());
     return ApiResponse.success("Tạo sản phẩm thành công", toResponse(product));
@@ -288,6 +422,7 @@ public class ProductService {
     // Recalculate basePrice from variants for frame/lens
     recalculateBasePrice(product);
 
+    eventPublisher.publishEvent(new ProductChangedEvent(product.getProductId()));
     auditLogService.log("UPDATE_PRODUCT",
         "Cập nhật sản phẩm: " + product.getName());
     return ApiResponse.success("Cập nhật sản phẩm thành công", toResponse(product));
@@ -299,6 +434,7 @@ public class ProductService {
         .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy sản phẩm"));
     product.setIsActive(false);
     productRepository.save(product);
+    eventPublisher.publishEvent(new ProductChangedEvent(product.getProductId()));
     auditLogService.log("DELETE_PRODUCT",
         "Xóa sản phẩm: " + product.getName());
     return ApiResponse.success("Xóa sản phẩm thành công", null);
@@ -323,6 +459,26 @@ public class ProductService {
     }
   }
 
+  /**
+   * Load products with everything toResponse touches in a fixed number of queries
+   * (attributes, images, variants, variant images, lens technologies), keeping the order of ids.
+   */
+  private List<Product> loadForListing(List<UUID> ids) {
+    if (ids.isEmpty()) return List.of();
+    Map<UUID, Product> byId = productRepository.findWithAttributesByIdIn(ids).stream()
+        .collect(Collectors.toMap(Product::getProductId, p -> p));
+    productRepository.fetchImagesByIdIn(ids);
+    productRepository.fetchVariantsByIdIn(ids);
+    productVariantRepository.fetchImagesByProductIdIn(ids);
+    if (byId.values().stream().anyMatch(p -> p.getProductLens() != null)) {
+      productLensRepository.fetchTechnologiesByProductIdIn(ids);
+    }
+    return ids.stream()
+        .map(byId::get)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+  }
+
   private ProductResponse toResponse(Product p) {
     // Collect product-level images
     List<String> images = p.getImages().stream()
@@ -397,17 +553,4 @@ public class ProductService {
 
     return builder.build();
   }
-
-  private static Specification<Product> activeOnly() {
-    return (root, query, cb) -> cb.equal(root.get("isActive"), true);
-  }
-
-  private static Specification<Product> hasType(String type) {
-    return (root, query, cb) -> cb.equal(cb.lower(root.get("categoryType")), type.toLowerCase());
-  }
-
-  private static Specification<Product> nameContains(String search) {
-    return (root, query, cb) ->
-        cb.like(cb.lower(root.get("name")), "%" + search.toLowerCase() + "%");
-  }
 }
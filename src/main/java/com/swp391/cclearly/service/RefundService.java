@@ -27,6 +27,8 @@ public class RefundService {
 
   private final RefundRepository refundRepository;
   private final OrderRepository orderRepository;
+  private final SalesRollupService salesRollupService;
+  private final InventoryReservationService inventoryReservationService;
 
   /**
    * Lấy tất cả yêu cầu trả hàng/hoàn tiền
@@ -94,14 +96,16 @@ public class RefundService {
 
     // Update order status back to DELIVERED
     Order order = refund.getOrder();
+    String previousStatus = order.getStatus();
     order.setStatus("DELIVERED");
     orderRepository.save(order);
+    salesRollupService.onStatusChange(order, previousStatus);
 
     return ApiResponse.success("Đã từ chối yêu cầu đổi trả", toResponse(refund));
   }
 
   /**
-   * Hoàn tất đổi trả (đã nhận hàng trả + đã hoàn tiền)
+   * Hoàn tất đổi trả (đã nhận hàng trả + đã hoàn tiền), nhập hàng trả lại kho
    */
   @Transactional
   public ApiResponse<RefundResponse> completeReturn(UUID refundId) {
@@ -117,8 +121,11 @@ public class RefundService {
 
     // Update order status
     Order order = refund.getOrder();
+    String previousStatus = order.getStatus();
     order.setStatus("RETURNED");
     orderRepository.save(order);
+    salesRollupService.onStatusChange(order, previousStatus);
+    inventoryReservationService.restock(order.getOrderId(), refund.getRefundId());
 
     return ApiResponse.success("Đã hoàn tất đổi trả", toResponse(refund));
   }
@@ -0,0 +1,187 @@
+package com.swp391.cclearly.service;
+
+import com.swp391.cclearly.entity.Order;
+import com.swp391.cclearly.entity.OrderItem;
+import com.swp391.cclearly.entity.ProductSalesRollup;
+import com.swp391.cclearly.entity.ProductSalesRollupId;
+import com.swp391.cclearly.entity.SalesDailyRollup;
+import com.swp391.cclearly.entity.SalesMonthlyRollup;
+import com.swp391.cclearly.repository.OrderItemRepository;
+import com.swp391.cclearly.repository.OrderRepository;
+import com.swp391.cclearly.repository.ProductSalesRollupRepository;
+import com.swp391.cclearly.repository.SalesDailyRollupRepository;
+import com.swp391.cclearly.repository.SalesMonthlyRollupRepository;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Duy trì các bảng tổng hợp doanh thu (ngày, tháng, sản phẩm theo tháng) cho dashboard.
+ * Rollup được cập nhật tăng dần mỗi khi đơn hàng đi vào hoặc ra khỏi trạng thái DELIVERED,
+ * nên các API thống kê không cần quét bảng Orders.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SalesRollupService {
+
+  public static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+  private static final String DELIVERED = "DELIVERED";
+
+  private final SalesDailyRollupRepository dailyRollupRepository;
+  private final SalesMonthlyRollupRepository monthlyRollupRepository;
+  private final ProductSalesRollupRepository productRollupRepository;
+  private final OrderRepository orderRepository;
+  private final OrderItemRepository orderItemRepository;
+
+  /**
+   * Ghi nhận thay đổi trạng thái đơn hàng. Gọi sau khi đã set trạng thái mới cho order,
+   * trong cùng transaction với việc lưu order.
+   */
+  @Transactional
+  public void onStatusChange(Order order, String previousStatus) {
+    boolean wasDelivered = DELIVERED.equals(previousStatus);
+    boolean isDelivered = DELIVERED.equals(order.getStatus());
+    if (wasDelivered == isDelivered) return;
+    if (order.getCreatedAt() == null) {
+      log.warn("Bỏ qua rollup cho đơn {} vì không có created_at", order.getCode());
+      return;
+    }
+
+    int sign = isDelivered ? 1 : -1;
+    LocalDate day = order.getCreatedAt().atZone(ZONE).toLocalDate();
+    String month = YearMonth.from(day).toString();
+    BigDecimal amount = order.getFinalAmount() != null ? order.getFinalAmount() : BigDecimal.ZERO;
+    BigDecimal revenueDelta = sign > 0 ? amount : amount.negate();
+
+    dailyRollupRepository.applyDelta(day, revenueDelta, sign);
+    monthlyRollupRepository.applyDelta(month, revenueDelta, sign);
+
+    Map<UUID, Long> units = new HashMap<>();
+    Map<UUID, BigDecimal> revenue = new HashMap<>();
+    for (OrderItem item : order.getOrderItems()) {
+      if (item.getVariant() == null || item.getVariant().getProduct() == null) continue;
+      UUID productId = item.getVariant().getProduct().getProductId();
+      units.merge(productId, 1L, Long::sum);
+      revenue.merge(productId,
+          item.getUnitPrice() != null ? item.getUnitPrice() : BigDecimal.ZERO,
+          BigDecimal::add);
+    }
+    for (var entry : units.entrySet()) {
+      BigDecimal productRevenue = revenue.get(entry.getKey());
+      productRollupRepository.applyDelta(month, entry.getKey(),
+          sign * entry.getValue(),
+          sign > 0 ? productRevenue : productRevenue.negate());
+    }
+  }
+
+  /**
+   * Xây lại toàn bộ rollup từ bảng Orders (dùng cho backfill hoặc khi nghi ngờ lệch số liệu).
+   */
+  @Transactional
+  public void rebuild() {
+    long start = System.currentTimeMillis();
+    Map<LocalDate, SalesDailyRollup> daily = new HashMap<>();
+    Map<String, SalesMonthlyRollup> monthly = new HashMap<>();
+    Map<ProductSalesRollupId, ProductSalesRollup> products = new HashMap<>();
+
+    try (Stream<Object[]> rows = orderRepository.streamRevenueRowsByStatus(DELIVERED)) {
+      rows.forEach(row -> {
+        LocalDate day = ((Instant) row[0]).atZone(ZONE).toLocalDate();
+        BigDecimal amount = row[1] != null ? (BigDecimal) row[1] : BigDecimal.ZERO;
+        SalesDailyRollup d = daily.computeIfAbsent(day, k -> SalesDailyRollup.builder()
+            .salesDate(k).revenue(BigDecimal.ZERO).orderCount(0L).build());
+        d.setRevenue(d.getRevenue().add(amount));
+        d.setOrderCount(d.getOrderCount() + 1);
+        SalesMonthlyRollup m = monthly.computeIfAbsent(YearMonth.from(day).toString(),
+            k -> SalesMonthlyRollup.builder()
+                .salesMonth(k).revenue(BigDecimal.ZERO).orderCount(0L).build());
+        m.setRevenue(m.getRevenue().add(amount));
+        m.setOrderCount(m.getOrderCount() + 1);
+      });
+    }
+
+    try (Stream<Object[]> rows = orderItemRepository.streamProductSalesRowsByStatus(DELIVERED)) {
+      rows.forEach(row -> {
+        String month = YearMonth.from(((Instant) row[0]).atZone(ZONE)).toString();
+        ProductSalesRollupId id = new ProductSalesRollupId(month, (UUID) row[1]);
+        ProductSalesRollup p = products.computeIfAbsent(id, k -> ProductSalesRollup.builder()
+            .id(k).unitsSold(0L).revenue(BigDecimal.ZERO).build());
+        p.setUnitsSold(p.getUnitsSold() + 1);
+        p.setRevenue(p.getRevenue().add(row[2] != null ? (BigDecimal) row[2] : BigDecimal.ZERO));
+      });
+    }
+
+    dailyRollupRepository.deleteAllInBatch();
+    monthlyRollupRepository.deleteAllInBatch();
+    productRollupRepository.deleteAllInBatch();
+    dailyRollupRepository.saveAll(daily.values());
+    monthlyRollupRepository.saveAll(monthly.values());
+    productRollupRepository.saveAll(products.values());
+
+    log.info("Rebuilt sales rollups: {} days, {} months, {} product-months in {} ms",
+        daily.size(), monthly.size(), products.size(), System.currentTimeMillis() - start);
+  }
+
+  /**
+   * Backfill lần đầu: nếu chưa có rollup nào nhưng đã có đơn DELIVERED thì xây lại.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  @Transactional
+  public void backfillIfEmpty() {
+    if (monthlyRollupRepository.count() == 0 && orderRepository.countByStatus(DELIVERED) > 0) {
+      rebuild();
+    }
+  }
+
+  /**
+   * Rebuild định kỳ (tắt mặc định, bật bằng app.rollup.rebuild-cron).
+   */
+  @Scheduled(cron = "${app.rollup.rebuild-cron:-}", zone = "Asia/Ho_Chi_Minh")
+  @Transactional
+  public void scheduledRebuild() {
+    rebuild();
+  }
+
+  @Transactional(readOnly = true)
+  public List<SalesDailyRollup> getDaily(LocalDate from, LocalDate to) {
+    return dailyRollupRepository.findBySalesDateBetweenOrderBySalesDateAsc(from, to);
+  }
+
+  @Transactional(readOnly = true)
+  public Map<YearMonth, SalesMonthlyRollup> getMonthly(YearMonth from, YearMonth to) {
+    return monthlyRollupRepository
+        .findBySalesMonthBetweenOrderBySalesMonthAsc(from.toString(), to.toString())
+        .stream()
+        .collect(Collectors.toMap(r -> YearMonth.parse(r.getSalesMonth()), r -> r));
+  }
+
+  /**
+   * Top sản phẩm bán chạy, mỗi phần tử là [productId, unitsSold, revenue].
+   */
+  @Transactional(readOnly = true)
+  public List<Object[]> getTopProducts(int limit) {
+    return productRollupRepository.findTopProducts(PageRequest.of(0, limit));
+  }
+
+  @Transactional(readOnly = true)
+  public BigDecimal getTotalRevenue() {
+    return monthlyRollupRepository.sumRevenue();
+  }
+}
@@ -0,0 +1,18 @@
+package com.swp391.cclearly.service;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Phát ra bởi StockLedgerService sau mỗi lần thay đổi Inventory_Stock, kèm số dư mới
+ * của các (kho, biến thể) bị ảnh hưởng. Bộ phát hiện tồn kho thấp xử lý sau khi commit.
+ */
+public record StockChangedEvent(List<Row> balances) {
+
+  /**
+   * version là row_version (rowversion) của dòng Inventory_Stock sau thay đổi; tăng theo thứ tự ghi
+   * nên listener chạy sau commit có thể bỏ qua số dư cũ đến muộn.
+   */
+  public record Row(UUID warehouseId, UUID variantId, int quantity, long version) {
+  }
+}
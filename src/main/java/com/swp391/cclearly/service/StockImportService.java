@@ -0,0 +1,303 @@
+package com.swp391.cclearly.service;
+
+import com.swp391.cclearly.dto.base.ApiResponse;
+import com.swp391.cclearly.dto.inventory.BulkImportLine;
+import com.swp391.cclearly.dto.inventory.BulkImportResponse;
+import com.swp391.cclearly.entity.StockMovement;
+import com.swp391.cclearly.entity.TimeOrderedId;
+import com.swp391.cclearly.entity.TimeOrderedIdGenerator;
+import com.swp391.cclearly.entity.Warehouse;
+import com.swp391.cclearly.exception.BadRequestException;
+import com.swp391.cclearly.repository.InventoryStockRepository;
+import com.swp391.cclearly.repository.ProductVariantRepository;
+import com.swp391.cclearly.repository.WarehouseRepository;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Nhập kho hàng loạt từ file CSV/JSON (sku, warehouse, quantity, reason).
+ * SKU và kho được tra một lần cho cả file; tồn kho và sổ cái được ghi theo lô JDBC qua StockLedgerService
+ * trong một transaction, mọi movement mang cùng batchId. Dòng lỗi không chặn các dòng hợp lệ: lý do quá dài
+ * hoặc số lượng làm tồn kho vượt INT cũng chỉ là lỗi của dòng đó, không làm hỏng cả lô.
+ */
+@Service
+@Slf4j
+public class StockImportService {
+
+  private static final int IN_CHUNK = 1000;
+  private static final String STATUS_IMPORTED = "IMPORTED";
+  private static final String STATUS_ERROR = "ERROR";
+  /** Độ dài cột Stock_Movements.reason. */
+  private static final int MAX_REASON_LENGTH = 50;
+
+  private record StockKey(UUID warehouseId, UUID variantId) {
+  }
+
+  private final ProductVariantRepository productVariantRepository;
+  private final WarehouseRepository warehouseRepository;
+  private final InventoryStockRepository inventoryStockRepository;
+  private final StockLedgerService stockLedgerService;
+  private final JsonMapper jsonMapper;
+  private final AuditLogService auditLogService;
+  private final HotSkuInventoryService hotSkuInventoryService;
+  private final int maxLines;
+
+  public StockImportService(
+      ProductVariantRepository productVariantRepository,
+      WarehouseRepository warehouseRepository,
+      InventoryStockRepository inventoryStockRepository,
+      StockLedgerService stockLedgerService,
+      JsonMapper jsonMapper,
+      AuditLogService auditLogService,
+      HotSkuInventoryService hotSkuInventoryService,
+      @Value("${app.inventory.bulk-import.max-lines:20000}") int maxLines) {
+    this.productVariantRepository = productVariantRepository;
+    this.warehouseRepository = warehouseRepository;
+    this.inventoryStockRepository = inventoryStockRepository;
+    this.stockLedgerService = stockLedgerService;
+    this.jsonMapper = jsonMapper;
+    this.auditLogService = auditLogService;
+    this.hotSkuInventoryService = hotSkuInventoryService;
+    this.maxLines = maxLines;
+  }
+
+  @Transactional
+  public ApiResponse<BulkImportResponse> importFile(MultipartFile file) {
+    if (file == null || file.isEmpty()) {
+      throw new BadRequestException("File nhập kho trống");
+    }
+    List<BulkImportLine> lines;
+    try (InputStream in = file.getInputStream()) {
+      lines = isJson(file) ? parseJson(in) : parseCsv(in);
+    } catch (IOException | JacksonException e) {
+      throw new BadRequestException("Không đọc được file nhập kho: " + e.getMessage());
+    }
+    return ApiResponse.success("Nhập kho hàng loạt hoàn tất", importLines(lines));
+  }
+
+  @Transactional
+  public BulkImportResponse importLines(List<BulkImportLine> lines) {
+    if (lines.isEmpty()) {
+      throw new BadRequestException("File nhập kho không có dòng nào");
+    }
+    if (lines.size() > maxLines) {
+      throw new BadRequestException("File nhập kho vượt quá " + maxLines + " dòng");
+    }
+
+    Map<String, UUID> variantIds = resolveSkus(lines);
+    Map<StockKey, Integer> onHand = currentStock(variantIds.keySet());
+    Map<String, UUID> warehouseIds = new HashMap<>();
+    for (Warehouse w : warehouseRepository.findAll()) {
+      warehouseIds.put(w.getWarehouseId().toString().toLowerCase(), w.getWarehouseId());
+      if (w.getName() != null) warehouseIds.put(w.getName().trim().toLowerCase(), w.getWarehouseId());
+    }
+
+    List<BulkImportResponse.LineResult> results = new ArrayList<>(lines.size());
+    Map<StockKey, Integer> deltas = new LinkedHashMap<>();
+    List<StockLedgerService.Change> changes = new ArrayList<>();
+    UUID batchId = TimeOrderedIdGenerator.generate(TimeOrderedId.Style.SQL_SERVER);
+    long totalQuantity = 0;
+    int imported = 0;
+
+    for (int i = 0; i < lines.size(); i++) {
+      BulkImportLine line = lines.get(i);
+      String sku = trim(line.getSku());
+      String warehouse = trim(line.getWarehouse());
+      UUID variantId = sku != null ? variantIds.get(sku) : null;
+      UUID warehouseId = warehouse != null ? warehouseIds.get(warehouse.toLowerCase()) : null;
+      String reason = trim(line.getReason());
+      StockKey key = new StockKey(warehouseId, variantId);
+
+      String error = null;
+      if (sku == null) error = "Thiếu SKU";
+      else if (variantId == null) error = "Không tìm thấy SKU";
+      else if (warehouse == null) error = "Thiếu kho";
+      else if (warehouseId == null) error = "Không tìm thấy kho";
+      else if (line.getQuantity() == null || line.getQuantity() < 1) error = "Số lượng phải >= 1";
+      else if (reason != null && reason.length() > MAX_REASON_LENGTH) {
+        error = "Lý do tối đa " + MAX_REASON_LENGTH + " ký tự";
+      } else if ((long) onHand.getOrDefault(key, 0) + deltas.getOrDefault(key, 0) + line.getQuantity()
+          > Integer.MAX_VALUE) {
+        error = "Tồn kho sau khi nhập vượt quá " + Integer.MAX_VALUE;
+      }
+
+      if (error == null) {
+        deltas.merge(key, line.getQuantity(), Integer::sum);
+        changes.add(new StockLedgerService.Change(warehouseId, variantId, line.getQuantity(),
+            reason != null ? reason : "IMPORT", StockMovement.REF_IMPORT, batchId));
+        totalQuantity += line.getQuantity();
+        imported++;
+      }
+      results.add(BulkImportResponse.LineResult.builder()
+          .line(i + 1)
+          .sku(sku)
+          .warehouse(warehouse)
+          .quantity(line.getQuantity())
+          .status(error == null ? STATUS_IMPORTED : STATUS_ERROR)
+          .message(error)
+          .build());
+    }
+
+    if (!deltas.isEmpty()) {
+      long start = System.currentTimeMillis();
+      stockLedgerService.applyBatch(changes);
+      deltas.forEach((key, qty) ->
+          hotSkuInventoryService.onStockAdded(key.warehouseId(), key.variantId(), qty));
+      log.info("Bulk import: {} dòng, {} dòng tồn kho, {} ms",
+          imported, deltas.size(), System.currentTimeMillis() - start);
+      auditLogService.log("BULK_IMPORT_STOCK",
+          "Nhập kho hàng loạt " + imported + "/" + lines.size() + " dòng, tổng " + totalQuantity + " sản phẩm");
+    }
+
+    return BulkImportResponse.builder()
+        .batchId(batchId)
+        .totalLines(lines.size())
+        .imported(imported)
+        .failed(lines.size() - imported)
+        .totalQuantity(totalQuantity)
+        .results(results)
+        .build();
+  }
+
+  private Map<String, UUID> resolveSkus(List<BulkImportLine> lines) {
+    List<String> skus = lines.stream()
+        .map(l -> trim(l.getSku()))
+        .filter(s -> s != null)
+        .distinct()
+        .toList();
+    Map<String, UUID> result = new HashMap<>();
+    for (int i = 0; i < skus.size(); i += IN_CHUNK) {
+      for (Object[] row : productVariantRepository.findIdsBySkuIn(
+          skus.subList(i, Math.min(i + IN_CHUNK, skus.size())))) {
+        result.put((String) row[0], (UUID) row[1]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Tồn kho hiện tại của các SKU trong file, để chặn dòng làm quantity_on_hand (INT) tràn số.
+   */
+  private Map<StockKey, Integer> currentStock(Collection<String> skus) {
+    List<String> list = List.copyOf(skus);
+    Map<StockKey, Integer> result = new HashMap<>();
+    for (int i = 0; i < list.size(); i += IN_CHUNK) {
+      for (Object[] row : inventoryStockRepository.findStockRowsBySkuIn(
+          list.subList(i, Math.min(i + IN_CHUNK, list.size())))) {
+        if (row[2] != null) result.put(new StockKey((UUID) row[0], (UUID) row[1]), ((Number) row[2]).intValue());
+      }
+    }
+    return result;
+  }
+
+  private static boolean isJson(MultipartFile file) {
+    String name = file.getOriginalFilename();
+    String type = file.getContentType();
+    return (name != null && name.toLowerCase().endsWith(".json"))
+        || (type != null && type.toLowerCase().contains("json"));
+  }
+
+  private List<BulkImportLine> parseJson(InputStream in) {
+    return jsonMapper.readerForListOf(BulkImportLine.class).readValue(in);
+  }
+
+  /**
+   * CSV có hoặc không có dòng tiêu đề. Không có tiêu đề thì thứ tự cột là sku,warehouse,quantity,reason.
+   */
+  private static List<BulkImportLine> parseCsv(InputStream in) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    List<BulkImportLine> lines = new ArrayList<>();
+    int[] columns = {0, 1, 2, 3};
+    boolean first = true;
+    String raw;
+    while ((raw = reader.readLine()) != null) {
+      if (first && raw.startsWith("\uFEFF")) raw = raw.substring(1);
+      if (raw.isBlank()) continue;
+      List<String> cells = splitCsv(raw);
+      if (first) {
+        first = false;
+        if (cells.stream().anyMatch(c -> c.trim().equalsIgnoreCase("sku"))) {
+          columns = headerColumns(cells);
+          continue;
+        }
+      }
+      String qty = cell(cells, columns[2]);
+      Integer quantity = null;
+      try {
+        quantity = qty != null ? Integer.valueOf(qty) : null;
+      } catch (NumberFormatException ignored) {
+        // để importLines báo lỗi số lượng cho dòng này
+      }
+      lines.add(new BulkImportLine(
+          cell(cells, columns[0]), cell(cells, columns[1]), quantity, cell(cells, columns[3])));
+    }
+    return lines;
+  }
+
+  private static int[] headerColumns(List<String> header) {
+    int[] columns = {-1, -1, -1, -1};
+    for (int i = 0; i < header.size(); i++) {
+      switch (header.get(i).trim().toLowerCase()) {
+        case "sku" -> columns[0] = i;
+        case "warehouse", "warehouse_id", "warehouseid" -> columns[1] = i;
+        case "quantity", "qty" -> columns[2] = i;
+        case "reason" -> columns[3] = i;
+        default -> { }
+      }
+    }
+    return columns;
+  }
+
+  private static List<String> splitCsv(String line) {
+    List<String> cells = new ArrayList<>();
+    StringBuilder current = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          current.append('"');
+          i++;
+        } else if (c == '"') {
+          quoted = false;
+        } else {
+          current.append(c);
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        cells.add(current.toString());
+        current.setLength(0);
+      } else {
+        current.append(c);
+      }
+    }
+    cells.add(current.toString());
+    return cells;
+  }
+
+  private static String cell(List<String> cells, int index) {
+    return index >= 0 && index < cells.size() ? trim(cells.get(index)) : null;
+  }
+
+  private static String trim(String value) {
+    return value != null && !value.isBlank() ? value.trim() : null;
+  }
+}
@@ -0,0 +1,273 @@
+package com.swp391.cclearly.service;
+
+import com.swp391.cclearly.entity.TimeOrderedId;
+import com.swp391.cclearly.entity.TimeOrderedIdGenerator;
+import com.swp391.cclearly.exception.BadRequestException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Điểm duy nhất thay đổi Inventory_Stock: mỗi lần cộng/trừ tồn kho đồng thời ghi một dòng
+ * Stock_Movements (sổ cái chỉ ghi thêm) với số dư sau thay đổi lấy từ UPDATE/MERGE ... OUTPUT.
+ * Snapshot số dư được chụp định kỳ (app.inventory.snapshot-cron) để truy vấn tồn kho tại một thời điểm
+ * chỉ cần đọc một snapshot và phần movement phát sinh sau đó. Mỗi snapshot ghi movement_seq (IDENTITY của
+ * Stock_Movements) lớn nhất đã nằm trong số dư, nên "phần sau đó" được xác định theo movement_seq chứ không
+ * theo đồng hồ của app.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockLedgerService {
+
+  /**
+   * Một thay đổi tồn kho. quantity dương là nhập, âm là xuất.
+   */
+  public record Change(UUID warehouseId, UUID variantId, int quantity, String reason,
+      String referenceType, UUID referenceId) {
+  }
+
+  public record Balance(UUID warehouseId, UUID variantId, int quantity) {
+  }
+
+  private static final int IN_CHUNK = 1000;
+
+  private static final String REMOVE_SQL = """
+      UPDATE Inventory_Stock SET quantity_on_hand = quantity_on_hand - ?
+      OUTPUT inserted.quantity_on_hand, CAST(inserted.row_version AS BIGINT) AS row_version
+      WHERE warehouse_id = ? AND variant_id = ? AND quantity_on_hand >= ?
+      """;
+  private static final String MERGE_SQL = """
+      MERGE Inventory_Stock WITH (HOLDLOCK) AS t
+      USING (SELECT CAST(? AS UNIQUEIDENTIFIER) AS warehouse_id,
+                    CAST(? AS UNIQUEIDENTIFIER) AS variant_id, ? AS quantity) AS s
+        ON t.warehouse_id = s.warehouse_id AND t.variant_id = s.variant_id
+      WHEN MATCHED THEN UPDATE SET quantity_on_hand = ISNULL(t.quantity_on_hand, 0) + s.quantity
+      WHEN NOT MATCHED THEN INSERT (warehouse_id, variant_id, quantity_on_hand)
+        VALUES (s.warehouse_id, s.variant_id, s.quantity)
+      %s;
+      """;
+  private static final String MOVEMENT_SQL = "INSERT INTO Stock_Movements (movement_id, warehouse_id, "
+      + "variant_id, quantity, balance_after, reason, reference_type, reference_id, created_at) "
+      + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+  private static final String SNAPSHOT_SQL = "INSERT INTO Stock_Snapshots "
+      + "(taken_at, warehouse_id, variant_id, quantity, movement_seq) "
+      + "SELECT ?, warehouse_id, variant_id, ISNULL(quantity_on_hand, 0), ? FROM Inventory_Stock";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final ApplicationEventPublisher eventPublisher;
+
+  /**
+   * Trừ tồn kho nếu còn đủ hàng. Trả về số dư mới, hoặc null nếu không đủ (không ghi gì).
+   */
+  @Transactional
+  public Integer tryRemove(Change change) {
+    int quantity = Math.abs(change.quantity());
+    List<StockChangedEvent.Row> rows = jdbcTemplate.query(REMOVE_SQL, versioned(change),
+        quantity, change.warehouseId().toString(), change.variantId().toString(), quantity);
+    if (rows.isEmpty()) return null;
+    int balance = rows.get(0).quantity();
+    Change removal = new Change(change.warehouseId(), change.variantId(), -quantity,
+        change.reason(), change.referenceType(), change.referenceId());
+    insertMovements(List.of(removal), List.of(balance));
+    publish(rows);
+    return balance;
+  }
+
+  /**
+   * Cộng (hoặc điều chỉnh âm) tồn kho vô điều kiện, tạo dòng Inventory_Stock nếu chưa có. Trả về số dư mới.
+   */
+  @Transactional
+  public int apply(Change change) {
+    StockChangedEvent.Row row = jdbcTemplate.queryForObject(
+        MERGE_SQL.formatted("OUTPUT inserted.quantity_on_hand, CAST(inserted.row_version AS BIGINT) AS row_version"),
+        versioned(change),
+        change.warehouseId().toString(), change.variantId().toString(), change.quantity());
+    int result = row != null ? row.quantity() : 0;
+    insertMovements(List.of(change), List.of(result));
+    if (row != null) publish(List.of(row));
+    return result;
+  }
+
+  /**
+   * Áp dụng nhiều thay đổi bằng JDBC batch (MERGE rồi chèn movement theo lô).
+   * Số dư sau từng dòng được suy ra từ số dư cuối đọc lại trong cùng transaction.
+   */
+  @Transactional
+  public void applyBatch(List<Change> changes) {
+    if (changes.isEmpty()) return;
+    jdbcTemplate.batchUpdate(MERGE_SQL.formatted(""), changes.stream()
+        .map(c -> new Object[] {c.warehouseId().toString(), c.variantId().toString(), c.quantity()})
+        .collect(Collectors.toList()));
+
+    Map<List<UUID>, StockChangedEvent.Row> finalBalances = currentBalances(changes);
+    Map<List<UUID>, Integer> running = new HashMap<>();
+    finalBalances.forEach((key, row) -> running.put(key, row.quantity()));
+    List<Integer> balances = new ArrayList<>(changes.size());
+    for (int i = 0; i < changes.size(); i++) balances.add(null);
+    // Đi ngược: số dư sau dòng i = số dư cuối - tổng các dòng sau nó của cùng (kho, biến thể)
+    for (int i = changes.size() - 1; i >= 0; i--) {
+      Change c = changes.get(i);
+      List<UUID> key = List.of(c.warehouseId(), c.variantId());
+      int after = running.getOrDefault(key, 0);
+      balances.set(i, after);
+      running.put(key, after - c.quantity());
+    }
+    insertMovements(changes, balances);
+    finalBalances.keySet().retainAll(changes.stream()
+        .map(c -> List.of(c.warehouseId(), c.variantId())).collect(Collectors.toSet()));
+    publish(List.copyOf(finalBalances.values()));
+  }
+
+  /**
+   * Chụp số dư hiện tại của toàn bộ Inventory_Stock. Khóa S cả bảng (TABLOCK, HOLDLOCK) chờ các transaction
+   * đang ghi sổ cái kết thúc và chặn ghi mới cho tới khi chụp xong, nên mọi movement có movement_seq
+   * không quá mốc đọc được đều đã nằm trong số dư và mọi movement sau đó đều có movement_seq lớn hơn.
+   */
+  @Scheduled(cron = "${app.inventory.snapshot-cron:-}", zone = "Asia/Ho_Chi_Minh")
+  @Transactional
+  public int takeSnapshot() {
+    long start = System.currentTimeMillis();
+    jdbcTemplate.queryForObject("SELECT COUNT_BIG(*) FROM Inventory_Stock WITH (TABLOCK, HOLDLOCK)", Long.class);
+    Long highWater = jdbcTemplate.queryForObject(
+        "SELECT ISNULL(MAX(movement_seq), 0) FROM Stock_Movements", Long.class);
+    int rows = jdbcTemplate.update(SNAPSHOT_SQL, utc(Instant.now()), highWater);
+    log.info("Took stock snapshot of {} rows in {} ms", rows, System.currentTimeMillis() - start);
+    return rows;
+  }
+
+  /**
+   * Lần đầu chạy: chụp snapshot gốc để các truy vấn theo thời điểm có điểm bắt đầu.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  @Transactional
+  public void snapshotIfEmpty() {
+    Integer exists = jdbcTemplate.queryForObject(
+        "SELECT CASE WHEN EXISTS (SELECT 1 FROM Stock_Snapshots) THEN 1 ELSE 0 END", Integer.class);
+    if (exists == null || exists == 0) takeSnapshot();
+  }
+
+  /**
+   * Tồn kho tại thời điểm at: snapshot gần nhất không sau at + movement sau mốc movement_seq của snapshot
+   * và không sau at. Snapshot cũ chưa có mốc thì lấy movement trong khoảng (taken_at, at].
+   */
+  @Transactional(readOnly = true)
+  public List<Balance> balancesAt(Instant at, UUID warehouseId, UUID variantId) {
+    List<Object[]> bases = jdbcTemplate.query(
+        "SELECT TOP 1 taken_at, movement_seq FROM Stock_Snapshots WHERE taken_at <= ? ORDER BY taken_at DESC",
+        (rs, i) -> new Object[] {rs.getObject("taken_at", OffsetDateTime.class), rs.getObject("movement_seq")},
+        utc(at));
+    if (bases.isEmpty()) {
+      throw new BadRequestException("Không có dữ liệu tồn kho trước thời điểm " + at);
+    }
+    OffsetDateTime base = (OffsetDateTime) bases.get(0)[0];
+    Number highWater = (Number) bases.get(0)[1];
+
+    StringBuilder snapFilter = new StringBuilder();
+    StringBuilder moveFilter = new StringBuilder();
+    List<Object> snapArgs = new ArrayList<>(List.of(base));
+    List<Object> moveArgs = new ArrayList<>(List.of(highWater != null ? highWater.longValue() : base, utc(at)));
+    if (warehouseId != null) {
+      snapFilter.append(" AND warehouse_id = ?");
+      moveFilter.append(" AND warehouse_id = ?");
+      snapArgs.add(warehouseId.toString());
+      moveArgs.add(warehouseId.toString());
+    }
+    if (variantId != null) {
+      snapFilter.append(" AND variant_id = ?");
+      moveFilter.append(" AND variant_id = ?");
+      snapArgs.add(variantId.toString());
+      moveArgs.add(variantId.toString());
+    }
+
+    String sql = "SELECT COALESCE(s.warehouse_id, m.warehouse_id) AS warehouse_id, "
+        + "COALESCE(s.variant_id, m.variant_id) AS variant_id, "
+        + "ISNULL(s.quantity, 0) + ISNULL(m.delta, 0) AS quantity "
+        + "FROM (SELECT warehouse_id, variant_id, quantity FROM Stock_Snapshots WHERE taken_at = ?"
+        + snapFilter + ") s "
+        + "FULL OUTER JOIN (SELECT warehouse_id, variant_id, SUM(quantity) AS delta FROM Stock_Movements "
+        + "WHERE " + (highWater != null ? "movement_seq > ?" : "created_at > ?")
+        + " AND created_at <= ? AND warehouse_id IS NOT NULL" + moveFilter
+        + " GROUP BY warehouse_id, variant_id) m "
+        + "ON s.warehouse_id = m.warehouse_id AND s.variant_id = m.variant_id";
+    List<Object> args = new ArrayList<>(snapArgs);
+    args.addAll(moveArgs);
+    return jdbcTemplate.query(sql, (rs, i) -> new Balance(
+        uuid(rs, "warehouse_id"), uuid(rs, "variant_id"), rs.getInt("quantity")), args.toArray());
+  }
+
+  private Map<List<UUID>, StockChangedEvent.Row> currentBalances(List<Change> changes) {
+    List<UUID> variantIds = changes.stream().map(Change::variantId).distinct().toList();
+    Map<List<UUID>, StockChangedEvent.Row> balances = new HashMap<>();
+    for (int i = 0; i < variantIds.size(); i += IN_CHUNK) {
+      List<UUID> chunk = variantIds.subList(i, Math.min(i + IN_CHUNK, variantIds.size()));
+      String placeholders = chunk.stream().map(id -> "?").collect(Collectors.joining(","));
+      jdbcTemplate.query("SELECT warehouse_id, variant_id, quantity_on_hand, "
+              + "CAST(row_version AS BIGINT) AS row_version FROM Inventory_Stock "
+              + "WHERE variant_id IN (" + placeholders + ")",
+          rs -> {
+            UUID warehouseId = uuid(rs, "warehouse_id");
+            UUID variantId = uuid(rs, "variant_id");
+            balances.put(List.of(warehouseId, variantId), new StockChangedEvent.Row(
+                warehouseId, variantId, rs.getInt("quantity_on_hand"), rs.getLong("row_version")));
+          },
+          chunk.stream().map(UUID::toString).toArray());
+    }
+    return balances;
+  }
+
+  private void insertMovements(List<Change> changes, List<Integer> balances) {
+    OffsetDateTime now = utc(Instant.now());
+    List<Object[]> rows = new ArrayList<>(changes.size());
+    for (int i = 0; i < changes.size(); i++) {
+      Change c = changes.get(i);
+      rows.add(new Object[] {
+          TimeOrderedIdGenerator.generate(TimeOrderedId.Style.SQL_SERVER).toString(),
+          c.warehouseId().toString(),
+          c.variantId().toString(),
+          c.quantity(),
+          balances.get(i),
+          c.reason(),
+          c.referenceType(),
+          c.referenceId() != null ? c.referenceId().toString() : null,
+          now});
+    }
+    jdbcTemplate.batchUpdate(MOVEMENT_SQL, rows);
+  }
+
+  private void publish(List<StockChangedEvent.Row> balances) {
+    eventPublisher.publishEvent(new StockChangedEvent(balances));
+  }
+
+  private static RowMapper<StockChangedEvent.Row> versioned(Change change) {
+    return (rs, i) -> new StockChangedEvent.Row(change.warehouseId(), change.variantId(),
+        rs.getInt("quantity_on_hand"), rs.getLong("row_version"));
+  }
+
+  private static OffsetDateTime utc(Instant instant) {
+    return instant.atOffset(ZoneOffset.UTC);
+  }
+
+  private static UUID uuid(ResultSet rs, String column) throws SQLException {
+    String value = rs.getString(column);
+    return value != null ? UUID.fromString(value) : null;
+  }
+}
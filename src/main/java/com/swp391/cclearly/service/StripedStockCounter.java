@@ -0,0 +1,82 @@
+package com.swp391.cclearly.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bộ đếm tồn kho chia thành nhiều stripe (tương tự LongAdder) nhưng hỗ trợ trừ có điều kiện.
+ * Mỗi thread bắt đầu từ một stripe ngẫu nhiên và trừ bằng CAS, nên các thread mua cùng SKU
+ * hiếm khi tranh chấp cùng một ô nhớ. Chỉ khi không stripe nào đủ hàng mới gom từ nhiều stripe.
+ */
+public final class StripedStockCounter {
+
+  private final AtomicLongArray stripes;
+  private final int mask;
+
+  public StripedStockCounter(long initial) {
+    // Số stripe: lũy thừa của 2 không nhỏ hơn số CPU, tối đa 64
+    int cpus = Math.max(2, Runtime.getRuntime().availableProcessors());
+    int n = Math.min(64, Integer.highestOneBit(cpus - 1) << 1);
+    this.stripes = new AtomicLongArray(n);
+    this.mask = n - 1;
+    set(initial);
+  }
+
+  /**
+   * Trừ quantity nếu tổng còn đủ. Trả về false (không thay đổi gì) khi không đủ hàng.
+   */
+  public boolean tryTake(long quantity) {
+    if (quantity <= 0) return true;
+    int start = ThreadLocalRandom.current().nextInt() & mask;
+    for (int i = 0; i <= mask; i++) {
+      int idx = (start + i) & mask;
+      long cur;
+      while ((cur = stripes.get(idx)) >= quantity) {
+        if (stripes.compareAndSet(idx, cur, cur - quantity)) return true;
+      }
+    }
+    return takeAcrossStripes(quantity);
+  }
+
+  /**
+   * Cộng thêm hàng (trả lại reservation, nhập kho, điều chỉnh khi đối soát).
+   */
+  public void add(long quantity) {
+    stripes.getAndAdd(ThreadLocalRandom.current().nextInt() & mask, quantity);
+  }
+
+  public long sum() {
+    long total = 0;
+    for (int i = 0; i <= mask; i++) total += stripes.get(i);
+    return total;
+  }
+
+  /**
+   * Đặt lại tổng và chia đều cho các stripe. Chỉ dùng khi chưa có thread nào đang trừ.
+   */
+  public void set(long total) {
+    int n = mask + 1;
+    for (int i = 0; i < n; i++) {
+      stripes.set(i, total / n + (i < total % n ? 1 : 0));
+    }
+  }
+
+  private synchronized boolean takeAcrossStripes(long quantity) {
+    long taken = 0;
+    for (int i = 0; i <= mask && taken < quantity; i++) {
+      long cur;
+      while ((cur = stripes.get(i)) > 0) {
+        long part = Math.min(cur, quantity - taken);
+        if (stripes.compareAndSet(i, cur, cur - part)) {
+          taken += part;
+          break;
+        }
+      }
+    }
+    if (taken < quantity) {
+      if (taken > 0) add(taken);
+      return false;
+    }
+    return true;
+  }
+}
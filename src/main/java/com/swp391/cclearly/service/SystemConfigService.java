@@ -0,0 +1,222 @@
+package com.swp391.cclearly.service;
+
+import com.swp391.cclearly.entity.SystemConfig;
+import com.swp391.cclearly.repository.SystemConfigRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Giữ toàn bộ System_Configs trong bộ nhớ dưới dạng snapshot bất biến, đã parse sẵn kiểu dữ liệu.
+ * Snapshot được thay nguyên khối khi admin cập nhật cấu hình; các node khác (và cả các lần sửa
+ * trực tiếp trong DB không tăng config_version) được phát hiện qua dấu vân tay của bảng
+ * (poll theo app.system-config.poll-interval-ms).
+ * Metrics: system.config.snapshot.age (giây), system.config.version.
+ */
+@Service
+@Slf4j
+public class SystemConfigService {
+
+  public static final String VERSION_KEY = "config_version";
+  public static final String MAINTENANCE_MODE = "maintenance_mode";
+  public static final String DEFAULT_SHIPPING_FEE = "default_shipping_fee";
+  public static final String FREE_SHIPPING_THRESHOLD = "free_shipping_threshold";
+  public static final String EMAIL_BANNER_TITLE = "email_banner_title";
+  public static final String EMAIL_BANNER_SUBTITLE = "email_banner_subtitle";
+  public static final String EMAIL_BANNER_COLOR = "email_banner_color";
+  public static final String EMAIL_FOOTER_TEXT = "email_footer_text";
+
+  /**
+   * Key do hệ thống quản lý, không cho sửa qua API cấu hình.
+   */
+  public static final Set<String> RESERVED_KEYS = Set.of(VERSION_KEY);
+
+  private static final Pattern HEX_COLOR = Pattern.compile("^#([0-9a-fA-F]{3}|[0-9a-fA-F]{6})$");
+
+  private final SystemConfigRepository systemConfigRepository;
+  private final AtomicReference<Snapshot> current = new AtomicReference<>(Snapshot.defaults());
+  // Dấu vân tay bảng tại lần nạp gần nhất, null nếu chưa đọc được
+  private volatile String fingerprint;
+
+  public SystemConfigService(
+      SystemConfigRepository systemConfigRepository, MeterRegistry meterRegistry) {
+    this.systemConfigRepository = systemConfigRepository;
+    Gauge.builder("system.config.snapshot.age", current,
+            ref -> Duration.between(ref.get().loadedAt(), Instant.now()).toMillis() / 1000.0)
+        .baseUnit("seconds")
+        .description("Thời gian kể từ lần nạp snapshot cấu hình gần nhất")
+        .register(meterRegistry);
+    Gauge.builder("system.config.version", current, ref -> ref.get().version())
+        .description("Phiên bản snapshot cấu hình đang dùng")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Cấu hình đã parse, bất biến. Giá trị không hợp lệ trong DB được thay bằng mặc định.
+   */
+  public record Snapshot(
+      long version,
+      Instant loadedAt,
+      BigDecimal defaultShippingFee,
+      BigDecimal freeShippingThreshold,
+      boolean maintenanceMode,
+      String emailBannerTitle,
+      String emailBannerSubtitle,
+      String emailBannerColor,
+      String emailFooterText,
+      Map<String, String> values) {
+
+    static Snapshot defaults() {
+      return of(Map.of(), 0L);
+    }
+
+    static Snapshot of(Map<String, String> raw, long version) {
+      return new Snapshot(
+          version,
+          Instant.now(),
+          decimal(raw, DEFAULT_SHIPPING_FEE, new BigDecimal("30000")),
+          decimal(raw, FREE_SHIPPING_THRESHOLD, new BigDecimal("500000")),
+          "true".equalsIgnoreCase(raw.get(MAINTENANCE_MODE)),
+          text(raw, EMAIL_BANNER_TITLE, "CClearly"),
+          text(raw, EMAIL_BANNER_SUBTITLE, ""),
+          color(raw, EMAIL_BANNER_COLOR, "#4F46E5"),
+          text(raw, EMAIL_FOOTER_TEXT, "© 2024 CClearly. All rights reserved."),
+          Map.copyOf(raw));
+    }
+
+    /**
+     * Giá trị thô theo key (dùng cho các cấu hình chưa có trường riêng).
+     */
+    public String get(String key, String defaultValue) {
+      return text(values, key, defaultValue);
+    }
+
+    private static String text(Map<String, String> raw, String key, String defaultValue) {
+      String v = raw.get(key);
+      return v != null && !v.isBlank() ? v : defaultValue;
+    }
+
+    private static BigDecimal decimal(Map<String, String> raw, String key, BigDecimal defaultValue) {
+      String v = raw.get(key);
+      if (v == null || v.isBlank()) return defaultValue;
+      try {
+        return new BigDecimal(v.trim());
+      } catch (NumberFormatException e) {
+        log.warn("Cấu hình {} không phải số hợp lệ: '{}', dùng mặc định {}", key, v, defaultValue);
+        return defaultValue;
+      }
+    }
+
+    private static String color(Map<String, String> raw, String key, String defaultValue) {
+      String v = text(raw, key, defaultValue).trim();
+      if (HEX_COLOR.matcher(v).matches()) return v;
+      log.warn("Cấu hình {} không phải mã màu hợp lệ: '{}', dùng mặc định {}", key, v, defaultValue);
+      return defaultValue;
+    }
+  }
+
+  @PostConstruct
+  public void init() {
+    reload();
+  }
+
+  public Snapshot get() {
+    return current.get();
+  }
+
+  public boolean isMaintenanceMode() {
+    return current.get().maintenanceMode();
+  }
+
+  /**
+   * Tăng config_version và nạp lại snapshot sau khi transaction cập nhật cấu hình commit.
+   * Gọi từ cùng transaction đã ghi System_Configs.
+   */
+  public void markChanged() {
+    if (systemConfigRepository.incrementVersion() == 0) {
+      systemConfigRepository.save(SystemConfig.builder()
+          .configKey(VERSION_KEY)
+          .configValue("1")
+          .configGroup("internal")
+          .build());
+    }
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          reload();
+        }
+      });
+    } else {
+      reload();
+    }
+  }
+
+  /**
+   * Nạp toàn bộ System_Configs và thay snapshot hiện tại.
+   */
+  public void reload() {
+    try {
+      // Đọc trước khi nạp: thay đổi xen giữa sẽ khiến lần poll sau nạp lại
+      String loadedFingerprint = readFingerprint();
+      Map<String, String> raw = systemConfigRepository.findAll().stream()
+          .filter(c -> c.getConfigValue() != null)
+          .collect(Collectors.toMap(SystemConfig::getConfigKey, SystemConfig::getConfigValue));
+      Snapshot next = Snapshot.of(raw, parseVersion(raw.get(VERSION_KEY)));
+      Snapshot previous = current.getAndSet(next);
+      fingerprint = loadedFingerprint;
+      if (previous.maintenanceMode() != next.maintenanceMode()) {
+        log.info("Maintenance mode {}", next.maintenanceMode() ? "ON" : "OFF");
+      }
+      log.debug("Loaded system config snapshot v{} ({} keys)", next.version(), raw.size());
+    } catch (Exception e) {
+      log.warn("Không thể nạp System_Configs, giữ snapshot hiện tại: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Đọc dấu vân tay System_Configs (một dòng kết quả); nạp lại toàn bộ khi khác lần nạp trước,
+   * kể cả khi config_version không đổi.
+   */
+  @Scheduled(
+      fixedDelayString = "${app.system-config.poll-interval-ms:5000}",
+      initialDelayString = "${app.system-config.poll-interval-ms:5000}")
+  public void poll() {
+    String dbFingerprint = readFingerprint();
+    if (dbFingerprint != null && !Objects.equals(dbFingerprint, fingerprint)) {
+      reload();
+    }
+  }
+
+  private String readFingerprint() {
+    try {
+      return systemConfigRepository.fingerprint();
+    } catch (Exception e) {
+      log.warn("Không thể đọc dấu vân tay System_Configs: {}", e.getMessage());
+      return null;
+    }
+  }
+
+  private static long parseVersion(String value) {
+    if (value == null) return 0L;
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      return 0L;
+    }
+  }
+}
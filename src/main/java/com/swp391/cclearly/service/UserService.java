@@ -18,6 +18,7 @@ import org.springframework.transaction.annotation.Transactional;
 public class UserService {
 
   private final UserRepository userRepository;
+  private final PrincipalCacheService principalCacheService;
 
   @Transactional(readOnly = true)
   public ApiResponse<UserProfileResponse> getProfile(User user) {
@@ -36,6 +37,7 @@ public class UserService {
       managed.setPhoneNumber(request.getPhoneNumber());
     }
     userRepository.save(managed);
+    principalCacheService.evict(managed);
     return ApiResponse.success("Cập nhật thông tin thành công", toResponse(managed));
   }
 
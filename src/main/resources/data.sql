@@ -673,6 +673,12 @@ IF NOT EXISTS (SELECT * FROM [System_Configs] WHERE config_key = 'max_cart_items
 IF NOT EXISTS (SELECT * FROM [System_Configs] WHERE config_key = 'order_expiry_minutes')
     INSERT INTO [System_Configs] (config_key, config_value, config_group) VALUES ('order_expiry_minutes', '30', 'order');
 
+IF NOT EXISTS (SELECT * FROM [System_Configs] WHERE config_key = 'low_stock_threshold')
+    INSERT INTO [System_Configs] (config_key, config_value, config_group) VALUES ('low_stock_threshold', '5', 'inventory');
+
+IF NOT EXISTS (SELECT * FROM [System_Configs] WHERE config_key = 'config_version')
+    INSERT INTO [System_Configs] (config_key, config_value, config_group) VALUES ('config_version', '1', 'internal');
+
 -- =============================================
 -- 15. CONTENT_BANNERS
 -- =============================================
@@ -1917,4 +1923,32 @@ BEGIN
     SELECT NEWID(), order_id, 'PAYOS', 1450000, 'COMPLETED', 'PAYOS-PRE20250204' FROM [Orders] WHERE code = 'PRE-20250204';
     INSERT INTO [Payments] (payment_id, order_id, method, amount, status)
     SELECT NEWID(), order_id, 'COD', 1450000, 'PENDING' FROM [Orders] WHERE code = 'PRE-20250204';
-END
\ No newline at end of file
+END
+-- =============================================
+-- BACKFILL created_at (keyset pagination requires non-null created_at)
+-- =============================================
+UPDATE [Products] SET created_at = SYSUTCDATETIME() WHERE created_at IS NULL;
+UPDATE [Orders] SET created_at = SYSUTCDATETIME() WHERE created_at IS NULL;
+-- updated_at drives the incremental "my orders" sync; legacy rows start at created_at
+UPDATE [Orders] SET updated_at = created_at WHERE updated_at IS NULL;
+-- =============================================
+-- ORDER CODES: hi/lo blocks are reserved from this sequence (OrderCodeService)
+-- =============================================
+IF NOT EXISTS (SELECT * FROM sys.sequences WHERE name = 'Order_Code_Seq') CREATE SEQUENCE [dbo].[Order_Code_Seq] AS BIGINT START WITH 1 INCREMENT BY 1 NO CACHE;
+-- Legacy CC<millis> codes can collide: keep the oldest order's code, suffix the others (-2, -3, ...) so the unique index can be built
+WITH dup AS (SELECT code, ROW_NUMBER() OVER (PARTITION BY code ORDER BY created_at, order_id) AS rn FROM [Orders] WHERE code IS NOT NULL) UPDATE dup SET code = LEFT(code, 16) + '-' + CAST(rn AS VARCHAR(3)) WHERE rn > 1;
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'UX_Orders_code' AND object_id = OBJECT_ID('Orders')) CREATE UNIQUE INDEX [UX_Orders_code] ON [Orders] (code) WHERE code IS NOT NULL;
+-- =============================================
+-- STOCK ROW VERSION: orders StockChangedEvent balances for the low-stock detector (LowStockService)
+-- =============================================
+IF COL_LENGTH('Inventory_Stock', 'row_version') IS NULL ALTER TABLE [Inventory_Stock] ADD row_version ROWVERSION;
+-- =============================================
+-- HOT SKU: reservations sold from the in-memory counter but not yet written to Inventory_Stock (HotSkuInventoryService)
+-- =============================================
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_Inventory_Reservations_pending_flush' AND object_id = OBJECT_ID('Inventory_Reservations')) CREATE INDEX [IX_Inventory_Reservations_pending_flush] ON [Inventory_Reservations] (pending_flush) WHERE pending_flush = 1;
+-- =============================================
+-- STOCK SNAPSHOT HIGH-WATER MARK: a snapshot contains exactly the movements with movement_seq <= its movement_seq (StockLedgerService)
+-- =============================================
+IF COL_LENGTH('Stock_Movements', 'movement_seq') IS NULL ALTER TABLE [Stock_Movements] ADD movement_seq BIGINT IDENTITY(1,1);
+IF COL_LENGTH('Stock_Snapshots', 'movement_seq') IS NULL ALTER TABLE [Stock_Snapshots] ADD movement_seq BIGINT NULL;
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'IX_Stock_Movements_seq' AND object_id = OBJECT_ID('Stock_Movements')) CREATE INDEX [IX_Stock_Movements_seq] ON [Stock_Movements] (movement_seq) INCLUDE (warehouse_id, variant_id, quantity, created_at);
@@ -0,0 +1,93 @@
+package com.swp391.cclearly.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jackson.autoconfigure.JacksonAutoConfiguration;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Nạp lại file spill: dòng DB từ chối bị cách ly thay vì chặn cả file, log_id đã có được bỏ qua,
+ * spill mới phát sinh trong lúc còn file .replaying cũng được nạp.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AuditLogSpillReplayTests {
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+  @Autowired private JsonMapper jsonMapper;
+
+  @TempDir private Path dir;
+
+  @AfterEach
+  void cleanUp() {
+    jdbcTemplate.update("DELETE FROM Audit_Logs");
+  }
+
+  @Test
+  void rejectedRowIsQuarantinedAndReplayCompletes() throws Exception {
+    Path spill = dir.resolve("audit-spill.ndjson");
+    Path replaying = dir.resolve("audit-spill.ndjson.replaying");
+    AuditLogWriter.Entry alreadyWritten = entry("LOGIN", "127.0.0.1");
+    AuditLogWriter.Entry valid = entry("UPDATE_ORDER", "127.0.0.1");
+    AuditLogWriter.Entry tooLong = entry("UPDATE_PRODUCT", "1".repeat(100));
+    AuditLogWriter.Entry spilledLater = entry("LOGOUT", "127.0.0.1");
+    jdbcTemplate.update("INSERT INTO Audit_Logs (log_id, action, created_at) VALUES (?, ?, ?)",
+        alreadyWritten.logId().toString(), alreadyWritten.action(),
+        alreadyWritten.createdAt().atOffset(ZoneOffset.UTC));
+    write(replaying, alreadyWritten, valid, tooLong);
+    write(spill, spilledLater);
+
+    AuditLogWriter writer = new AuditLogWriter(jdbcTemplate, jsonMapper, new SimpleMeterRegistry(),
+        100, 50, 50, 100, AuditLogWriter.OverflowPolicy.SPILL, spill.toString());
+    writer.start();
+    try {
+      for (int i = 0; i < 100 && Files.exists(replaying); i++) {
+        Thread.sleep(50);
+      }
+    } finally {
+      writer.stop();
+    }
+
+    assertFalse(Files.exists(replaying));
+    assertFalse(Files.exists(spill));
+    assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Audit_Logs", Integer.class));
+    List<String> corrupt = Files.readAllLines(dir.resolve("audit-spill.ndjson.corrupt"));
+    assertEquals(1, corrupt.size());
+    assertTrue(corrupt.get(0).contains(tooLong.logId().toString()));
+  }
+
+  private void write(Path file, AuditLogWriter.Entry... entries) throws Exception {
+    List<String> lines = Arrays.stream(entries).map(jsonMapper::writeValueAsString).toList();
+    Files.write(file, lines, StandardCharsets.UTF_8);
+  }
+
+  private static AuditLogWriter.Entry entry(String action, String ipAddress) {
+    return new AuditLogWriter.Entry(UUID.randomUUID(), null, action, "details", null, null, ipAddress,
+        Instant.parse("2026-10-18T08:30:00Z"));
+  }
+}
@@ -0,0 +1,105 @@
+package com.swp391.cclearly.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+import com.swp391.cclearly.dto.order.CreateOrderRequest;
+import com.swp391.cclearly.dto.order.OrderResponse;
+import com.swp391.cclearly.entity.Address;
+import com.swp391.cclearly.entity.Cart;
+import com.swp391.cclearly.entity.CartItem;
+import com.swp391.cclearly.entity.Product;
+import com.swp391.cclearly.entity.ProductVariant;
+import com.swp391.cclearly.entity.User;
+import jakarta.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.jpa.test.autoconfigure.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+/**
+ * Checkout ghi đơn, dòng hàng, thanh toán và xóa giỏ trong một lần flush, mỗi bảng một lô JDBC:
+ * số câu lệnh ghi không đổi với giỏ 1, 5 hay 20 món.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import(OrderService.class)
+class CheckoutBatchWriteTests {
+
+  @Autowired private OrderService orderService;
+  @Autowired private TestEntityManager entityManager;
+  @Autowired private EntityManagerFactory entityManagerFactory;
+
+  @MockitoBean private SystemConfigService systemConfigService;
+  @MockitoBean private SalesRollupService salesRollupService;
+  @MockitoBean private CountCacheService countCacheService;
+  @MockitoBean private InventoryReservationService inventoryReservationService;
+  @MockitoBean private OrderCodeService orderCodeService;
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 5, 20})
+  void checkoutWritesInOneBatchedFlush(int items) {
+    User customer = entityManager.persist(User.builder()
+        .email("customer-" + items + "@example.com")
+        .status("ACTIVE")
+        .build());
+    Address address = entityManager.persist(Address.builder()
+        .user(customer)
+        .name("Nhà")
+        .street("1 Lê Lợi")
+        .city("Hồ Chí Minh")
+        .build());
+    Product product = entityManager.persist(Product.builder()
+        .name("Gọng thử")
+        .categoryType("frame")
+        .basePrice(new BigDecimal("1000000"))
+        .isActive(true)
+        .build());
+    Cart cart = entityManager.persist(Cart.builder().user(customer).build());
+    for (int i = 0; i < items; i++) {
+      ProductVariant variant = entityManager.persist(ProductVariant.builder()
+          .product(product)
+          .sku("SKU-" + items + "-" + i)
+          .salePrice(new BigDecimal("900000"))
+          .isPreorder(false)
+          .build());
+      entityManager.persist(CartItem.builder().cart(cart).variant(variant).quantity(1).build());
+    }
+    entityManager.flush();
+    entityManager.clear();
+
+    when(systemConfigService.get()).thenReturn(SystemConfigService.Snapshot.defaults());
+    when(orderCodeService.nextCode()).thenReturn("CC" + items);
+    CreateOrderRequest request = new CreateOrderRequest();
+    request.setAddressId(address.getAddressId());
+    request.setPaymentMethod("cod");
+
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+    OrderResponse order = orderService.createOrder(
+        entityManager.find(User.class, customer.getUserId()), request).getData();
+
+    assertEquals(items, order.getItems().size());
+    // Chưa ghi gì trong lúc dựng đơn: toàn bộ INSERT/DELETE chờ flush lúc commit
+    assertEquals(0, statistics.getFlushCount());
+    assertEquals(0, statistics.getEntityInsertCount());
+
+    statistics.clear();
+    entityManager.flush();
+
+    assertEquals(1, statistics.getFlushCount());
+    assertEquals(1 + items + 1, statistics.getEntityInsertCount());
+    assertEquals(items, statistics.getEntityDeleteCount());
+    // Orders + Order_Items + Payments + xóa Cart_Items, mỗi bảng một lô bất kể số món
+    assertEquals(4, statistics.getPrepareStatementCount());
+  }
+}
@@ -0,0 +1,110 @@
+package com.swp391.cclearly.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.swp391.cclearly.entity.StockMovement;
+import com.swp391.cclearly.repository.InventoryReservationRepository;
+import com.swp391.cclearly.repository.InventoryStockRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Hàng hot SKU đã bán phải được ghi xuống DB đúng một lần: qua flush định kỳ/khi tắt,
+ * hoặc qua bước khôi phục pending_flush lúc khởi động sau crash.
+ */
+class HotSkuInventoryServiceTests {
+
+  private final UUID warehouseId = UUID.randomUUID();
+  private final UUID variantId = UUID.randomUUID();
+
+  private InventoryStockRepository inventoryStockRepository;
+  private InventoryReservationRepository reservationRepository;
+  private StockLedgerService stockLedgerService;
+  private HotSkuInventoryService service;
+
+  @BeforeEach
+  void setUp() {
+    inventoryStockRepository = mock(InventoryStockRepository.class);
+    reservationRepository = mock(InventoryReservationRepository.class);
+    stockLedgerService = mock(StockLedgerService.class);
+    when(inventoryStockRepository.findStockRowsBySkuIn(any()))
+        .thenReturn(List.<Object[]>of(new Object[] {warehouseId, variantId, 10}));
+    service = new HotSkuInventoryService(inventoryStockRepository, reservationRepository, stockLedgerService,
+        mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), "HOT-1");
+  }
+
+  @Test
+  void flushWritesSoldUnitsAndClearsPendingFlag() {
+    service.loadOnStartup();
+    UUID reservationId = UUID.randomUUID();
+
+    assertNotNull(service.tryReserve(variantId, 3, a -> reservationId));
+    service.flush();
+
+    verify(stockLedgerService).applyBatch(List.of(new StockLedgerService.Change(warehouseId, variantId, -3,
+        "ORDER_RESERVE", StockMovement.REF_HOT_SKU, null)));
+    verify(reservationRepository).markFlushed(List.of(reservationId));
+  }
+
+  @Test
+  void failedFlushKeepsReservationsForNextAttempt() {
+    service.loadOnStartup();
+    UUID first = UUID.randomUUID();
+    UUID second = UUID.randomUUID();
+    service.tryReserve(variantId, 2, a -> first);
+    doThrow(new IllegalStateException("db down")).when(stockLedgerService).applyBatch(anyList());
+    service.flush();
+    verify(reservationRepository, never()).markFlushed(any());
+
+    service.tryReserve(variantId, 1, a -> second);
+    doNothing().when(stockLedgerService).applyBatch(anyList());
+    service.flushOnShutdown();
+
+    verify(stockLedgerService).applyBatch(List.of(new StockLedgerService.Change(warehouseId, variantId, -3,
+        "ORDER_RESERVE", StockMovement.REF_HOT_SKU, null)));
+    verify(reservationRepository).markFlushed(List.of(first, second));
+  }
+
+  @Test
+  void failedRecordReturnsUnitsToCounter() {
+    service.loadOnStartup();
+    try {
+      service.tryReserve(variantId, 10, a -> {
+        throw new IllegalStateException("insert failed");
+      });
+    } catch (IllegalStateException expected) {
+      // transaction của đơn rollback
+    }
+
+    assertEquals(10, service.tryReserve(variantId, 10, a -> UUID.randomUUID()).get(0).quantity());
+  }
+
+  @Test
+  void startupSubtractsUnflushedUnitsBeforeSeedingCounters() {
+    when(reservationRepository.sumPendingFlush())
+        .thenReturn(List.<Object[]>of(new Object[] {warehouseId, variantId, 4L}));
+
+    service.loadOnStartup();
+
+    InOrder order = inOrder(stockLedgerService, reservationRepository, inventoryStockRepository);
+    order.verify(stockLedgerService).applyBatch(List.of(new StockLedgerService.Change(warehouseId, variantId, -4,
+        "HOT_SKU_RECOVER", StockMovement.REF_HOT_SKU, null)));
+    order.verify(reservationRepository).markAllFlushed();
+    order.verify(inventoryStockRepository).findStockRowsBySkuIn(any());
+  }
+}
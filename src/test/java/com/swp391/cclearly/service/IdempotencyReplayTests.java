@@ -0,0 +1,134 @@
+package com.swp391.cclearly.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.swp391.cclearly.dto.base.ApiResponse;
+import com.swp391.cclearly.dto.order.OrderResponse;
+import com.swp391.cclearly.entity.User;
+import com.swp391.cclearly.exception.BadRequestException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jackson.autoconfigure.JacksonAutoConfiguration;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Gửi lại checkout với cùng Idempotency-Key phải phát lại đúng response đã lưu, không tạo đơn mới.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import(IdempotencyService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdempotencyReplayTests {
+
+  @Autowired private IdempotencyService idempotencyService;
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  private final User customer = User.builder().userId(UUID.randomUUID()).build();
+  private final Map<String, Object> checkout = Map.of("addressId", "a1", "paymentMethod", "COD");
+
+  @AfterEach
+  void cleanUp() {
+    jdbcTemplate.update("DELETE FROM Idempotency_Keys");
+  }
+
+  @Test
+  void replaysCompletedCheckout() {
+    AtomicInteger created = new AtomicInteger();
+
+    ApiResponse<OrderResponse> first = idempotencyService.execute(customer, "create-order", "key-1",
+        checkout, OrderResponse.class, () -> placeOrder(created));
+    ApiResponse<OrderResponse> replay = idempotencyService.execute(customer, "create-order", "key-1",
+        checkout, OrderResponse.class, () -> placeOrder(created));
+
+    assertEquals(1, created.get());
+    assertEquals(first, replay);
+    assertEquals(OrderResponse.class, replay.getData().getClass());
+    assertEquals(2, replay.getData().getItems().size());
+  }
+
+  @Test
+  void concurrentDuplicateWaitsAndReplays() throws Exception {
+    AtomicInteger created = new AtomicInteger();
+    CountDownLatch running = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    CompletableFuture<ApiResponse<OrderResponse>> first = CompletableFuture.supplyAsync(() ->
+        idempotencyService.execute(customer, "create-order", "key-2", checkout, OrderResponse.class, () -> {
+          running.countDown();
+          await(release);
+          return placeOrder(created);
+        }));
+    running.await(5, TimeUnit.SECONDS);
+    CompletableFuture<ApiResponse<OrderResponse>> duplicate = CompletableFuture.supplyAsync(() ->
+        idempotencyService.execute(customer, "create-order", "key-2", checkout, OrderResponse.class,
+            () -> placeOrder(created)));
+    release.countDown();
+
+    assertEquals(first.get(10, TimeUnit.SECONDS), duplicate.get(10, TimeUnit.SECONDS));
+    assertEquals(1, created.get());
+  }
+
+  @Test
+  void rejectsSameKeyWithDifferentBody() {
+    AtomicInteger created = new AtomicInteger();
+    idempotencyService.execute(customer, "create-order", "key-3", checkout, OrderResponse.class,
+        () -> placeOrder(created));
+
+    assertThrows(BadRequestException.class, () -> idempotencyService.execute(customer, "create-order",
+        "key-3", Map.of("addressId", "a2"), OrderResponse.class, () -> placeOrder(created)));
+    assertEquals(1, created.get());
+  }
+
+  private static ApiResponse<OrderResponse> placeOrder(AtomicInteger created) {
+    created.incrementAndGet();
+    OrderResponse order = OrderResponse.builder()
+        .orderId(UUID.randomUUID())
+        .code("CC7K3M9Q")
+        .status("PENDING")
+        .type("standard")
+        .finalAmount(new BigDecimal("2700000"))
+        .paidAmount(BigDecimal.ZERO)
+        .codAmount(new BigDecimal("2700000"))
+        .isPreorder(false)
+        .preorderDeadline(LocalDate.of(2026, 11, 1))
+        .createdAt(Instant.parse("2026-10-18T08:30:00.123Z"))
+        .items(List.of(
+            OrderResponse.OrderItemResponse.builder()
+                .orderItemId(UUID.randomUUID()).variantSku("RB-AV-GOLD")
+                .unitPrice(new BigDecimal("1350000")).quantity(1).build(),
+            OrderResponse.OrderItemResponse.builder()
+                .orderItemId(UUID.randomUUID()).variantSku("ESS-CS-1.6")
+                .unitPrice(new BigDecimal("1350000")).quantity(1).build()))
+        .build();
+    return ApiResponse.success("Đặt hàng thành công", order);
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package com.swp391.cclearly.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class OrderCodeServiceTests {
+
+  private static final long SPACE = 1L << 30;
+
+  @Test
+  void encodeIsInjectiveOverSequentialNumbers() {
+    Set<String> seen = new HashSet<>();
+    for (long n = 0; n < 200_000; n++) {
+      assertTrue(seen.add(OrderCodeService.encode(n)), "trùng mã tại " + n);
+    }
+  }
+
+  @Test
+  void encodeKeepsFixedWidthInsideTheCodeSpace() {
+    for (long n : new long[] {0, 1, 2, 31, 32, 1_000_000, SPACE / 2, SPACE - 2, SPACE - 1}) {
+      String code = OrderCodeService.encode(n);
+      assertEquals(6, code.length(), code);
+      assertTrue(code.matches("[0-9A-HJKMNP-TV-Z]{6}"), code);
+    }
+    // Hết không gian 6 ký tự thì mã dài ra thay vì quay vòng
+    assertEquals(7, OrderCodeService.encode(SPACE).length());
+  }
+
+  @Test
+  void neighbouringNumbersDoNotLookSequential() {
+    String a = OrderCodeService.encode(1000);
+    String b = OrderCodeService.encode(1001);
+    assertTrue(!a.substring(0, 5).equals(b.substring(0, 5)), a + " / " + b);
+  }
+
+  @Test
+  void normalizeMapsAmbiguousLettersInNewCodes() {
+    assertEquals("CC11002K", OrderCodeService.normalize(" cc-il0o 2k "));
+    assertEquals("CC110ABC", OrderCodeService.normalize("CCILOABC"));
+  }
+
+  @Test
+  void normalizeRoundTripsEncodedCodes() {
+    for (long n = 0; n < 10_000; n++) {
+      String code = OrderCodeService.PREFIX + OrderCodeService.encode(n);
+      assertEquals(code, OrderCodeService.normalize(code.toLowerCase()));
+    }
+  }
+
+  @Test
+  void normalizeLeavesLegacyCodesAlone() {
+    assertEquals("CC1712345678901", OrderCodeService.normalize("cc1712345678901"));
+    assertEquals("PRE-20250204", OrderCodeService.normalize("PRE-20250204"));
+  }
+}
@@ -0,0 +1,162 @@
+package com.swp391.cclearly.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.swp391.cclearly.dto.order.OrderResponse;
+import com.swp391.cclearly.entity.Address;
+import com.swp391.cclearly.entity.Order;
+import com.swp391.cclearly.entity.OrderItem;
+import com.swp391.cclearly.entity.Payment;
+import com.swp391.cclearly.entity.Product;
+import com.swp391.cclearly.entity.ProductImage;
+import com.swp391.cclearly.entity.ProductVariant;
+import com.swp391.cclearly.entity.User;
+import jakarta.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.jpa.test.autoconfigure.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+/**
+ * Danh sách đơn phải map cả trang bằng số truy vấn cố định, không phụ thuộc số đơn/dòng hàng.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import(OrderService.class)
+class OrderListingQueryCountTests {
+
+  private static final int ORDERS = 20;
+  private static final int ITEMS_PER_ORDER = 3;
+
+  @Autowired private OrderService orderService;
+  @Autowired private TestEntityManager entityManager;
+  @Autowired private EntityManagerFactory entityManagerFactory;
+
+  @MockitoBean private SystemConfigService systemConfigService;
+  @MockitoBean private SalesRollupService salesRollupService;
+  @MockitoBean private CountCacheService countCacheService;
+  @MockitoBean private InventoryReservationService inventoryReservationService;
+  @MockitoBean private OrderCodeService orderCodeService;
+
+  private User customer;
+  private Statistics statistics;
+
+  @BeforeEach
+  void setUp() {
+    customer = entityManager.persist(User.builder()
+        .email("customer@example.com")
+        .fullName("Khách hàng")
+        .phoneNumber("0900000000")
+        .status("ACTIVE")
+        .build());
+    Address address = entityManager.persist(Address.builder()
+        .user(customer)
+        .name("Nhà")
+        .street("1 Lê Lợi")
+        .city("Hồ Chí Minh")
+        .build());
+
+    Product product = entityManager.persist(Product.builder()
+        .name("Gọng thử")
+        .categoryType("frame")
+        .basePrice(new BigDecimal("1000000"))
+        .isActive(true)
+        .build());
+    List<ProductVariant> variants = new ArrayList<>();
+    for (int v = 0; v < ITEMS_PER_ORDER; v++) {
+      ProductVariant variant = entityManager.persist(ProductVariant.builder()
+          .product(product)
+          .sku("SKU-" + v)
+          .colorName("Màu " + v)
+          .salePrice(new BigDecimal("900000"))
+          .isPreorder(false)
+          .build());
+      entityManager.persist(ProductImage.builder()
+          .product(product)
+          .variant(variant)
+          .imageUrl("https://img.example.com/" + v + ".jpg")
+          .displayOrder(0)
+          .build());
+      variants.add(variant);
+    }
+
+    Instant base = Instant.parse("2026-01-01T00:00:00Z");
+    for (int o = 0; o < ORDERS; o++) {
+      Order order = entityManager.persist(Order.builder()
+          .user(customer)
+          .address(address)
+          .code("CC" + String.format("%06d", o))
+          .status("PENDING")
+          .finalAmount(new BigDecimal("2700000"))
+          .shippingFee(BigDecimal.ZERO)
+          .createdAt(base.plusSeconds(o))
+          .build());
+      for (ProductVariant variant : variants) {
+        entityManager.persist(OrderItem.builder()
+            .order(order)
+            .variant(variant)
+            .unitPrice(new BigDecimal("900000"))
+            .build());
+      }
+      entityManager.persist(Payment.builder()
+          .order(order)
+          .method("COD")
+          .status("PENDING")
+          .amount(new BigDecimal("2700000"))
+          .build());
+    }
+    entityManager.flush();
+    entityManager.clear();
+
+    statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+  }
+
+  @Test
+  void adminPageUsesFixedNumberOfQueries() {
+    List<OrderResponse> orders = orderService.getAllOrders(null, 1, ORDERS).getData().getItems();
+
+    assertEquals(ORDERS, orders.size());
+    orders.forEach(o -> {
+      assertEquals(ITEMS_PER_ORDER, o.getItems().size());
+      assertEquals("COD", o.getPaymentMethod());
+      assertEquals("Hồ Chí Minh", o.getShippingCity());
+      assertEquals("customer@example.com", o.getCustomerEmail());
+    });
+    // Trang đơn (kèm address) + COUNT + dòng hàng + thanh toán + khách + ảnh biến thể
+    assertEquals(6, statistics.getPrepareStatementCount());
+  }
+
+  @Test
+  void customerListUsesFixedNumberOfQueries() {
+    List<OrderResponse> orders = orderService.getUserOrders(customer).getData();
+
+    assertEquals(ORDERS, orders.size());
+    orders.forEach(o -> assertEquals(ITEMS_PER_ORDER, o.getItems().size()));
+    // Đơn (kèm address) + dòng hàng + thanh toán + khách + ảnh biến thể
+    assertEquals(5, statistics.getPrepareStatementCount());
+  }
+
+  @Test
+  void queryCountDoesNotGrowWithPageSize() {
+    orderService.getAllOrders(null, 1, 5);
+    long small = statistics.getPrepareStatementCount();
+    entityManager.clear();
+    statistics.clear();
+
+    orderService.getAllOrders(null, 1, ORDERS);
+    assertEquals(small, statistics.getPrepareStatementCount());
+  }
+}
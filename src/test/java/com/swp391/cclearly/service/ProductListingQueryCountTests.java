@@ -0,0 +1,145 @@
+package com.swp391.cclearly.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import com.swp391.cclearly.dto.product.ProductResponse;
+import com.swp391.cclearly.entity.MasterLensTechnology;
+import com.swp391.cclearly.entity.Product;
+import com.swp391.cclearly.entity.ProductFrame;
+import com.swp391.cclearly.entity.ProductImage;
+import com.swp391.cclearly.entity.ProductLens;
+import com.swp391.cclearly.entity.ProductVariant;
+import jakarta.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.jpa.test.autoconfigure.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+/**
+ * Danh sách sản phẩm dạng đầy đủ (loadForListing) phải nạp cả trang bằng số truy vấn cố định.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import(ProductService.class)
+class ProductListingQueryCountTests {
+
+  private static final int PRODUCTS = 25;
+  private static final int PAGE_SIZE = 20;
+  private static final int VARIANTS_PER_PRODUCT = 3;
+
+  @Autowired private ProductService productService;
+  @Autowired private TestEntityManager entityManager;
+  @Autowired private EntityManagerFactory entityManagerFactory;
+
+  @MockitoBean private AuditLogService auditLogService;
+  @MockitoBean private ProductSearchService productSearchService;
+  @MockitoBean private ProductFacetService productFacetService;
+  @MockitoBean private CountCacheService countCacheService;
+
+  private final List<UUID> frameIds = new ArrayList<>();
+  private final List<UUID> lensIds = new ArrayList<>();
+  private Statistics statistics;
+
+  @BeforeEach
+  void setUp() {
+    List<MasterLensTechnology> technologies = List.of(
+        entityManager.persist(MasterLensTechnology.builder().name("Chống ánh sáng xanh").build()),
+        entityManager.persist(MasterLensTechnology.builder().name("Chống trầy").build()));
+
+    for (int i = 0; i < PRODUCTS; i++) {
+      boolean lens = i % 2 == 1;
+      Product product = entityManager.persist(Product.builder()
+          .name((lens ? "Tròng " : "Gọng ") + i)
+          .categoryType(lens ? "lens" : "frame")
+          .basePrice(new BigDecimal("1000000"))
+          .isActive(true)
+          .build());
+      if (lens) {
+        ProductLens attributes = ProductLens.builder().product(product).lensType("SINGLE_VISION").build();
+        attributes.setTechnologies(new HashSet<>(technologies));
+        entityManager.persist(attributes);
+        lensIds.add(product.getProductId());
+      } else {
+        entityManager.persist(ProductFrame.builder().product(product).material("Titan").shape("Tròn").build());
+        frameIds.add(product.getProductId());
+      }
+      entityManager.persist(ProductImage.builder()
+          .product(product)
+          .imageUrl("https://img.example.com/p" + i + ".jpg")
+          .displayOrder(0)
+          .build());
+      for (int v = 0; v < VARIANTS_PER_PRODUCT; v++) {
+        ProductVariant variant = entityManager.persist(ProductVariant.builder()
+            .product(product)
+            .sku("SKU-" + i + "-" + v)
+            .salePrice(new BigDecimal("900000"))
+            .isPreorder(false)
+            .build());
+        for (int img = 0; img < 2; img++) {
+          entityManager.persist(ProductImage.builder()
+              .product(product)
+              .variant(variant)
+              .imageUrl("https://img.example.com/p" + i + "-v" + v + "-" + img + ".jpg")
+              .displayOrder(img)
+              .build());
+        }
+      }
+    }
+    entityManager.flush();
+    entityManager.clear();
+
+    statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+  }
+
+  @Test
+  void fullListingUsesFixedNumberOfQueries() {
+    List<ProductResponse> products = productService.getProducts(null, null, 1, PAGE_SIZE, "full")
+        .getData().getContent();
+
+    assertEquals(PAGE_SIZE, products.size());
+    products.forEach(p -> {
+      assertEquals(VARIANTS_PER_PRODUCT, p.getVariants().size());
+      p.getVariants().forEach(v -> assertEquals(2, v.getImages().size()));
+      assertEquals(1, p.getImages().size());
+      if ("lens".equals(p.getType())) {
+        assertEquals(2, p.getLens().getTechnologies().size());
+      } else {
+        assertNotNull(p.getFrame());
+      }
+    });
+    // Trang id + COUNT + thuộc tính + ảnh + biến thể + ảnh biến thể + công nghệ tròng
+    assertEquals(7, statistics.getPrepareStatementCount());
+  }
+
+  @Test
+  void frameDetailSkipsLensTechnologies() {
+    ProductResponse product = productService.getProductById(frameIds.get(0)).getData();
+
+    assertNotNull(product.getFrame());
+    // Thuộc tính + ảnh + biến thể + ảnh biến thể
+    assertEquals(4, statistics.getPrepareStatementCount());
+  }
+
+  @Test
+  void lensDetailLoadsTechnologiesInOneQuery() {
+    ProductResponse product = productService.getProductById(lensIds.get(0)).getData();
+
+    assertEquals(2, product.getLens().getTechnologies().size());
+    assertEquals(5, statistics.getPrepareStatementCount());
+  }
+}
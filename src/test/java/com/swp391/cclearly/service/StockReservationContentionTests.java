@@ -0,0 +1,206 @@
+package com.swp391.cclearly.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.swp391.cclearly.entity.InventoryStock;
+import com.swp391.cclearly.entity.InventoryStockId;
+import com.swp391.cclearly.entity.Order;
+import com.swp391.cclearly.entity.Product;
+import com.swp391.cclearly.entity.ProductVariant;
+import com.swp391.cclearly.entity.User;
+import com.swp391.cclearly.entity.Warehouse;
+import com.swp391.cclearly.exception.BadRequestException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.jpa.test.autoconfigure.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Nhiều đơn cùng lúc giành một SKU: không bao giờ bán quá số hàng, số đã giữ khớp số đã trừ.
+ * H2 không chạy được UPDATE ... OUTPUT / MERGE của StockLedgerService, nên ở đường DB tryRemove
+ * được thay bằng cùng câu UPDATE có điều kiện (quantity_on_hand >= ?) chạy trên H2 với khóa dòng thật.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@TestPropertySource(properties = "app.inventory.hot-skus=" + StockReservationContentionTests.HOT_SKU)
+@Import({InventoryReservationService.class, HotSkuInventoryService.class,
+    StockReservationContentionTests.Metrics.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StockReservationContentionTests {
+
+  static final String HOT_SKU = "HOT-1";
+  private static final int THREADS = 40;
+  private static final int PER_ORDER = 2;
+  private static final int[] STOCK = {30, 20};
+
+  @TestConfiguration
+  static class Metrics {
+    @Bean
+    MeterRegistry meterRegistry() {
+      return new SimpleMeterRegistry();
+    }
+  }
+
+  @Autowired private InventoryReservationService reservationService;
+  @Autowired private HotSkuInventoryService hotSkuInventoryService;
+  @Autowired private TestEntityManager entityManager;
+  @Autowired private JdbcTemplate jdbcTemplate;
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @MockitoBean private StockLedgerService stockLedgerService;
+
+  @AfterEach
+  void cleanUp() {
+    for (String table : List.of("Inventory_Reservations", "Inventory_Stock", "Orders", "Product_Variants",
+        "Products", "Warehouses", "Users")) {
+      jdbcTemplate.update("DELETE FROM " + table);
+    }
+  }
+
+  @Test
+  void databasePathNeverOversells() throws Exception {
+    Fixture fixture = setUp("SKU-DB");
+    when(stockLedgerService.tryRemove(any())).thenAnswer(inv -> {
+      StockLedgerService.Change c = inv.getArgument(0);
+      int quantity = Math.abs(c.quantity());
+      int updated = jdbcTemplate.update("UPDATE Inventory_Stock SET quantity_on_hand = quantity_on_hand - ? "
+          + "WHERE warehouse_id = ? AND variant_id = ? AND quantity_on_hand >= ?",
+          quantity, c.warehouseId(), c.variantId(), quantity);
+      return updated == 1 ? 0 : null;
+    });
+
+    int succeeded = race(fixture);
+
+    int remaining = jdbcTemplate.queryForObject(
+        "SELECT SUM(quantity_on_hand) FROM Inventory_Stock WHERE variant_id = ?", Integer.class,
+        fixture.variantId);
+    assertTrue(remaining >= 0);
+    assertEquals(0, jdbcTemplate.queryForObject(
+        "SELECT COUNT(*) FROM Inventory_Stock WHERE quantity_on_hand < 0", Integer.class));
+    assertEquals(total() - remaining, succeeded * PER_ORDER);
+    assertEquals(succeeded * PER_ORDER, reserved(fixture.variantId, false));
+  }
+
+  @Test
+  void hotSkuPathNeverOversellsAndFlushesEveryUnit() throws Exception {
+    Fixture fixture = setUp(HOT_SKU);
+    hotSkuInventoryService.loadOnStartup();
+
+    int succeeded = race(fixture);
+
+    assertTrue(succeeded > 0 && succeeded * PER_ORDER <= total(), "succeeded " + succeeded);
+    assertEquals(succeeded * PER_ORDER, reserved(fixture.variantId, true));
+
+    hotSkuInventoryService.flush();
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<StockLedgerService.Change>> changes = ArgumentCaptor.forClass(List.class);
+    verify(stockLedgerService).applyBatch(changes.capture());
+    assertEquals(-succeeded * PER_ORDER,
+        changes.getValue().stream().mapToInt(StockLedgerService.Change::quantity).sum());
+    assertEquals(0, reserved(fixture.variantId, true));
+  }
+
+  private record Fixture(UUID variantId, List<UUID> orderIds) {
+  }
+
+  private Fixture setUp(String sku) {
+    return new TransactionTemplate(transactionManager).execute(status -> {
+      User customer = entityManager.persist(User.builder().email(sku + "@example.com").status("ACTIVE").build());
+      Product product = entityManager.persist(Product.builder()
+          .name("Gọng " + sku).categoryType("frame").basePrice(new BigDecimal("1000000")).isActive(true)
+          .build());
+      ProductVariant variant = entityManager.persist(ProductVariant.builder()
+          .product(product).sku(sku).salePrice(new BigDecimal("900000")).isPreorder(false).build());
+      for (int i = 0; i < STOCK.length; i++) {
+        Warehouse warehouse = entityManager.persist(Warehouse.builder().name("Kho " + i).build());
+        entityManager.persist(InventoryStock.builder()
+            .id(new InventoryStockId(warehouse.getWarehouseId(), variant.getVariantId()))
+            .warehouse(warehouse)
+            .variant(variant)
+            .quantityOnHand(STOCK[i])
+            .build());
+      }
+      List<UUID> orderIds = new ArrayList<>();
+      for (int o = 0; o < THREADS; o++) {
+        orderIds.add(entityManager.persist(Order.builder()
+            .user(customer).status("PENDING").finalAmount(new BigDecimal("1800000")).build()).getOrderId());
+      }
+      return new Fixture(variant.getVariantId(), orderIds);
+    });
+  }
+
+  /**
+   * Mỗi luồng đặt một đơn PER_ORDER cái trong transaction riêng; trả về số đơn giữ hàng thành công.
+   */
+  private int race(Fixture fixture) throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    TransactionTemplate tx = new TransactionTemplate(transactionManager);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (UUID orderId : fixture.orderIds) {
+        results.add(pool.submit(() -> {
+          start.await();
+          try {
+            tx.executeWithoutResult(status -> reservationService.reserve(
+                entityManager.getEntityManager().getReference(Order.class, orderId),
+                Map.of(fixture.variantId, PER_ORDER), Map.of()));
+            return true;
+          } catch (BadRequestException e) {
+            return false;
+          }
+        }));
+      }
+      start.countDown();
+      int succeeded = 0;
+      for (Future<Boolean> result : results) {
+        if (result.get(30, TimeUnit.SECONDS)) succeeded++;
+      }
+      return succeeded;
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private int reserved(UUID variantId, boolean pendingFlushOnly) {
+    return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(quantity), 0) FROM Inventory_Reservations "
+        + "WHERE variant_id = ?" + (pendingFlushOnly ? " AND pending_flush = TRUE" : ""), Integer.class, variantId);
+  }
+
+  private static int total() {
+    int total = 0;
+    for (int q : STOCK) total += q;
+    return total;
+  }
+}
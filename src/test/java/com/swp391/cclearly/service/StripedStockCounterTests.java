@@ -0,0 +1,114 @@
+package com.swp391.cclearly.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class StripedStockCounterTests {
+
+  private static final int THREADS = 16;
+
+  @Test
+  void takesAcrossStripesWhenNoSingleStripeHasEnough() {
+    StripedStockCounter counter = new StripedStockCounter(10);
+
+    // 10 chia cho >= 2 stripe nên không stripe nào giữ đủ 10
+    assertTrue(counter.tryTake(10));
+    assertEquals(0, counter.sum());
+    assertFalse(counter.tryTake(1));
+  }
+
+  @Test
+  void failedTakeLeavesTotalUnchanged() {
+    StripedStockCounter counter = new StripedStockCounter(10);
+
+    assertFalse(counter.tryTake(11));
+    assertEquals(10, counter.sum());
+    assertTrue(counter.tryTake(7));
+    assertFalse(counter.tryTake(4));
+    assertEquals(3, counter.sum());
+  }
+
+  @Test
+  void addedStockCanBeTaken() {
+    StripedStockCounter counter = new StripedStockCounter(0);
+
+    assertFalse(counter.tryTake(1));
+    counter.add(5);
+    counter.add(5);
+    assertTrue(counter.tryTake(10));
+    assertEquals(0, counter.sum());
+  }
+
+  @Test
+  void concurrentSingleUnitTakesSellExactlyTheStock() throws Exception {
+    int initial = 100_000;
+    StripedStockCounter counter = new StripedStockCounter(initial);
+
+    long taken = runConcurrently(() -> {
+      long mine = 0;
+      while (counter.tryTake(1)) mine++;
+      return mine;
+    });
+
+    assertEquals(initial, taken);
+    assertEquals(0, counter.sum());
+  }
+
+  @Test
+  void concurrentMixedTakesNeverOversell() throws Exception {
+    int initial = 50_000;
+    StripedStockCounter counter = new StripedStockCounter(initial);
+
+    long taken = runConcurrently(() -> {
+      long mine = 0;
+      int failures = 0;
+      // Dừng sau vài lần liên tiếp không đủ hàng (số dư còn lại có thể nhỏ hơn lượng muốn lấy)
+      while (failures < 3) {
+        long quantity = ThreadLocalRandom.current().nextInt(1, 4);
+        if (counter.tryTake(quantity)) {
+          mine += quantity;
+          failures = 0;
+        } else {
+          failures++;
+        }
+      }
+      return mine;
+    });
+
+    long left = counter.sum();
+    assertTrue(left >= 0, "còn lại " + left);
+    assertEquals(initial, taken + left);
+  }
+
+  private static long runConcurrently(Callable<Long> task) throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    try {
+      List<Future<Long>> results = new ArrayList<>();
+      for (int i = 0; i < THREADS; i++) {
+        results.add(pool.submit(() -> {
+          start.await();
+          return task.call();
+        }));
+      }
+      start.countDown();
+      long total = 0;
+      for (Future<Long> result : results) total += result.get(30, TimeUnit.SECONDS);
+      return total;
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+}